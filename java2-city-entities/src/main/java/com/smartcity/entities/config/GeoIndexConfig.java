@@ -0,0 +1,38 @@
+package com.smartcity.entities.config;
+
+import com.smartcity.entities.dto.CameraDTO;
+import com.smartcity.entities.dto.PublicAssetDTO;
+import com.smartcity.entities.dto.SensorDTO;
+import com.smartcity.entities.dto.VehicleDTO;
+import com.smartcity.entities.geo.GridIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class GeoIndexConfig {
+    
+    @Value("${geo.index.cell-size-m:500}")
+    private double cellSizeMeters;
+    
+    @Bean
+    public GridIndex<SensorDTO> sensorIndex() {
+        return new GridIndex<>(cellSizeMeters, SensorDTO::getId, SensorDTO::getLatitude, SensorDTO::getLongitude);
+    }
+    
+    @Bean
+    public GridIndex<CameraDTO> cameraIndex() {
+        return new GridIndex<>(cellSizeMeters, CameraDTO::getId, CameraDTO::getLatitude, CameraDTO::getLongitude);
+    }
+    
+    @Bean
+    public GridIndex<PublicAssetDTO> assetIndex() {
+        return new GridIndex<>(cellSizeMeters, PublicAssetDTO::getId, PublicAssetDTO::getLatitude, PublicAssetDTO::getLongitude);
+    }
+    
+    // Vehicles are indexed at their last reported position
+    @Bean
+    public GridIndex<VehicleDTO> vehicleIndex() {
+        return new GridIndex<>(cellSizeMeters, VehicleDTO::getId, VehicleDTO::getCurrentLatitude, VehicleDTO::getCurrentLongitude);
+    }
+}
@@ -1,12 +1,15 @@
 package com.smartcity.entities.controller;
 
 import com.smartcity.entities.dto.CameraDTO;
+import com.smartcity.entities.dto.CursorPageDTO;
 import com.smartcity.entities.service.CameraService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -41,6 +44,54 @@ public class CameraController {
         return ResponseEntity.ok(cameras);
     }
     
+    // Lets aggregation-service read counts without fetching every camera
+    @GetMapping("/count")
+    public ResponseEntity<Long> countCameras(@RequestParam(required = false) String status) {
+        return ResponseEntity.ok(cameraService.countCameras(status));
+    }
+    
+    // Cursor-paginated by id: pass nextCursor back as cursor; fields=name,status,... returns only those columns
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<Object>> getCamerasPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String status) {
+        return ResponseEntity.ok(cameraService.getCamerasPage(cursor, limit, fields, status));
+    }
+    
+    // Every match as newline-delimited JSON, read from the database a page at a time
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportCameras(
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String status) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(cameraService.exportCameras(fields, status));
+    }
+    
+    // Nearest first, within radiusM metres of the point
+    @GetMapping("/near")
+    public ResponseEntity<List<CameraDTO>> getCamerasNear(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam double radiusM,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(cameraService.getCamerasNear(lat, lon, radiusM, status, limit));
+    }
+    
+    @GetMapping("/within")
+    public ResponseEntity<List<CameraDTO>> getCamerasWithin(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(cameraService.getCamerasWithin(minLat, minLon, maxLat, maxLon, status, limit));
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<CameraDTO> updateCamera(@PathVariable String id, 
                                                   @Valid @RequestBody CameraDTO cameraDTO) {
@@ -1,12 +1,15 @@
 package com.smartcity.entities.controller;
 
+import com.smartcity.entities.dto.CursorPageDTO;
 import com.smartcity.entities.dto.PublicAssetDTO;
 import com.smartcity.entities.service.PublicAssetService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -41,6 +44,48 @@ public class PublicAssetController {
         return ResponseEntity.ok(assets);
     }
     
+    // Cursor-paginated by id: pass nextCursor back as cursor; fields=name,status,... returns only those columns
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<Object>> getAssetsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String type) {
+        return ResponseEntity.ok(assetService.getAssetsPage(cursor, limit, fields, type));
+    }
+    
+    // Every match as newline-delimited JSON, read from the database a page at a time
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportAssets(
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String type) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(assetService.exportAssets(fields, type));
+    }
+    
+    // Nearest first, within radiusM metres of the point
+    @GetMapping("/near")
+    public ResponseEntity<List<PublicAssetDTO>> getAssetsNear(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam double radiusM,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(assetService.getAssetsNear(lat, lon, radiusM, type, limit));
+    }
+    
+    @GetMapping("/within")
+    public ResponseEntity<List<PublicAssetDTO>> getAssetsWithin(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(assetService.getAssetsWithin(minLat, minLon, maxLat, maxLon, type, limit));
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<PublicAssetDTO> updateAsset(@PathVariable String id, 
                                                        @Valid @RequestBody PublicAssetDTO assetDTO) {
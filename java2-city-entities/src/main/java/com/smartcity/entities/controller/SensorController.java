@@ -1,12 +1,15 @@
 package com.smartcity.entities.controller;
 
+import com.smartcity.entities.dto.CursorPageDTO;
 import com.smartcity.entities.dto.SensorDTO;
 import com.smartcity.entities.service.SensorService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -44,6 +47,56 @@ public class SensorController {
         return ResponseEntity.ok(sensors);
     }
     
+    // Lets aggregation-service read counts without fetching every sensor
+    @GetMapping("/count")
+    public ResponseEntity<Long> countSensors(@RequestParam(required = false) String status) {
+        return ResponseEntity.ok(sensorService.countSensors(status));
+    }
+    
+    // Cursor-paginated by id: pass nextCursor back as cursor; fields=name,status,... returns only those columns
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<Object>> getSensorsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String status) {
+        return ResponseEntity.ok(sensorService.getSensorsPage(cursor, limit, fields, type, status));
+    }
+    
+    // Every match as newline-delimited JSON, read from the database a page at a time
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportSensors(
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String status) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(sensorService.exportSensors(fields, type, status));
+    }
+    
+    // Nearest first, within radiusM metres of the point
+    @GetMapping("/near")
+    public ResponseEntity<List<SensorDTO>> getSensorsNear(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam double radiusM,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(sensorService.getSensorsNear(lat, lon, radiusM, type, limit));
+    }
+    
+    @GetMapping("/within")
+    public ResponseEntity<List<SensorDTO>> getSensorsWithin(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(sensorService.getSensorsWithin(minLat, minLon, maxLat, maxLon, type, limit));
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<SensorDTO> updateSensor(@PathVariable String id, 
                                                    @Valid @RequestBody SensorDTO sensorDTO) {
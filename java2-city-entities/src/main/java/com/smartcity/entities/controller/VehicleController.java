@@ -1,13 +1,23 @@
 package com.smartcity.entities.controller;
 
+import com.smartcity.entities.dto.CursorPageDTO;
+import com.smartcity.entities.dto.NearestVehicleDTO;
+import com.smartcity.entities.dto.TelemetryAckDTO;
 import com.smartcity.entities.dto.VehicleDTO;
+import com.smartcity.entities.dto.VehiclePingDTO;
+import com.smartcity.entities.dto.VehicleTrackDTO;
 import com.smartcity.entities.service.VehicleService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/vehicles")
@@ -40,6 +50,66 @@ public class VehicleController {
         return ResponseEntity.ok(vehicles);
     }
     
+    // Lets aggregation-service read counts without fetching every vehicle
+    @GetMapping("/count")
+    public ResponseEntity<Long> countVehicles(@RequestParam(required = false) String status) {
+        return ResponseEntity.ok(vehicleService.countVehicles(status));
+    }
+    
+    // Cursor-paginated by id: pass nextCursor back as cursor; fields=name,status,... returns only those columns
+    @GetMapping("/page")
+    public ResponseEntity<CursorPageDTO<Object>> getVehiclesPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String type) {
+        return ResponseEntity.ok(vehicleService.getVehiclesPage(cursor, limit, fields, type));
+    }
+    
+    // Every match as newline-delimited JSON, read from the database a page at a time
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportVehicles(
+            @RequestParam(required = false) String fields,
+            @RequestParam(required = false) String type) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(vehicleService.exportVehicles(fields, type));
+    }
+    
+    // Nearest first, within radiusM metres of the point
+    @GetMapping("/near")
+    public ResponseEntity<List<VehicleDTO>> getVehiclesNear(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam double radiusM,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "500") int limit) {
+        return ResponseEntity.ok(vehicleService.getVehiclesNear(lat, lon, radiusM, type, limit));
+    }
+    
+    @GetMapping("/within")
+    public ResponseEntity<List<VehicleDTO>> getVehiclesWithin(
+            @RequestParam double minLat,
+            @RequestParam double minLon,
+            @RequestParam double maxLat,
+            @RequestParam double maxLon,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(vehicleService.getVehiclesWithin(minLat, minLon, maxLat, maxLon, type, limit));
+    }
+    
+    // Nearest first, with the distance to each
+    @GetMapping("/nearest")
+    public ResponseEntity<List<NearestVehicleDTO>> getNearestVehicles(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "5") int k,
+            @RequestParam(defaultValue = "AVAILABLE") String status,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "50000") double maxDistanceM) {
+        return ResponseEntity.ok(vehicleService.findNearestVehicles(lat, lon, k, status, type, maxDistanceM));
+    }
+    
     @PutMapping("/{id}")
     public ResponseEntity<VehicleDTO> updateVehicle(@PathVariable String id, 
                                                     @Valid @RequestBody VehicleDTO vehicleDTO) {
@@ -56,6 +126,48 @@ public class VehicleController {
         return ResponseEntity.ok(vehicle);
     }
     
+    // High-frequency GPS path: accepted into memory, persisted by the next batch flush
+    @PostMapping("/{id}/ping")
+    public ResponseEntity<Void> recordPing(
+            @PathVariable String id,
+            @RequestParam Double latitude,
+            @RequestParam Double longitude) {
+        vehicleService.recordPing(id, latitude, longitude);
+        return ResponseEntity.accepted().build();
+    }
+    
+    @PostMapping("/pings")
+    public ResponseEntity<TelemetryAckDTO> recordPings(@RequestBody List<VehiclePingDTO> pings) {
+        return ResponseEntity.accepted().body(vehicleService.recordPings(pings));
+    }
+    
+    @GetMapping("/pings/stats")
+    public ResponseEntity<Map<String, Object>> getTelemetryStats() {
+        return ResponseEntity.ok(vehicleService.getTelemetryStats());
+    }
+    
+    // Latest known position, including pings not yet written to the database
+    @GetMapping("/{id}/location")
+    public ResponseEntity<VehiclePingDTO> getVehicleLocation(@PathVariable String id) {
+        return ResponseEntity.ok(vehicleService.getVehicleLocation(id));
+    }
+    
+    // Path taken between from and to; toleranceM > 0 thins it further for display. A truncated
+    // response carries nextFrom, the from to query the rest with
+    @GetMapping("/{id}/track")
+    public ResponseEntity<VehicleTrackDTO> getVehicleTrack(
+            @PathVariable String id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") double toleranceM) {
+        return ResponseEntity.ok(vehicleService.getVehicleTrack(id, from, to, toleranceM));
+    }
+    
+    @GetMapping("/track/stats")
+    public ResponseEntity<Map<String, Object>> getTrajectoryStats() {
+        return ResponseEntity.ok(vehicleService.getTrajectoryStats());
+    }
+    
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteVehicle(@PathVariable String id) {
         vehicleService.deleteVehicle(id);
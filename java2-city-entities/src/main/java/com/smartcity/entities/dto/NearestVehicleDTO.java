@@ -0,0 +1,15 @@
+package com.smartcity.entities.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearestVehicleDTO {
+    private VehicleDTO vehicle;
+    private Double distanceMeters;
+}
@@ -0,0 +1,18 @@
+package com.smartcity.entities.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TelemetryAckDTO {
+    private int accepted;
+    private int rejected;
+    private List<String> errors; // first few rejection reasons
+}
@@ -0,0 +1,18 @@
+package com.smartcity.entities.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrackPointDTO {
+    private Double latitude;
+    private Double longitude;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,19 @@
+package com.smartcity.entities.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VehiclePingDTO {
+    private String vehicleId;
+    private Double latitude;
+    private Double longitude;
+    private LocalDateTime timestamp; // when the position was taken; defaults to receipt time
+}
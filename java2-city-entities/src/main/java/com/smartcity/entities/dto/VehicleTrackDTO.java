@@ -0,0 +1,23 @@
+package com.smartcity.entities.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VehicleTrackDTO {
+    private String vehicleId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Integer storedPoints; // points kept for the range, before any toleranceM simplification
+    private Boolean truncated; // true when only the oldest max-points-per-query points are returned
+    private LocalDateTime nextFrom; // when truncated, the from of the query returning the rest
+    private List<TrackPointDTO> points;
+}
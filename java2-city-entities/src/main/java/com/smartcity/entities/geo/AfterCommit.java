@@ -0,0 +1,25 @@
+package com.smartcity.entities.geo;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Index updates from inside a @Transactional method wait for the commit, so a rollback
+// never leaves the in-memory index ahead of the database
+public final class AfterCommit {
+    
+    private AfterCommit() {
+    }
+    
+    public static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
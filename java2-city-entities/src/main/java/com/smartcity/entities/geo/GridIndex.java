@@ -0,0 +1,405 @@
+package com.smartcity.entities.geo;
+
+import com.smartcity.entities.exception.BadRequestException;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// In-memory spatial index of one entity type on a uniform latitude/longitude grid. Each item
+// sits in the cell containing its position; a radius or bounding-box query visits only the
+// cells overlapping the query's box and checks the exact distance or bounds per item. Items
+// without a position are not indexed. Reads share a read lock; writes replace an item's DTO
+// in place, moving it to another cell only when its position crossed a cell boundary.
+// Nearest-neighbour search scans rings of cells outwards from the query point and stops once
+// the next ring cannot hold anything closer than the k-th match found so far. A full reload
+// reads its snapshot outside the lock, so items put or removed while the snapshot is being
+// read keep their indexed state instead of being reverted to what the snapshot saw.
+public class GridIndex<T> {
+    
+    static final double EARTH_RADIUS_M = 6_371_008.8;
+    private static final double METERS_PER_DEGREE_LAT = 111_320.0;
+    
+    private final double cellDegrees;
+    private final Function<T, String> id;
+    private final Function<T, Double> latitude;
+    private final Function<T, Double> longitude;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, List<Item<T>>> cells = new HashMap<>();
+    private final Map<String, Item<T>> items = new HashMap<>();
+    // While a reload runs: the write count at each item's last put or remove
+    private final Map<String, Long> touched = new HashMap<>();
+    private long writes;
+    private int reloading;
+    
+    public GridIndex(double cellSizeMeters, Function<T, String> id,
+                     Function<T, Double> latitude, Function<T, Double> longitude) {
+        this.cellDegrees = cellSizeMeters / METERS_PER_DEGREE_LAT;
+        this.id = id;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+    
+    public void put(T value) {
+        lock.writeLock().lock();
+        try {
+            touch(id.apply(value));
+            Item<T> previous = items.get(id.apply(value));
+            Item<T> next = item(value);
+            if (previous != null && next != null && previous.cell == next.cell) {
+                List<Item<T>> cell = cells.get(previous.cell);
+                cell.set(cell.indexOf(previous), next);
+                items.put(next.id, next);
+                return;
+            }
+            unlink(id.apply(value));
+            link(next);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    public void remove(String itemId) {
+        lock.writeLock().lock();
+        try {
+            touch(itemId);
+            unlink(itemId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Swaps in a full reload from the database. The snapshot may predate writes made while it was
+    // read, so items touched since the reload started keep their current state
+    public void replaceAll(Supplier<? extends Collection<T>> snapshot) {
+        long started;
+        lock.writeLock().lock();
+        try {
+            reloading++;
+            started = writes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            Collection<T> values = snapshot.get();
+            lock.writeLock().lock();
+            try {
+                // Null for an item removed, or put without a position, since the reload started
+                Map<String, Item<T>> kept = new HashMap<>();
+                touched.forEach((itemId, written) -> {
+                    if (written > started) {
+                        kept.put(itemId, items.get(itemId));
+                    }
+                });
+                cells.clear();
+                items.clear();
+                for (T value : values) {
+                    if (!kept.containsKey(id.apply(value))) {
+                        link(item(value));
+                    }
+                }
+                kept.values().forEach(this::link);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (--reloading == 0) {
+                    touched.clear();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+    
+    // Null when the item is not indexed
+    public T get(String itemId) {
+        lock.readLock().lock();
+        try {
+            Item<T> item = items.get(itemId);
+            return item == null ? null : item.value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return items.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Nearest first
+    public List<T> near(double lat, double lon, double radiusMeters, int limit, Predicate<T> filter) {
+        checkPosition(lat, lon);
+        if (!(radiusMeters > 0) || radiusMeters > 100_000) {
+            throw new BadRequestException("radiusM must be greater than 0 and at most 100000");
+        }
+        checkLimit(limit);
+        double latSpan = radiusMeters / METERS_PER_DEGREE_LAT;
+        double lonSpan = latSpan / Math.max(Math.cos(Math.toRadians(Math.min(Math.abs(lat) + latSpan, 90))), 1e-6);
+        
+        List<Hit<T>> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            visit(lat - latSpan, lon - lonSpan, lat + latSpan, lon + lonSpan, item -> {
+                double distance = distanceMeters(lat, lon, item.lat, item.lon);
+                if (distance <= radiusMeters && filter.test(item.value)) {
+                    hits.add(new Hit<>(distance, item.value));
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingDouble(hit -> hit.distance));
+        List<T> result = new ArrayList<>(Math.min(limit, hits.size()));
+        for (int i = 0; i < hits.size() && i < limit; i++) {
+            result.add(hits.get(i).value);
+        }
+        return result;
+    }
+    
+    public List<T> within(double minLat, double minLon, double maxLat, double maxLon, int limit, Predicate<T> filter) {
+        checkPosition(minLat, minLon);
+        checkPosition(maxLat, maxLon);
+        if (minLat > maxLat || minLon > maxLon) {
+            throw new BadRequestException("minLat/minLon must not exceed maxLat/maxLon");
+        }
+        checkLimit(limit);
+        List<T> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            visit(minLat, minLon, maxLat, maxLon, item -> {
+                if (result.size() < limit && item.lat >= minLat && item.lat <= maxLat
+                        && item.lon >= minLon && item.lon <= maxLon && filter.test(item.value)) {
+                    result.add(item.value);
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+    
+    // Up to k matches within maxDistanceMeters, nearest first
+    public List<Neighbor<T>> nearest(double lat, double lon, int k, double maxDistanceMeters, Predicate<T> filter) {
+        checkPosition(lat, lon);
+        checkLimit(k);
+        if (!(maxDistanceMeters > 0)) {
+            throw new BadRequestException("maxDistanceM must be greater than 0");
+        }
+        // Furthest first, so the worst of the current k is dropped when a closer one turns up
+        PriorityQueue<Neighbor<T>> best = new PriorityQueue<>(
+                Comparator.comparingDouble((Neighbor<T> neighbor) -> neighbor.distanceMeters).reversed());
+        long centerRow = row(lat);
+        long centerColumn = column(lon);
+        
+        lock.readLock().lock();
+        try {
+            int occupiedSeen = 0;
+            for (long ring = 0; occupiedSeen < cells.size(); ring++) {
+                // Nothing in ring r is closer than r - 1 cell widths, and cells are narrowest
+                // in metres at the ring's pole-ward edge
+                double ringLat = Math.min(Math.abs(lat) + ring * cellDegrees, 89.9);
+                double cellWidthMeters = cellDegrees * METERS_PER_DEGREE_LAT * Math.cos(Math.toRadians(ringLat));
+                double ringMinDistance = Math.max(0, ring - 1) * cellWidthMeters;
+                if (ringMinDistance > maxDistanceMeters
+                        || (best.size() == k && ringMinDistance > best.peek().distanceMeters)) {
+                    break;
+                }
+                if (8 * ring > cells.size()) {
+                    // Sparse grid: visiting what is left beats probing mostly empty rings
+                    long innerRings = ring;
+                    cells.forEach((key, cell) -> {
+                        long distanceInCells = Math.max(Math.abs((key >> 32) - centerRow),
+                                Math.abs((int) (long) key - centerColumn));
+                        if (distanceInCells >= innerRings) {
+                            offer(best, k, cell, lat, lon, maxDistanceMeters, filter);
+                        }
+                    });
+                    break;
+                }
+                for (long row = centerRow - ring; row <= centerRow + ring; row++) {
+                    boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                    long step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                    for (long column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                        List<Item<T>> cell = cells.get(key(row, column));
+                        if (cell != null) {
+                            occupiedSeen++;
+                            offer(best, k, cell, lat, lon, maxDistanceMeters, filter);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Neighbor<T>> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(neighbor -> neighbor.distanceMeters));
+        return result;
+    }
+    
+    private void offer(PriorityQueue<Neighbor<T>> best, int k, List<Item<T>> cell, double lat, double lon,
+                       double maxDistanceMeters, Predicate<T> filter) {
+        for (Item<T> item : cell) {
+            double distance = distanceMeters(lat, lon, item.lat, item.lon);
+            if (distance > maxDistanceMeters || !filter.test(item.value)) {
+                continue;
+            }
+            if (best.size() < k) {
+                best.add(new Neighbor<>(item.value, distance));
+            } else if (distance < best.peek().distanceMeters) {
+                best.poll();
+                best.add(new Neighbor<>(item.value, distance));
+            }
+        }
+    }
+    
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+    
+    // Walks the cells overlapping the box, or every occupied cell when that is fewer
+    private void visit(double minLat, double minLon, double maxLat, double maxLon, Consumer<Item<T>> visitor) {
+        long firstRow = row(minLat);
+        long lastRow = row(maxLat);
+        long firstColumn = column(minLon);
+        long lastColumn = column(maxLon);
+        if ((lastRow - firstRow + 1) * (lastColumn - firstColumn + 1) > cells.size()) {
+            cells.forEach((key, cell) -> {
+                long row = key >> 32;
+                long column = (int) (long) key;
+                if (row >= firstRow && row <= lastRow && column >= firstColumn && column <= lastColumn) {
+                    cell.forEach(visitor);
+                }
+            });
+            return;
+        }
+        for (long row = firstRow; row <= lastRow; row++) {
+            for (long column = firstColumn; column <= lastColumn; column++) {
+                List<Item<T>> cell = cells.get(key(row, column));
+                if (cell != null) {
+                    cell.forEach(visitor);
+                }
+            }
+        }
+    }
+    
+    // Null when the value has no position
+    private Item<T> item(T value) {
+        Double lat = latitude.apply(value);
+        Double lon = longitude.apply(value);
+        if (lat == null || lon == null) {
+            return null;
+        }
+        return new Item<>(id.apply(value), lat, lon, key(row(lat), column(lon)), value);
+    }
+    
+    private void touch(String itemId) {
+        writes++;
+        if (reloading > 0) {
+            touched.put(itemId, writes);
+        }
+    }
+    
+    private void link(Item<T> item) {
+        if (item == null) {
+            return;
+        }
+        items.put(item.id, item);
+        cells.computeIfAbsent(item.cell, k -> new ArrayList<>()).add(item);
+    }
+    
+    private void unlink(String itemId) {
+        Item<T> item = items.remove(itemId);
+        if (item == null) {
+            return;
+        }
+        List<Item<T>> cell = cells.get(item.cell);
+        cell.remove(item);
+        if (cell.isEmpty()) {
+            cells.remove(item.cell);
+        }
+    }
+    
+    private long row(double lat) {
+        return (long) Math.floor(lat / cellDegrees);
+    }
+    
+    private long column(double lon) {
+        return (long) Math.floor(lon / cellDegrees);
+    }
+    
+    private static long key(long row, long column) {
+        return (row << 32) | (column & 0xffffffffL);
+    }
+    
+    private static void checkPosition(double lat, double lon) {
+        if (!(lat >= -90 && lat <= 90) || !(lon >= -180 && lon <= 180)) {
+            throw new BadRequestException("Latitude must be within [-90, 90] and longitude within [-180, 180]");
+        }
+    }
+    
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > 10_000) {
+            throw new BadRequestException("limit must be between 1 and 10000");
+        }
+    }
+    
+    private static final class Item<T> {
+        private final String id;
+        private final double lat;
+        private final double lon;
+        private final long cell;
+        private final T value;
+        
+        private Item(String id, double lat, double lon, long cell, T value) {
+            this.id = id;
+            this.lat = lat;
+            this.lon = lon;
+            this.cell = cell;
+            this.value = value;
+        }
+    }
+    
+    @Getter
+    public static final class Neighbor<T> {
+        private final T value;
+        private final double distanceMeters;
+        
+        private Neighbor(T value, double distanceMeters) {
+            this.value = value;
+            this.distanceMeters = distanceMeters;
+        }
+    }
+    
+    private static final class Hit<T> {
+        private final double distance;
+        private final T value;
+        
+        private Hit(double distance, T value) {
+            this.distance = distance;
+            this.value = value;
+        }
+    }
+}
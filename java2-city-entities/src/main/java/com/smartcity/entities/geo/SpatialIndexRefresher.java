@@ -0,0 +1,74 @@
+package com.smartcity.entities.geo;
+
+import com.smartcity.entities.service.CameraService;
+import com.smartcity.entities.service.PublicAssetService;
+import com.smartcity.entities.service.SensorService;
+import com.smartcity.entities.service.VehicleService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Fills the grid indexes from the database at startup and reloads them periodically, which
+// also picks up writes made through other instances of this service
+@Slf4j
+@Component
+public class SpatialIndexRefresher {
+    
+    private final SensorService sensorService;
+    private final CameraService cameraService;
+    private final PublicAssetService assetService;
+    private final VehicleService vehicleService;
+    private final long reloadIntervalMs;
+    private final ScheduledExecutorService scheduler;
+    
+    public SpatialIndexRefresher(SensorService sensorService,
+                                 CameraService cameraService,
+                                 PublicAssetService assetService,
+                                 VehicleService vehicleService,
+                                 @Value("${geo.index.reload-interval-ms:60000}") long reloadIntervalMs) {
+        this.sensorService = sensorService;
+        this.cameraService = cameraService;
+        this.assetService = assetService;
+        this.vehicleService = vehicleService;
+        this.reloadIntervalMs = reloadIntervalMs;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "spatial-index-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reload();
+        if (reloadIntervalMs > 0) {
+            scheduler.scheduleWithFixedDelay(this::reload, reloadIntervalMs, reloadIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+    
+    private void reload() {
+        long started = System.currentTimeMillis();
+        try {
+            sensorService.reloadSpatialIndex();
+            cameraService.reloadSpatialIndex();
+            assetService.reloadSpatialIndex();
+            vehicleService.reloadSpatialIndex();
+            log.debug("Reloaded spatial indexes in {} ms", System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            // Keep serving the previous contents
+            log.error("Spatial index reload failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.smartcity.entities.paging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcity.entities.dto.CursorPageDTO;
+import com.smartcity.entities.exception.BadRequestException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.Attribute;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+// Cursor pagination over an entity's id. Each page is WHERE id > :cursor ORDER BY id LIMIT n,
+// answered from the primary key index, so a deep page costs the same as the first and rows
+// inserted meanwhile never shift a page boundary. With fields= only the listed columns (plus
+// id) are selected through a criteria tuple query and rows come back as maps; without it whole
+// entities are loaded and mapped to DTOs. Export walks the same pages and writes one JSON
+// object per line, holding a single page in memory at a time.
+@Component
+@RequiredArgsConstructor
+public class KeysetPager {
+    
+    public static final int MAX_LIMIT = 1000;
+    private static final int EXPORT_PAGE_SIZE = 1000;
+    private static final String ID = "id";
+    
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    
+    // Equality filters from name/value pairs; pairs with a null value are left out
+    public static Map<String, Object> filters(Object... namesAndValues) {
+        Map<String, Object> filters = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            if (namesAndValues[i + 1] != null) {
+                filters.put((String) namesAndValues[i], namesAndValues[i + 1]);
+            }
+        }
+        return filters;
+    }
+    
+    public <E> CursorPageDTO<Object> page(Class<E> type, Map<String, Object> filters, String cursor, int limit,
+                                          String fields, Function<E, ?> toDTO,
+                                          UnaryOperator<Map<String, Object>> rowMapper) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        Batch batch = fetch(type, filters, decodeCursor(cursor), limit, columns(type, fields), toDTO, rowMapper);
+        return CursorPageDTO.builder()
+                .items(batch.items)
+                .nextCursor(batch.more ? encodeCursor(batch.lastId) : null)
+                .limit(limit)
+                .build();
+    }
+    
+    // Newline-delimited JSON, flushed after every page. Fields are validated before the body is
+    // returned, so a bad request still gets a 400 rather than a truncated stream
+    public <E> StreamingResponseBody export(Class<E> type, Map<String, Object> filters, String fields,
+                                            Function<E, ?> toDTO, UnaryOperator<Map<String, Object>> rowMapper) {
+        List<String> columns = columns(type, fields);
+        return out -> {
+            String after = null;
+            Batch batch;
+            do {
+                batch = fetch(type, filters, after, EXPORT_PAGE_SIZE, columns, toDTO, rowMapper);
+                for (Object item : batch.items) {
+                    out.write(objectMapper.writeValueAsBytes(item));
+                    out.write('\n');
+                }
+                out.flush();
+                after = batch.lastId;
+                // The loaded entities are already mapped; keep the persistence context from growing
+                entityManager.clear();
+            } while (batch.more);
+        };
+    }
+    
+    // Null selects whole entities; otherwise the requested attributes, id first
+    private <E> List<String> columns(Class<E> type, String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> known = new TreeSet<>();
+        for (Attribute<? super E, ?> attribute : entityManager.getMetamodel().entity(type).getSingularAttributes()) {
+            known.add(attribute.getName());
+        }
+        Set<String> columns = new LinkedHashSet<>();
+        columns.add(ID);
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!known.contains(name)) {
+                throw new BadRequestException("Unknown field '" + name + "'; expected any of " + known);
+            }
+            columns.add(name);
+        }
+        return new ArrayList<>(columns);
+    }
+    
+    private <E> Batch fetch(Class<E> type, Map<String, Object> filters, String after, int limit, List<String> columns,
+                            Function<E, ?> toDTO, UnaryOperator<Map<String, Object>> rowMapper) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        // One extra row tells whether another page follows
+        Batch batch = new Batch();
+        if (columns == null) {
+            CriteriaQuery<E> query = cb.createQuery(type);
+            Root<E> root = query.from(type);
+            query.select(root).where(where(cb, root, filters, after)).orderBy(cb.asc(root.get(ID)));
+            for (E entity : entityManager.createQuery(query).setMaxResults(limit + 1).getResultList()) {
+                if (batch.items.size() == limit) {
+                    batch.more = true;
+                    break;
+                }
+                Object id = entityManager.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+                batch.lastId = String.valueOf(id);
+                batch.items.add(toDTO.apply(entity));
+            }
+            return batch;
+        }
+        
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<E> root = query.from(type);
+        List<Selection<?>> selections = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            selections.add(root.get(column).alias(column));
+        }
+        query.multiselect(selections).where(where(cb, root, filters, after)).orderBy(cb.asc(root.get(ID)));
+        for (Tuple tuple : entityManager.createQuery(query).setMaxResults(limit + 1).getResultList()) {
+            if (batch.items.size() == limit) {
+                batch.more = true;
+                break;
+            }
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String column : columns) {
+                Object value = tuple.get(column);
+                row.put(column, value instanceof Enum<?> constant ? constant.name() : value);
+            }
+            batch.lastId = (String) row.get(ID);
+            batch.items.add(rowMapper.apply(row));
+        }
+        return batch;
+    }
+    
+    private static <E> Predicate[] where(CriteriaBuilder cb, Root<E> root, Map<String, Object> filters, String after) {
+        List<Predicate> predicates = new ArrayList<>();
+        filters.forEach((name, value) -> predicates.add(cb.equal(root.get(name), value)));
+        if (after != null) {
+            predicates.add(cb.greaterThan(root.<String>get(ID), after));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+    
+    // Opaque to clients: the last id of the previous page
+    private static String encodeCursor(String lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+    
+    private static final class Batch {
+        private final List<Object> items = new ArrayList<>();
+        private String lastId;
+        private boolean more;
+    }
+}
@@ -9,6 +9,7 @@ import java.util.List;
 @Repository
 public interface CameraRepository extends JpaRepository<Camera, String> {
     List<Camera> findByStatus(Camera.Status status);
+    long countByStatus(Camera.Status status);
     List<Camera> findByLocationContaining(String location);
 }
 
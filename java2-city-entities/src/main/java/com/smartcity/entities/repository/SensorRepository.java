@@ -10,6 +10,7 @@ import java.util.List;
 public interface SensorRepository extends JpaRepository<Sensor, String> {
     List<Sensor> findByType(String type);
     List<Sensor> findByStatus(Sensor.Status status);
+    long countByStatus(Sensor.Status status);
     List<Sensor> findByLocationContaining(String location);
 }
 
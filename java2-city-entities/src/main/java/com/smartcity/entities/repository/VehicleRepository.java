@@ -12,6 +12,7 @@ public interface VehicleRepository extends JpaRepository<Vehicle, String> {
     Optional<Vehicle> findByLicensePlate(String licensePlate);
     List<Vehicle> findByType(String type);
     List<Vehicle> findByStatus(Vehicle.Status status);
+    long countByStatus(Vehicle.Status status);
     List<Vehicle> findByDepartment(String department);
 }
 
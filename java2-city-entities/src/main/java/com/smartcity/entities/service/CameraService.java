@@ -1,14 +1,23 @@
 package com.smartcity.entities.service;
 
 import com.smartcity.entities.dto.CameraDTO;
+import com.smartcity.entities.dto.CursorPageDTO;
 import com.smartcity.entities.entity.Camera;
+import com.smartcity.entities.exception.BadRequestException;
 import com.smartcity.entities.exception.ResourceNotFoundException;
+import com.smartcity.entities.geo.AfterCommit;
+import com.smartcity.entities.geo.GridIndex;
+import com.smartcity.entities.paging.KeysetPager;
 import com.smartcity.entities.repository.CameraRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 @Service
@@ -16,12 +25,16 @@ import java.util.stream.Collectors;
 public class CameraService {
     
     private final CameraRepository cameraRepository;
+    private final GridIndex<CameraDTO> cameraIndex;
+    private final KeysetPager keysetPager;
     
     @Transactional
     public CameraDTO createCamera(CameraDTO cameraDTO) {
         Camera camera = mapToEntity(cameraDTO);
         Camera saved = cameraRepository.save(camera);
-        return mapToDTO(saved);
+        CameraDTO dto = mapToDTO(saved);
+        AfterCommit.run(() -> cameraIndex.put(dto));
+        return dto;
     }
     
     public CameraDTO getCameraById(String id) {
@@ -43,6 +56,37 @@ public class CameraService {
                 .collect(Collectors.toList());
     }
     
+    public long countCameras(String status) {
+        if (status == null) {
+            return cameraRepository.count();
+        }
+        return cameraRepository.countByStatus(parseStatus(status));
+    }
+    
+    // Served from the in-memory grid index; status is optional
+    public List<CameraDTO> getCamerasNear(double lat, double lon, double radiusM, String status, int limit) {
+        return cameraIndex.near(lat, lon, radiusM, limit, item -> status == null || status.equalsIgnoreCase(item.getStatus()));
+    }
+    
+    public List<CameraDTO> getCamerasWithin(double minLat, double minLon, double maxLat, double maxLon,
+                                            String status, int limit) {
+        return cameraIndex.within(minLat, minLon, maxLat, maxLon, limit,
+                item -> status == null || status.equalsIgnoreCase(item.getStatus()));
+    }
+    
+    // Keyset-paginated by id; fields= selects only the listed columns
+    public CursorPageDTO<Object> getCamerasPage(String cursor, int limit, String fields, String status) {
+        return keysetPager.page(Camera.class, pageFilters(status), cursor, limit, fields, this::mapToDTO, UnaryOperator.identity());
+    }
+    
+    public StreamingResponseBody exportCameras(String fields, String status) {
+        return keysetPager.export(Camera.class, pageFilters(status), fields, this::mapToDTO, UnaryOperator.identity());
+    }
+    
+    public void reloadSpatialIndex() {
+        cameraIndex.replaceAll(this::getAllCameras);
+    }
+    
     @Transactional
     public CameraDTO updateCamera(String id, CameraDTO cameraDTO) {
         Camera camera = cameraRepository.findById(id)
@@ -50,7 +94,9 @@ public class CameraService {
         
         updateEntityFromDTO(camera, cameraDTO);
         Camera saved = cameraRepository.save(camera);
-        return mapToDTO(saved);
+        CameraDTO dto = mapToDTO(saved);
+        AfterCommit.run(() -> cameraIndex.put(dto));
+        return dto;
     }
     
     @Transactional
@@ -59,6 +105,19 @@ public class CameraService {
             throw new ResourceNotFoundException("Camera not found with id: " + id);
         }
         cameraRepository.deleteById(id);
+        AfterCommit.run(() -> cameraIndex.remove(id));
+    }
+    
+    private static Map<String, Object> pageFilters(String status) {
+        return KeysetPager.filters("status", status == null ? null : parseStatus(status));
+    }
+    
+    private static Camera.Status parseStatus(String status) {
+        try {
+            return Camera.Status.valueOf(status.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown camera status: " + status);
+        }
     }
     
     private Camera mapToEntity(CameraDTO dto) {
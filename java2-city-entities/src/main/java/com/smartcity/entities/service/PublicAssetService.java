@@ -1,14 +1,21 @@
 package com.smartcity.entities.service;
 
+import com.smartcity.entities.dto.CursorPageDTO;
 import com.smartcity.entities.dto.PublicAssetDTO;
 import com.smartcity.entities.entity.PublicAsset;
 import com.smartcity.entities.exception.ResourceNotFoundException;
+import com.smartcity.entities.geo.AfterCommit;
+import com.smartcity.entities.geo.GridIndex;
+import com.smartcity.entities.paging.KeysetPager;
 import com.smartcity.entities.repository.PublicAssetRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 @Service
@@ -16,12 +23,16 @@ import java.util.stream.Collectors;
 public class PublicAssetService {
     
     private final PublicAssetRepository assetRepository;
+    private final GridIndex<PublicAssetDTO> assetIndex;
+    private final KeysetPager keysetPager;
     
     @Transactional
     public PublicAssetDTO createAsset(PublicAssetDTO assetDTO) {
         PublicAsset asset = mapToEntity(assetDTO);
         PublicAsset saved = assetRepository.save(asset);
-        return mapToDTO(saved);
+        PublicAssetDTO dto = mapToDTO(saved);
+        AfterCommit.run(() -> assetIndex.put(dto));
+        return dto;
     }
     
     public PublicAssetDTO getAssetById(String id) {
@@ -42,6 +53,30 @@ public class PublicAssetService {
                 .collect(Collectors.toList());
     }
     
+    // Served from the in-memory grid index; type is optional
+    public List<PublicAssetDTO> getAssetsNear(double lat, double lon, double radiusM, String type, int limit) {
+        return assetIndex.near(lat, lon, radiusM, limit, item -> type == null || type.equalsIgnoreCase(item.getType()));
+    }
+    
+    public List<PublicAssetDTO> getAssetsWithin(double minLat, double minLon, double maxLat, double maxLon,
+                                                String type, int limit) {
+        return assetIndex.within(minLat, minLon, maxLat, maxLon, limit,
+                item -> type == null || type.equalsIgnoreCase(item.getType()));
+    }
+    
+    // Keyset-paginated by id; fields= selects only the listed columns
+    public CursorPageDTO<Object> getAssetsPage(String cursor, int limit, String fields, String type) {
+        return keysetPager.page(PublicAsset.class, pageFilters(type), cursor, limit, fields, this::mapToDTO, UnaryOperator.identity());
+    }
+    
+    public StreamingResponseBody exportAssets(String fields, String type) {
+        return keysetPager.export(PublicAsset.class, pageFilters(type), fields, this::mapToDTO, UnaryOperator.identity());
+    }
+    
+    public void reloadSpatialIndex() {
+        assetIndex.replaceAll(this::getAllAssets);
+    }
+    
     @Transactional
     public PublicAssetDTO updateAsset(String id, PublicAssetDTO assetDTO) {
         PublicAsset asset = assetRepository.findById(id)
@@ -49,7 +84,9 @@ public class PublicAssetService {
         
         updateEntityFromDTO(asset, assetDTO);
         PublicAsset saved = assetRepository.save(asset);
-        return mapToDTO(saved);
+        PublicAssetDTO dto = mapToDTO(saved);
+        AfterCommit.run(() -> assetIndex.put(dto));
+        return dto;
     }
     
     @Transactional
@@ -58,6 +95,11 @@ public class PublicAssetService {
             throw new ResourceNotFoundException("Asset not found with id: " + id);
         }
         assetRepository.deleteById(id);
+        AfterCommit.run(() -> assetIndex.remove(id));
+    }
+    
+    private static Map<String, Object> pageFilters(String type) {
+        return KeysetPager.filters("type", type);
     }
     
     private PublicAsset mapToEntity(PublicAssetDTO dto) {
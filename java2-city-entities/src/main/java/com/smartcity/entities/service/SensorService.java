@@ -1,14 +1,23 @@
 package com.smartcity.entities.service;
 
+import com.smartcity.entities.dto.CursorPageDTO;
 import com.smartcity.entities.dto.SensorDTO;
 import com.smartcity.entities.entity.Sensor;
+import com.smartcity.entities.exception.BadRequestException;
 import com.smartcity.entities.exception.ResourceNotFoundException;
+import com.smartcity.entities.geo.AfterCommit;
+import com.smartcity.entities.geo.GridIndex;
+import com.smartcity.entities.paging.KeysetPager;
 import com.smartcity.entities.repository.SensorRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 @Service
@@ -16,12 +25,16 @@ import java.util.stream.Collectors;
 public class SensorService {
     
     private final SensorRepository sensorRepository;
+    private final GridIndex<SensorDTO> sensorIndex;
+    private final KeysetPager keysetPager;
     
     @Transactional
     public SensorDTO createSensor(SensorDTO sensorDTO) {
         Sensor sensor = mapToEntity(sensorDTO);
         Sensor saved = sensorRepository.save(sensor);
-        return mapToDTO(saved);
+        SensorDTO dto = mapToDTO(saved);
+        AfterCommit.run(() -> sensorIndex.put(dto));
+        return dto;
     }
     
     public SensorDTO getSensorById(String id) {
@@ -49,6 +62,37 @@ public class SensorService {
                 .collect(Collectors.toList());
     }
     
+    public long countSensors(String status) {
+        if (status == null) {
+            return sensorRepository.count();
+        }
+        return sensorRepository.countByStatus(parseStatus(status));
+    }
+    
+    // Served from the in-memory grid index; type is optional
+    public List<SensorDTO> getSensorsNear(double lat, double lon, double radiusM, String type, int limit) {
+        return sensorIndex.near(lat, lon, radiusM, limit, item -> type == null || type.equalsIgnoreCase(item.getType()));
+    }
+    
+    public List<SensorDTO> getSensorsWithin(double minLat, double minLon, double maxLat, double maxLon,
+                                            String type, int limit) {
+        return sensorIndex.within(minLat, minLon, maxLat, maxLon, limit,
+                item -> type == null || type.equalsIgnoreCase(item.getType()));
+    }
+    
+    // Keyset-paginated by id; fields= selects only the listed columns
+    public CursorPageDTO<Object> getSensorsPage(String cursor, int limit, String fields, String type, String status) {
+        return keysetPager.page(Sensor.class, pageFilters(type, status), cursor, limit, fields, this::mapToDTO, UnaryOperator.identity());
+    }
+    
+    public StreamingResponseBody exportSensors(String fields, String type, String status) {
+        return keysetPager.export(Sensor.class, pageFilters(type, status), fields, this::mapToDTO, UnaryOperator.identity());
+    }
+    
+    public void reloadSpatialIndex() {
+        sensorIndex.replaceAll(this::getAllSensors);
+    }
+    
     @Transactional
     public SensorDTO updateSensor(String id, SensorDTO sensorDTO) {
         Sensor sensor = sensorRepository.findById(id)
@@ -56,7 +100,9 @@ public class SensorService {
         
         updateEntityFromDTO(sensor, sensorDTO);
         Sensor saved = sensorRepository.save(sensor);
-        return mapToDTO(saved);
+        SensorDTO dto = mapToDTO(saved);
+        AfterCommit.run(() -> sensorIndex.put(dto));
+        return dto;
     }
     
     @Transactional
@@ -65,6 +111,19 @@ public class SensorService {
             throw new ResourceNotFoundException("Sensor not found with id: " + id);
         }
         sensorRepository.deleteById(id);
+        AfterCommit.run(() -> sensorIndex.remove(id));
+    }
+    
+    private static Map<String, Object> pageFilters(String type, String status) {
+        return KeysetPager.filters("type", type, "status", status == null ? null : parseStatus(status));
+    }
+    
+    private static Sensor.Status parseStatus(String status) {
+        try {
+            return Sensor.Status.valueOf(status.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown sensor status: " + status);
+        }
     }
     
     private Sensor mapToEntity(SensorDTO dto) {
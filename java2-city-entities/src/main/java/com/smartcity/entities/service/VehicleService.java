@@ -1,16 +1,30 @@
 package com.smartcity.entities.service;
 
+import com.smartcity.entities.dto.CursorPageDTO;
+import com.smartcity.entities.dto.NearestVehicleDTO;
+import com.smartcity.entities.dto.TelemetryAckDTO;
 import com.smartcity.entities.dto.VehicleDTO;
+import com.smartcity.entities.dto.VehiclePingDTO;
+import com.smartcity.entities.dto.VehicleTrackDTO;
 import com.smartcity.entities.entity.Vehicle;
 import com.smartcity.entities.exception.BadRequestException;
 import com.smartcity.entities.exception.ResourceNotFoundException;
+import com.smartcity.entities.geo.AfterCommit;
+import com.smartcity.entities.geo.GridIndex;
+import com.smartcity.entities.paging.KeysetPager;
 import com.smartcity.entities.repository.VehicleRepository;
+import com.smartcity.entities.telemetry.TrajectoryStore;
+import com.smartcity.entities.telemetry.VehiclePositionBuffer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -18,6 +32,10 @@ import java.util.stream.Collectors;
 public class VehicleService {
     
     private final VehicleRepository vehicleRepository;
+    private final GridIndex<VehicleDTO> vehicleIndex;
+    private final KeysetPager keysetPager;
+    private final VehiclePositionBuffer positionBuffer;
+    private final TrajectoryStore trajectoryStore;
     
     @Transactional
     public VehicleDTO createVehicle(VehicleDTO vehicleDTO) {
@@ -27,7 +45,9 @@ public class VehicleService {
         
         Vehicle vehicle = mapToEntity(vehicleDTO);
         Vehicle saved = vehicleRepository.save(vehicle);
-        return mapToDTO(saved);
+        VehicleDTO dto = mapToDTO(saved);
+        AfterCommit.run(() -> vehicleIndex.put(dto));
+        return dto;
     }
     
     public VehicleDTO getVehicleById(String id) {
@@ -48,6 +68,119 @@ public class VehicleService {
                 .collect(Collectors.toList());
     }
     
+    public long countVehicles(String status) {
+        if (status == null) {
+            return vehicleRepository.count();
+        }
+        return vehicleRepository.countByStatus(parseStatus(status));
+    }
+    
+    // Served from the in-memory grid index; type is optional
+    public List<VehicleDTO> getVehiclesNear(double lat, double lon, double radiusM, String type, int limit) {
+        return vehicleIndex.near(lat, lon, radiusM, limit, item -> type == null || type.equalsIgnoreCase(item.getType()));
+    }
+    
+    public List<VehicleDTO> getVehiclesWithin(double minLat, double minLon, double maxLat, double maxLon,
+                                              String type, int limit) {
+        return vehicleIndex.within(minLat, minLon, maxLat, maxLon, limit,
+                item -> type == null || type.equalsIgnoreCase(item.getType()));
+    }
+    
+    // Dispatch query: the k closest vehicles in the given status, optionally of one type
+    public List<NearestVehicleDTO> findNearestVehicles(double lat, double lon, int k, String status,
+                                                       String type, double maxDistanceM) {
+        String wanted = parseStatus(status).name();
+        return vehicleIndex.nearest(lat, lon, k, maxDistanceM,
+                        vehicle -> wanted.equals(vehicle.getStatus())
+                                && (type == null || type.equalsIgnoreCase(vehicle.getType())))
+                .stream()
+                .map(neighbor -> NearestVehicleDTO.builder()
+                        .vehicle(neighbor.getValue())
+                        .distanceMeters(neighbor.getDistanceMeters())
+                        .build())
+                .collect(Collectors.toList());
+    }
+    
+    // GPS pings skip JPA: they are buffered in memory and written to the database in batches
+    public void recordPing(String id, Double latitude, Double longitude) {
+        positionBuffer.accept(VehiclePingDTO.builder()
+                .vehicleId(id)
+                .latitude(latitude)
+                .longitude(longitude)
+                .build());
+    }
+    
+    // Invalid pings and pings for unknown vehicles are rejected one by one; the rest of the
+    // batch is still accepted
+    public TelemetryAckDTO recordPings(List<VehiclePingDTO> pings) {
+        int accepted = 0;
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < pings.size(); i++) {
+            try {
+                positionBuffer.accept(pings.get(i));
+                accepted++;
+            } catch (BadRequestException | ResourceNotFoundException e) {
+                if (errors.size() < 10) {
+                    errors.add("pings[" + i + "]: " + e.getMessage());
+                }
+            }
+        }
+        return TelemetryAckDTO.builder()
+                .accepted(accepted)
+                .rejected(pings.size() - accepted)
+                .errors(errors)
+                .build();
+    }
+    
+    // Served from memory; the database is read only for a vehicle not in the index
+    public VehiclePingDTO getVehicleLocation(String id) {
+        VehicleDTO indexed = vehicleIndex.get(id);
+        VehicleDTO vehicle = indexed != null ? positionBuffer.overlay(indexed) : getVehicleById(id);
+        return VehiclePingDTO.builder()
+                .vehicleId(vehicle.getId())
+                .latitude(vehicle.getCurrentLatitude())
+                .longitude(vehicle.getCurrentLongitude())
+                .timestamp(vehicle.getLastUpdate())
+                .build();
+    }
+    
+    public Map<String, Object> getTelemetryStats() {
+        return positionBuffer.getStats();
+    }
+    
+    // Recorded path between from and to (default: the last hour), oldest first
+    public VehicleTrackDTO getVehicleTrack(String id, LocalDateTime from, LocalDateTime to, double toleranceM) {
+        if (vehicleIndex.get(id) == null && !vehicleRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Vehicle not found with id: " + id);
+        }
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusHours(1);
+        if (!start.isBefore(end)) {
+            throw new BadRequestException("from must be before to");
+        }
+        if (toleranceM < 0) {
+            throw new BadRequestException("toleranceM must not be negative");
+        }
+        return trajectoryStore.query(id, start, end, toleranceM);
+    }
+    
+    public Map<String, Object> getTrajectoryStats() {
+        return trajectoryStore.getStats();
+    }
+    
+    // Keyset-paginated by id; fields= selects only the listed columns
+    public CursorPageDTO<Object> getVehiclesPage(String cursor, int limit, String fields, String type) {
+        return keysetPager.page(Vehicle.class, pageFilters(type), cursor, limit, fields, this::mapToDTO, this::overlayPosition);
+    }
+    
+    public StreamingResponseBody exportVehicles(String fields, String type) {
+        return keysetPager.export(Vehicle.class, pageFilters(type), fields, this::mapToDTO, this::overlayPosition);
+    }
+    
+    public void reloadSpatialIndex() {
+        vehicleIndex.replaceAll(this::getAllVehicles);
+    }
+    
     @Transactional
     public VehicleDTO updateVehicle(String id, VehicleDTO vehicleDTO) {
         Vehicle vehicle = vehicleRepository.findById(id)
@@ -61,7 +194,9 @@ public class VehicleService {
         
         updateEntityFromDTO(vehicle, vehicleDTO);
         Vehicle saved = vehicleRepository.save(vehicle);
-        return mapToDTO(saved);
+        VehicleDTO dto = mapToDTO(saved);
+        AfterCommit.run(() -> vehicleIndex.put(dto));
+        return dto;
     }
     
     @Transactional
@@ -74,7 +209,12 @@ public class VehicleService {
         vehicle.setLastUpdate(LocalDateTime.now());
         
         Vehicle saved = vehicleRepository.save(vehicle);
-        return mapToDTO(saved);
+        VehicleDTO dto = mapToDTO(saved);
+        AfterCommit.run(() -> {
+            vehicleIndex.put(dto);
+            trajectoryStore.append(id, latitude, longitude, saved.getLastUpdate());
+        });
+        return dto;
     }
     
     @Transactional
@@ -83,6 +223,36 @@ public class VehicleService {
             throw new ResourceNotFoundException("Vehicle not found with id: " + id);
         }
         vehicleRepository.deleteById(id);
+        AfterCommit.run(() -> {
+            vehicleIndex.remove(id);
+            positionBuffer.forget(id);
+        });
+    }
+    
+    private static Vehicle.Status parseStatus(String status) {
+        try {
+            return Vehicle.Status.valueOf(status.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown vehicle status: " + status);
+        }
+    }
+    
+    private static Map<String, Object> pageFilters(String type) {
+        return KeysetPager.filters("type", type);
+    }
+    
+    // Buffered pings override the stored position in projected rows, as in mapToDTO
+    private Map<String, Object> overlayPosition(Map<String, Object> row) {
+        VehiclePositionBuffer.Position position = positionBuffer.latest((String) row.get("id"));
+        Object stored = row.get("lastUpdate");
+        if (position == null || (stored instanceof LocalDateTime lastUpdate && !position.getTimestamp().isAfter(lastUpdate))) {
+            return row;
+        }
+        // Only the columns that were requested
+        row.replace("currentLatitude", position.getLatitude());
+        row.replace("currentLongitude", position.getLongitude());
+        row.replace("lastUpdate", position.getTimestamp());
+        return row;
     }
     
     private Vehicle mapToEntity(VehicleDTO dto) {
@@ -121,8 +291,9 @@ public class VehicleService {
         }
     }
     
+    // Positions buffered from pings but not yet flushed override the stored ones
     private VehicleDTO mapToDTO(Vehicle vehicle) {
-        return VehicleDTO.builder()
+        return positionBuffer.overlay(VehicleDTO.builder()
                 .id(vehicle.getId())
                 .licensePlate(vehicle.getLicensePlate())
                 .type(vehicle.getType())
@@ -136,7 +307,7 @@ public class VehicleService {
                 .description(vehicle.getDescription())
                 .createdAt(vehicle.getCreatedAt())
                 .updatedAt(vehicle.getUpdatedAt())
-                .build();
+                .build());
     }
 }
 
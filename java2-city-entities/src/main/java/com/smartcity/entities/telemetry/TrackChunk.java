@@ -0,0 +1,107 @@
+package com.smartcity.entities.telemetry;
+
+import java.util.Arrays;
+
+// A run of consecutive positions of one vehicle packed into a byte array. Coordinates are
+// fixed-point microdegrees (about 0.1 m); the first point is stored whole and every later one
+// as zig-zag varint deltas of time, latitude and longitude from its predecessor, so a vehicle
+// pinging every second typically costs 5-7 bytes a point. Not thread-safe.
+final class TrackChunk {
+    
+    static final double SCALE = 1e6;
+    
+    private byte[] bytes = new byte[64];
+    private int length;
+    private int count;
+    private long firstTime;
+    private long lastTime;
+    private int lastLat;
+    private int lastLon;
+    
+    void append(long time, int lat, int lon) {
+        if (count == 0) {
+            firstTime = time;
+            writeVarLong(zigZag(time));
+            writeVarLong(zigZag(lat));
+            writeVarLong(zigZag(lon));
+        } else {
+            writeVarLong(zigZag(time - lastTime));
+            writeVarLong(zigZag((long) lat - lastLat));
+            writeVarLong(zigZag((long) lon - lastLon));
+        }
+        lastTime = time;
+        lastLat = lat;
+        lastLon = lon;
+        count++;
+    }
+    
+    // Appends the points with startTime <= time <= endTime
+    void decodeInto(TrackPoints points, long startTime, long endTime) {
+        int[] position = {0};
+        long time = 0;
+        long lat = 0;
+        long lon = 0;
+        for (int i = 0; i < count; i++) {
+            time += unZigZag(readVarLong(position));
+            lat += unZigZag(readVarLong(position));
+            lon += unZigZag(readVarLong(position));
+            if (time > endTime) {
+                return;
+            }
+            if (time >= startTime) {
+                points.add(time, (int) lat, (int) lon);
+            }
+        }
+    }
+    
+    // Drops the spare capacity once no more points will be appended
+    void trim() {
+        bytes = Arrays.copyOf(bytes, length);
+    }
+    
+    int count() {
+        return count;
+    }
+    
+    int sizeBytes() {
+        return bytes.length;
+    }
+    
+    long firstTime() {
+        return firstTime;
+    }
+    
+    long lastTime() {
+        return lastTime;
+    }
+    
+    private void writeVarLong(long value) {
+        if (length + 10 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + 10));
+        }
+        while ((value & ~0x7FL) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+    }
+    
+    private long readVarLong(int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+    
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
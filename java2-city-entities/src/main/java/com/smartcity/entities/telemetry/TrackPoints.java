@@ -0,0 +1,102 @@
+package com.smartcity.entities.telemetry;
+
+import java.util.Arrays;
+
+// Decoded track positions in parallel primitive arrays, oldest first
+final class TrackPoints {
+    
+    private long[] times = new long[16];
+    private int[] lats = new int[16];
+    private int[] lons = new int[16];
+    private int size;
+    
+    void add(long time, int lat, int lon) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            lats = Arrays.copyOf(lats, size * 2);
+            lons = Arrays.copyOf(lons, size * 2);
+        }
+        times[size] = time;
+        lats[size] = lat;
+        lons[size] = lon;
+        size++;
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    long time(int i) {
+        return times[i];
+    }
+    
+    int lat(int i) {
+        return lats[i];
+    }
+    
+    int lon(int i) {
+        return lons[i];
+    }
+    
+    // Douglas-Peucker: the fewest points, always including both ends, such that no dropped
+    // point lies further than toleranceMeters from the simplified path
+    TrackPoints simplify(double toleranceMeters) {
+        if (size <= 2 || !(toleranceMeters > 0)) {
+            return this;
+        }
+        boolean[] keep = new boolean[size];
+        keep[0] = true;
+        keep[size - 1] = true;
+        // Local equirectangular projection; accurate to well under a metre across a city
+        double metersPerUnitLat = 111_320.0 / TrackChunk.SCALE;
+        double metersPerUnitLon = metersPerUnitLat * Math.cos(Math.toRadians(lats[0] / TrackChunk.SCALE));
+        
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = size - 1;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double ax = lons[first] * metersPerUnitLon;
+            double ay = lats[first] * metersPerUnitLat;
+            double bx = lons[last] * metersPerUnitLon;
+            double by = lats[last] * metersPerUnitLat;
+            double worst = toleranceMeters;
+            int worstIndex = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = segmentDistance(lons[i] * metersPerUnitLon, lats[i] * metersPerUnitLat, ax, ay, bx, by);
+                if (distance > worst) {
+                    worst = distance;
+                    worstIndex = i;
+                }
+            }
+            if (worstIndex >= 0) {
+                keep[worstIndex] = true;
+                if (top + 4 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                stack[top++] = first;
+                stack[top++] = worstIndex;
+                stack[top++] = worstIndex;
+                stack[top++] = last;
+            }
+        }
+        
+        TrackPoints simplified = new TrackPoints();
+        for (int i = 0; i < size; i++) {
+            if (keep[i]) {
+                simplified.add(times[i], lats[i], lons[i]);
+            }
+        }
+        return simplified;
+    }
+    
+    private static double segmentDistance(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        return Math.hypot(px - (ax + t * dx), py - (ay + t * dy));
+    }
+}
@@ -0,0 +1,268 @@
+package com.smartcity.entities.telemetry;
+
+import com.smartcity.entities.dto.TrackPointDTO;
+import com.smartcity.entities.dto.VehicleTrackDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Recent position history per vehicle, kept in memory as delta/varint encoded chunks of up to
+// chunk-minutes each. The open chunk takes appends; once it is full or idle it is sealed, and
+// the maintenance thread later rewrites each sealed chunk with Douglas-Peucker so that points
+// which lie within simplify-tolerance-m of the path between their neighbours are dropped. A
+// time-range query decodes only the chunks overlapping the range. Chunks older than the
+// retention are discarded, and history does not survive a restart.
+@Slf4j
+@Component
+public class TrajectoryStore {
+    
+    private static final long MAINTENANCE_INTERVAL_MS = 60_000;
+    
+    private final long chunkSpanMs;
+    private final int chunkMaxPoints;
+    private final double simplifyToleranceMeters;
+    private final long retentionMs;
+    private final int maxPointsPerQuery;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Track> tracks = new ConcurrentHashMap<>();
+    
+    public TrajectoryStore(@Value("${trajectory.chunk-minutes:60}") long chunkMinutes,
+                           @Value("${trajectory.chunk-max-points:4096}") int chunkMaxPoints,
+                           @Value("${trajectory.simplify-tolerance-m:3}") double simplifyToleranceMeters,
+                           @Value("${trajectory.retention-hours:24}") long retentionHours,
+                           @Value("${trajectory.max-points-per-query:20000}") int maxPointsPerQuery) {
+        this.chunkSpanMs = TimeUnit.MINUTES.toMillis(Math.max(1, chunkMinutes));
+        this.chunkMaxPoints = Math.max(2, chunkMaxPoints);
+        this.simplifyToleranceMeters = simplifyToleranceMeters;
+        this.retentionMs = TimeUnit.HOURS.toMillis(Math.max(1, retentionHours));
+        this.maxPointsPerQuery = Math.max(1, maxPointsPerQuery);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "trajectory-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::maintain, MAINTENANCE_INTERVAL_MS, MAINTENANCE_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+    
+    // Positions must arrive oldest first per vehicle; one older than the last stored is dropped
+    public void append(String vehicleId, double latitude, double longitude, LocalDateTime timestamp) {
+        long time = toMillis(timestamp);
+        if (time < toMillis(LocalDateTime.now()) - retentionMs) {
+            return;
+        }
+        int lat = (int) Math.round(latitude * TrackChunk.SCALE);
+        int lon = (int) Math.round(longitude * TrackChunk.SCALE);
+        // Under the map's per-key lock, so maintenance cannot drop the track mid-append
+        tracks.compute(vehicleId, (id, track) -> {
+            Track target = track != null ? track : new Track();
+            target.append(time, lat, lon);
+            return target;
+        });
+    }
+    
+    public void forget(String vehicleId) {
+        tracks.remove(vehicleId);
+    }
+    
+    // The stored path between from and to, oldest first; toleranceMeters > 0 simplifies it further.
+    // Past max-points-per-query the rest is left for a follow-up query from nextFrom, which is
+    // the time of the first point left out. A page ends between points sharing a time only when
+    // more than a page of them do, and then the rest of that millisecond is skipped
+    public VehicleTrackDTO query(String vehicleId, LocalDateTime from, LocalDateTime to, double toleranceMeters) {
+        TrackPoints points = new TrackPoints();
+        Track track = tracks.get(vehicleId);
+        if (track != null) {
+            track.decodeInto(points, toMillis(from), toMillis(to));
+        }
+        int stored = points.size();
+        TrackPoints path = points.simplify(toleranceMeters);
+        int returned = Math.min(path.size(), maxPointsPerQuery);
+        LocalDateTime nextFrom = null;
+        if (returned < path.size()) {
+            int end = returned;
+            while (end > 0 && path.time(end - 1) == path.time(returned)) {
+                end--;
+            }
+            returned = end > 0 ? end : returned;
+            nextFrom = toDateTime(end > 0 ? path.time(returned) : path.time(returned) + 1);
+        }
+        List<TrackPointDTO> result = new ArrayList<>(returned);
+        for (int i = 0; i < returned; i++) {
+            result.add(TrackPointDTO.builder()
+                    .latitude(path.lat(i) / TrackChunk.SCALE)
+                    .longitude(path.lon(i) / TrackChunk.SCALE)
+                    .timestamp(toDateTime(path.time(i)))
+                    .build());
+        }
+        return VehicleTrackDTO.builder()
+                .vehicleId(vehicleId)
+                .from(from)
+                .to(to)
+                .storedPoints(stored)
+                .truncated(returned < path.size())
+                .nextFrom(nextFrom)
+                .points(result)
+                .build();
+    }
+    
+    public Map<String, Object> getStats() {
+        long chunks = 0;
+        long points = 0;
+        long bytes = 0;
+        for (Track track : tracks.values()) {
+            synchronized (track) {
+                for (TrackChunk chunk : track.chunks()) {
+                    chunks++;
+                    points += chunk.count();
+                    bytes += chunk.sizeBytes();
+                }
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("vehicles", tracks.size());
+        stats.put("chunks", chunks);
+        stats.put("points", points);
+        stats.put("bytes", bytes);
+        stats.put("bytesPerPoint", points == 0 ? 0.0 : (double) bytes / points);
+        stats.put("retentionHours", TimeUnit.MILLISECONDS.toHours(retentionMs));
+        return stats;
+    }
+    
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+    
+    // Seals idle chunks, simplifies sealed ones and drops what fell out of the retention
+    private void maintain() {
+        long started = System.currentTimeMillis();
+        // Same clock as the LocalDateTime timestamps the points were stored with
+        long now = toMillis(LocalDateTime.now());
+        long cutoff = now - retentionMs;
+        try {
+            tracks.forEach((vehicleId, track) -> {
+                track.maintain(now, cutoff);
+                tracks.computeIfPresent(vehicleId, (id, current) -> current.isEmpty() ? null : current);
+            });
+            log.debug("Trajectory maintenance over {} vehicles took {} ms", tracks.size(),
+                    System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("Trajectory maintenance failed: {}", e.getMessage());
+        }
+    }
+    
+    private static long toMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+    
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+    
+    private final class Track {
+        private final List<TrackChunk> sealed = new ArrayList<>();
+        // Sealed chunks still holding every point, oldest first
+        private final List<TrackChunk> unsimplified = new ArrayList<>();
+        private TrackChunk open;
+        private long lastTime = Long.MIN_VALUE;
+        
+        private synchronized void append(long time, int lat, int lon) {
+            if (time < lastTime) {
+                return;
+            }
+            if (open != null && (time - open.firstTime() >= chunkSpanMs || open.count() >= chunkMaxPoints)) {
+                seal();
+            }
+            if (open == null) {
+                open = new TrackChunk();
+            }
+            open.append(time, lat, lon);
+            lastTime = time;
+        }
+        
+        private synchronized void decodeInto(TrackPoints points, long startTime, long endTime) {
+            for (TrackChunk chunk : chunks()) {
+                if (chunk.lastTime() >= startTime && chunk.firstTime() <= endTime) {
+                    chunk.decodeInto(points, startTime, endTime);
+                }
+            }
+        }
+        
+        private void maintain(long now, long cutoff) {
+            List<TrackChunk> pending;
+            synchronized (this) {
+                if (open != null && now - open.lastTime() >= chunkSpanMs) {
+                    seal();
+                }
+                while (!sealed.isEmpty() && sealed.get(0).lastTime() < cutoff) {
+                    unsimplified.remove(sealed.remove(0));
+                }
+                pending = new ArrayList<>(unsimplified);
+                unsimplified.clear();
+            }
+            // Sealed chunks never change, so they are simplified outside the lock and swapped in
+            for (TrackChunk chunk : pending) {
+                TrackChunk simplified = simplified(chunk);
+                synchronized (this) {
+                    int index = sealed.indexOf(chunk);
+                    // Gone when it expired meanwhile
+                    if (index >= 0) {
+                        sealed.set(index, simplified);
+                    }
+                }
+            }
+        }
+        
+        private synchronized boolean isEmpty() {
+            return open == null && sealed.isEmpty();
+        }
+        
+        // Oldest first; callers hold the lock
+        private List<TrackChunk> chunks() {
+            List<TrackChunk> chunks = new ArrayList<>(sealed);
+            if (open != null) {
+                chunks.add(open);
+            }
+            return chunks;
+        }
+        
+        private void seal() {
+            open.trim();
+            sealed.add(open);
+            unsimplified.add(open);
+            open = null;
+        }
+        
+        private TrackChunk simplified(TrackChunk chunk) {
+            if (!(simplifyToleranceMeters > 0)) {
+                return chunk;
+            }
+            TrackPoints points = new TrackPoints();
+            chunk.decodeInto(points, Long.MIN_VALUE, Long.MAX_VALUE);
+            TrackPoints kept = points.simplify(simplifyToleranceMeters);
+            if (kept.size() == points.size()) {
+                return chunk;
+            }
+            TrackChunk simplified = new TrackChunk();
+            for (int i = 0; i < kept.size(); i++) {
+                simplified.append(kept.time(i), kept.lat(i), kept.lon(i));
+            }
+            simplified.trim();
+            return simplified;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.smartcity.entities.telemetry;
+
+import com.smartcity.entities.dto.VehicleDTO;
+import com.smartcity.entities.dto.VehiclePingDTO;
+import com.smartcity.entities.entity.Vehicle;
+import com.smartcity.entities.exception.BadRequestException;
+import com.smartcity.entities.exception.ResourceNotFoundException;
+import com.smartcity.entities.geo.GridIndex;
+import com.smartcity.entities.repository.VehicleRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// GPS pings land here instead of going through a JPA load/save each. The newest position per
+// vehicle is kept in memory, where position reads, the vehicle grid index and the trajectory
+// store pick it up at once, and the positions that changed since the last flush are written in one JDBC batch
+// UPDATE per flush interval, so a vehicle pinging every second costs one row write per flush
+// however many pings arrived. The UPDATE only moves last_update forward, so a late flush never
+// overwrites a newer position saved through PATCH /location. The first ping for a vehicle that
+// is neither tracked nor indexed (one without a stored position) is checked against the
+// database: an unknown id is rejected before it reaches the buffer or the trajectory store,
+// and a known one is indexed from its row. A vehicle deleted while its pings were buffered
+// updates no row and is dropped, trajectory included, by the flush.
+@Slf4j
+@Component
+public class VehiclePositionBuffer {
+    
+    private static final String UPDATE_POSITION =
+            "UPDATE vehicles SET current_latitude = ?, current_longitude = ?, last_update = ?, updated_at = ? "
+                    + "WHERE id = ? AND (last_update IS NULL OR last_update <= ?)";
+    private static final long MAX_CLOCK_SKEW_MINUTES = 5;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VehicleRepository vehicleRepository;
+    private final GridIndex<VehicleDTO> vehicleIndex;
+    private final TrajectoryStore trajectoryStore;
+    private final long flushIntervalMs;
+    private final int batchSize;
+    private final int maxTracked;
+    private final ScheduledExecutorService scheduler;
+    
+    // Newest known position per vehicle, and the subset not yet written to the database
+    private final Map<String, Position> latest = new ConcurrentHashMap<>();
+    private final Map<String, Position> pending = new ConcurrentHashMap<>();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private volatile long lastFlushMs;
+    
+    public VehiclePositionBuffer(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 VehicleRepository vehicleRepository,
+                                 GridIndex<VehicleDTO> vehicleIndex,
+                                 TrajectoryStore trajectoryStore,
+                                 @Value("${telemetry.flush-interval-ms:1000}") long flushIntervalMs,
+                                 @Value("${telemetry.batch-size:500}") int batchSize,
+                                 @Value("${telemetry.max-tracked:100000}") int maxTracked) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.vehicleRepository = vehicleRepository;
+        this.vehicleIndex = vehicleIndex;
+        this.trajectoryStore = trajectoryStore;
+        this.flushIntervalMs = Math.max(10, flushIntervalMs);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxTracked = Math.max(1, maxTracked);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "vehicle-position-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::flush, this.flushIntervalMs, this.flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    // Throws BadRequestException for an invalid ping and ResourceNotFoundException for an unknown
+    // vehicle; an older ping than the one held is ignored
+    public void accept(VehiclePingDTO ping) {
+        String vehicleId = ping.getVehicleId();
+        Double lat = ping.getLatitude();
+        Double lon = ping.getLongitude();
+        if (vehicleId == null || vehicleId.isBlank()) {
+            throw new BadRequestException("vehicleId is required");
+        }
+        if (lat == null || lon == null || !(lat >= -90 && lat <= 90) || !(lon >= -180 && lon <= 180)) {
+            throw new BadRequestException("Latitude must be within [-90, 90] and longitude within [-180, 180]");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime timestamp = ping.getTimestamp() != null ? ping.getTimestamp() : now;
+        if (timestamp.isAfter(now.plusMinutes(MAX_CLOCK_SKEW_MINUTES))) {
+            throw new BadRequestException("Ping timestamp is in the future: " + timestamp);
+        }
+        if (!latest.containsKey(vehicleId) && latest.size() >= maxTracked) {
+            throw new BadRequestException("Too many vehicles reporting positions");
+        }
+        // Only a vehicle's first ping, or the first after it was flushed as unmatched, gets here
+        VehicleDTO unindexed = latest.containsKey(vehicleId) || vehicleIndex.get(vehicleId) != null ? null
+                : vehicleRepository.findById(vehicleId).map(VehiclePositionBuffer::toDTO)
+                        .orElseThrow(() -> new ResourceNotFoundException("Vehicle not found with id: " + vehicleId));
+        received.incrementAndGet();
+        
+        Position position = new Position(lat, lon, timestamp);
+        // The index is updated under the map's per-key lock so it ends on the newest position
+        latest.compute(vehicleId, (id, held) -> {
+            if (held != null && held.timestamp.isAfter(timestamp)) {
+                superseded.incrementAndGet();
+                return held;
+            }
+            pending.put(id, position);
+            trajectoryStore.append(id, lat, lon, timestamp);
+            VehicleDTO indexed = vehicleIndex.get(id);
+            if (indexed == null) {
+                indexed = unindexed;
+            }
+            if (indexed != null && (indexed.getLastUpdate() == null || !indexed.getLastUpdate().isAfter(timestamp))) {
+                vehicleIndex.put(moved(indexed, position));
+            }
+            return position;
+        });
+    }
+    
+    // Null when no ping has been accepted for the vehicle
+    public Position latest(String vehicleId) {
+        return latest.get(vehicleId);
+    }
+    
+    public void forget(String vehicleId) {
+        latest.remove(vehicleId);
+        pending.remove(vehicleId);
+        trajectoryStore.forget(vehicleId);
+    }
+    
+    // The DTO with the buffered position applied when that is newer than its own
+    public VehicleDTO overlay(VehicleDTO vehicle) {
+        Position position = latest.get(vehicle.getId());
+        if (position == null || (vehicle.getLastUpdate() != null && !position.timestamp.isAfter(vehicle.getLastUpdate()))) {
+            return vehicle;
+        }
+        return moved(vehicle, position);
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("tracked", latest.size());
+        stats.put("pending", pending.size());
+        stats.put("received", received.get());
+        stats.put("superseded", superseded.get());
+        stats.put("written", written.get());
+        stats.put("unmatched", unmatched.get());
+        stats.put("failedFlushes", failedFlushes.get());
+        stats.put("flushIntervalMs", flushIntervalMs);
+        stats.put("lastFlushMs", lastFlushMs);
+        return stats;
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+    
+    private void flush() {
+        List<String> ids = new ArrayList<>();
+        List<Position> positions = new ArrayList<>();
+        for (Map.Entry<String, Position> entry : pending.entrySet()) {
+            // Fails when a newer ping just replaced it; that one goes out next time
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                ids.add(entry.getKey());
+                positions.add(entry.getValue());
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            int to = Math.min(from + batchSize, ids.size());
+            write(ids.subList(from, to), positions.subList(from, to));
+        }
+        lastFlushMs = System.currentTimeMillis() - started;
+        log.debug("Flushed {} vehicle positions in {} ms", ids.size(), lastFlushMs);
+    }
+    
+    private void write(List<String> ids, List<Position> positions) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Position position = positions.get(i);
+            Timestamp taken = Timestamp.valueOf(position.timestamp);
+            rows.add(new Object[]{position.latitude, position.longitude, taken, now, ids.get(i), taken});
+        }
+        try {
+            int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(UPDATE_POSITION, rows));
+            for (int i = 0; i < ids.size(); i++) {
+                if (counts != null && counts[i] == 0) {
+                    // Deleted vehicle, or the row already holds a newer position
+                    unmatched.incrementAndGet();
+                    if (latest.remove(ids.get(i), positions.get(i)) && !vehicleRepository.existsById(ids.get(i))) {
+                        forget(ids.get(i));
+                    }
+                } else {
+                    written.incrementAndGet();
+                }
+            }
+        } catch (RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            log.error("Writing {} vehicle positions failed, retrying next flush: {}", ids.size(), e.getMessage());
+            for (int i = 0; i < ids.size(); i++) {
+                Position position = positions.get(i);
+                pending.merge(ids.get(i), position, (held, failed) -> held.timestamp.isAfter(failed.timestamp) ? held : failed);
+            }
+        }
+    }
+    
+    private static VehicleDTO toDTO(Vehicle vehicle) {
+        return VehicleDTO.builder()
+                .id(vehicle.getId())
+                .licensePlate(vehicle.getLicensePlate())
+                .type(vehicle.getType())
+                .department(vehicle.getDepartment())
+                .status(vehicle.getStatus().name())
+                .currentLatitude(vehicle.getCurrentLatitude())
+                .currentLongitude(vehicle.getCurrentLongitude())
+                .driverName(vehicle.getDriverName())
+                .driverId(vehicle.getDriverId())
+                .lastUpdate(vehicle.getLastUpdate())
+                .description(vehicle.getDescription())
+                .createdAt(vehicle.getCreatedAt())
+                .updatedAt(vehicle.getUpdatedAt())
+                .build();
+    }
+    
+    private static VehicleDTO moved(VehicleDTO vehicle, Position position) {
+        return VehicleDTO.builder()
+                .id(vehicle.getId())
+                .licensePlate(vehicle.getLicensePlate())
+                .type(vehicle.getType())
+                .department(vehicle.getDepartment())
+                .status(vehicle.getStatus())
+                .currentLatitude(position.latitude)
+                .currentLongitude(position.longitude)
+                .driverName(vehicle.getDriverName())
+                .driverId(vehicle.getDriverId())
+                .lastUpdate(position.timestamp)
+                .description(vehicle.getDescription())
+                .createdAt(vehicle.getCreatedAt())
+                .updatedAt(vehicle.getUpdatedAt())
+                .build();
+    }
+    
+    @Getter
+    public static final class Position {
+        private final double latitude;
+        private final double longitude;
+        private final LocalDateTime timestamp;
+        
+        private Position(double latitude, double longitude, LocalDateTime timestamp) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.smartcity.entities.geo;
+
+import com.smartcity.entities.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GridIndexTest {
+    
+    private final GridIndex<Place> index = new GridIndex<>(500, Place::id, Place::lat, Place::lon);
+    
+    @Test
+    void nearReturnsMatchesWithinTheRadiusNearestFirst() {
+        index.put(new Place("a", 52.5200, 13.4050));
+        index.put(new Place("b", 52.5210, 13.4050));
+        index.put(new Place("c", 52.5300, 13.4050));
+        index.put(new Place("far", 48.8566, 2.3522));
+        
+        List<Place> near = index.near(52.5201, 13.4050, 1_500, 10, place -> true);
+        
+        assertEquals(List.of("a", "b", "c"), ids(near));
+        assertEquals(List.of("a"), ids(index.near(52.5201, 13.4050, 1_500, 1, place -> true)));
+        assertEquals(List.of("b", "c"), ids(index.near(52.5201, 13.4050, 1_500, 10, place -> !place.id().equals("a"))));
+    }
+    
+    @Test
+    void withinChecksTheExactBounds() {
+        index.put(new Place("in", 52.50, 13.40));
+        index.put(new Place("edge", 52.51, 13.41));
+        index.put(new Place("out", 52.5101, 13.40));
+        
+        assertEquals(List.of("edge", "in"), sorted(index.within(52.49, 13.39, 52.51, 13.41, 10, place -> true)));
+    }
+    
+    @Test
+    void nearestMatchesABruteForceScan() {
+        Random random = new Random(42);
+        List<Place> places = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            Place place = new Place("p" + i, 52.3 + random.nextDouble() * 0.4, 13.1 + random.nextDouble() * 0.6);
+            places.add(place);
+            index.put(place);
+        }
+        
+        for (int query = 0; query < 50; query++) {
+            double lat = 52.2 + random.nextDouble() * 0.6;
+            double lon = 13.0 + random.nextDouble() * 0.8;
+            List<String> expected = places.stream()
+                    .sorted(Comparator.comparingDouble(place -> GridIndex.distanceMeters(lat, lon, place.lat(), place.lon())))
+                    .limit(5)
+                    .map(Place::id)
+                    .collect(Collectors.toList());
+            
+            List<String> actual = index.nearest(lat, lon, 5, 100_000, place -> true).stream()
+                    .map(neighbor -> neighbor.getValue().id())
+                    .collect(Collectors.toList());
+            
+            assertEquals(expected, actual);
+        }
+    }
+    
+    @Test
+    void putMovesAnItemAndDropsItWhenItLosesItsPosition() {
+        index.put(new Place("a", 52.52, 13.40));
+        index.put(new Place("a", 48.85, 2.35));
+        
+        assertTrue(index.near(52.52, 13.40, 1_000, 10, place -> true).isEmpty());
+        assertEquals(List.of("a"), ids(index.near(48.85, 2.35, 1_000, 10, place -> true)));
+        
+        index.put(new Place("a", null, null));
+        assertNull(index.get("a"));
+        assertEquals(0, index.size());
+    }
+    
+    @Test
+    void reloadKeepsWritesMadeWhileItsSnapshotWasRead() {
+        index.put(new Place("moved", 52.52, 13.40));
+        index.put(new Place("deleted", 52.52, 13.40));
+        
+        index.replaceAll(() -> {
+            // Read before these writes reached the database
+            List<Place> snapshot = List.of(new Place("moved", 52.52, 13.40), new Place("deleted", 52.52, 13.40),
+                    new Place("kept", 52.50, 13.40));
+            index.put(new Place("moved", 48.85, 2.35));
+            index.remove("deleted");
+            index.put(new Place("created", 52.51, 13.40));
+            return snapshot;
+        });
+        
+        assertEquals(48.85, index.get("moved").lat(), 0);
+        assertNull(index.get("deleted"));
+        assertEquals("created", index.get("created").id());
+        assertEquals("kept", index.get("kept").id());
+        assertEquals(3, index.size());
+        
+        // Writes before a reload starts are already in its snapshot
+        index.replaceAll(() -> List.of(new Place("kept", 52.50, 13.40)));
+        assertEquals(List.of("kept"), ids(index.within(-90, -180, 90, 180, 10, place -> true)));
+    }
+    
+    @Test
+    void rejectsOutOfRangeQueries() {
+        assertThrows(BadRequestException.class, () -> index.near(91, 0, 100, 10, place -> true));
+        assertThrows(BadRequestException.class, () -> index.near(0, 0, 0, 10, place -> true));
+        assertThrows(BadRequestException.class, () -> index.within(1, 0, 0, 1, 10, place -> true));
+        assertThrows(BadRequestException.class, () -> index.nearest(0, 0, 0, 100, place -> true));
+    }
+    
+    private static List<String> ids(List<Place> places) {
+        return places.stream().map(Place::id).collect(Collectors.toList());
+    }
+    
+    private static List<String> sorted(List<Place> places) {
+        return places.stream().map(Place::id).sorted().collect(Collectors.toList());
+    }
+    
+    private static final class Place {
+        private final String id;
+        private final Double lat;
+        private final Double lon;
+        
+        private Place(String id, Double lat, Double lon) {
+            this.id = id;
+            this.lat = lat;
+            this.lon = lon;
+        }
+        
+        private String id() {
+            return id;
+        }
+        
+        private Double lat() {
+            return lat;
+        }
+        
+        private Double lon() {
+            return lon;
+        }
+    }
+}
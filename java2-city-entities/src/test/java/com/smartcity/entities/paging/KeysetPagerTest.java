@@ -0,0 +1,133 @@
+package com.smartcity.entities.paging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcity.entities.dto.CursorPageDTO;
+import com.smartcity.entities.entity.Sensor;
+import com.smartcity.entities.exception.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(KeysetPager.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+class KeysetPagerTest {
+    
+    @Autowired
+    private KeysetPager pager;
+    
+    @Autowired
+    private TestEntityManager entityManager;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    private final List<String> ids = new ArrayList<>();
+    private final List<String> trafficIds = new ArrayList<>();
+    
+    @BeforeEach
+    void insertSensors() {
+        for (int i = 0; i < 25; i++) {
+            String type = i % 3 == 0 ? "traffic" : "noise";
+            Sensor sensor = entityManager.persist(Sensor.builder()
+                    .name("sensor-" + i)
+                    .type(type)
+                    .location("street " + i)
+                    .latitude(52.5 + i * 0.001)
+                    .longitude(13.4)
+                    .status(Sensor.Status.ONLINE)
+                    .createdAt(LocalDateTime.now())
+                    .build());
+            ids.add(sensor.getId());
+            if (type.equals("traffic")) {
+                trafficIds.add(sensor.getId());
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        ids.sort(null);
+        trafficIds.sort(null);
+    }
+    
+    @Test
+    void pagesThroughEveryRowOnceInIdOrder() {
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            CursorPageDTO<Object> page = pager.page(Sensor.class, Map.of(), cursor, 10, null, Sensor::getId,
+                    UnaryOperator.identity());
+            page.getItems().forEach(item -> seen.add((String) item));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        
+        assertEquals(3, pages);
+        assertEquals(ids, seen);
+    }
+    
+    @Test
+    void lastFullPageHasNoNextCursor() {
+        CursorPageDTO<Object> page = pager.page(Sensor.class, Map.of(), null, 25, null, Sensor::getId,
+                UnaryOperator.identity());
+        
+        assertEquals(25, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+    
+    @Test
+    void filtersAndFieldsNarrowTheRows() {
+        CursorPageDTO<Object> page = pager.page(Sensor.class, KeysetPager.filters("type", "traffic", "status", null),
+                null, 100, "name, status", Sensor::getId, UnaryOperator.identity());
+        
+        assertEquals(trafficIds.size(), page.getItems().size());
+        @SuppressWarnings("unchecked")
+        Map<String, Object> first = (Map<String, Object>) page.getItems().get(0);
+        assertEquals(List.of("id", "name", "status"), new ArrayList<>(first.keySet()));
+        assertEquals(trafficIds.get(0), first.get("id"));
+        assertEquals("ONLINE", first.get("status"));
+    }
+    
+    @Test
+    void exportWritesOneJsonObjectPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pager.export(Sensor.class, Map.of(), "name", Sensor::getId, UnaryOperator.identity()).writeTo(out);
+        
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(ids.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            JsonNode row = objectMapper.readTree(lines[i]);
+            assertEquals(ids.get(i), row.get("id").asText());
+        }
+    }
+    
+    @Test
+    void rejectsBadArguments() {
+        assertThrows(BadRequestException.class, () -> pager.page(Sensor.class, Map.of(), null, 0, null,
+                Sensor::getId, UnaryOperator.identity()));
+        assertThrows(BadRequestException.class, () -> pager.page(Sensor.class, Map.of(), null, KeysetPager.MAX_LIMIT + 1,
+                null, Sensor::getId, UnaryOperator.identity()));
+        assertThrows(BadRequestException.class, () -> pager.page(Sensor.class, Map.of(), "not base64!", 10, null,
+                Sensor::getId, UnaryOperator.identity()));
+        assertThrows(BadRequestException.class, () -> pager.export(Sensor.class, Map.of(), "name,secret",
+                Sensor::getId, UnaryOperator.identity()));
+    }
+}
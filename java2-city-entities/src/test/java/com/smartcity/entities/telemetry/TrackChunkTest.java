@@ -0,0 +1,67 @@
+package com.smartcity.entities.telemetry;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackChunkTest {
+    
+    @Test
+    void decodesWhatWasAppended() {
+        TrackChunk chunk = new TrackChunk();
+        long[] times = {1_700_000_000_000L, 1_700_000_001_000L, 1_700_000_001_000L, 1_700_003_600_000L};
+        int[] lats = {-33_868_820, -33_868_810, 51_507_351, 90_000_000};
+        int[] lons = {151_209_296, 151_209_290, -127_758, -180_000_000};
+        for (int i = 0; i < times.length; i++) {
+            chunk.append(times[i], lats[i], lons[i]);
+        }
+        
+        TrackPoints points = new TrackPoints();
+        chunk.decodeInto(points, Long.MIN_VALUE, Long.MAX_VALUE);
+        
+        assertEquals(times.length, chunk.count());
+        assertEquals(times[0], chunk.firstTime());
+        assertEquals(times[3], chunk.lastTime());
+        assertEquals(times.length, points.size());
+        for (int i = 0; i < times.length; i++) {
+            assertEquals(times[i], points.time(i));
+            assertEquals(lats[i], points.lat(i));
+            assertEquals(lons[i], points.lon(i));
+        }
+    }
+    
+    @Test
+    void decodesOnlyTheRequestedRangeInclusive() {
+        TrackChunk chunk = new TrackChunk();
+        for (int i = 0; i < 10; i++) {
+            chunk.append(1_000L * i, i, -i);
+        }
+        
+        TrackPoints points = new TrackPoints();
+        chunk.decodeInto(points, 3_000, 6_000);
+        
+        assertEquals(4, points.size());
+        assertEquals(3_000, points.time(0));
+        assertEquals(3, points.lat(0));
+        assertEquals(6_000, points.time(3));
+        assertEquals(-6, points.lon(3));
+    }
+    
+    @Test
+    void packsOnePingASecondIntoAFewBytesAPoint() {
+        TrackChunk chunk = new TrackChunk();
+        int lat = 48_856_600;
+        int lon = 2_352_200;
+        for (int i = 0; i < 3_600; i++) {
+            // About 10 m/s, with jitter
+            lat += 60 + (i % 7) - 3;
+            lon += 90 - (i % 5);
+            chunk.append(1_700_000_000_000L + 1_000L * i, lat, lon);
+        }
+        chunk.trim();
+        
+        double bytesPerPoint = (double) chunk.sizeBytes() / chunk.count();
+        assertTrue(bytesPerPoint <= 7, "bytes per point: " + bytesPerPoint);
+    }
+}
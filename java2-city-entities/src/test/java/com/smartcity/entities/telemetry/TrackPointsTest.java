@@ -0,0 +1,69 @@
+package com.smartcity.entities.telemetry;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TrackPointsTest {
+    
+    // Microdegrees of latitude in about a metre, at 0.11 m each
+    private static final int ONE_METER = 9;
+    
+    @Test
+    void straightRunKeepsOnlyItsEnds() {
+        TrackPoints points = new TrackPoints();
+        for (int i = 0; i < 100; i++) {
+            points.add(i, 52_000_000 + 10 * ONE_METER * i, 13_000_000);
+        }
+        
+        TrackPoints simplified = points.simplify(1);
+        
+        assertEquals(2, simplified.size());
+        assertEquals(0, simplified.time(0));
+        assertEquals(99, simplified.time(1));
+    }
+    
+    @Test
+    void keepsACornerBeyondTheTolerance() {
+        TrackPoints points = new TrackPoints();
+        // North 50 m, then east 50 m, with sub-metre wobble along both legs
+        for (int i = 0; i <= 10; i++) {
+            points.add(i, 52_000_000 + 5 * ONE_METER * i, 13_000_000 + (i % 2));
+        }
+        for (int i = 1; i <= 10; i++) {
+            points.add(10 + i, 52_000_000 + 50 * ONE_METER + (i % 2), 13_000_000 + 5 * 15 * i);
+        }
+        
+        TrackPoints simplified = points.simplify(3);
+        
+        assertEquals(3, simplified.size());
+        assertEquals(0, simplified.time(0));
+        assertEquals(10, simplified.time(1));
+        assertEquals(20, simplified.time(2));
+    }
+    
+    @Test
+    void noToleranceOrTooFewPointsLeavesThePathAlone() {
+        TrackPoints points = new TrackPoints();
+        points.add(0, 0, 0);
+        points.add(1, 1_000, 1_000);
+        
+        assertSame(points, points.simplify(100));
+        points.add(2, 0, 2_000);
+        assertSame(points, points.simplify(0));
+        assertEquals(3, points.simplify(1).size());
+    }
+    
+    @Test
+    void growsPastItsInitialCapacity() {
+        TrackPoints points = new TrackPoints();
+        for (int i = 0; i < 1_000; i++) {
+            points.add(i, i, -i);
+        }
+        
+        assertEquals(1_000, points.size());
+        assertEquals(999, points.time(999));
+        assertEquals(-999, points.lon(999));
+    }
+}
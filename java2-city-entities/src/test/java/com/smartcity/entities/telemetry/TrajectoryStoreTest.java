@@ -0,0 +1,84 @@
+package com.smartcity.entities.telemetry;
+
+import com.smartcity.entities.dto.TrackPointDTO;
+import com.smartcity.entities.dto.VehicleTrackDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrajectoryStoreTest {
+    
+    private final LocalDateTime start = LocalDateTime.now().withNano(0).minusHours(1);
+    private final TrajectoryStore store = new TrajectoryStore(60, 4096, 3, 24, 10);
+    
+    @AfterEach
+    void stop() {
+        store.stop();
+    }
+    
+    @Test
+    void truncatedQueriesPageThroughThePathWithNextFrom() {
+        for (int i = 0; i < 25; i++) {
+            store.append("v1", 52.0 + i * 0.001, 13.0, start.plusSeconds(i));
+        }
+        
+        List<TrackPointDTO> all = new ArrayList<>();
+        LocalDateTime from = start;
+        LocalDateTime to = start.plusMinutes(1);
+        for (int page = 0; page < 3; page++) {
+            VehicleTrackDTO track = store.query("v1", from, to, 0);
+            all.addAll(track.getPoints());
+            if (page < 2) {
+                assertTrue(track.getTruncated());
+                assertEquals(10, track.getPoints().size());
+                from = track.getNextFrom();
+            } else {
+                assertFalse(track.getTruncated());
+                assertNull(track.getNextFrom());
+                assertEquals(5, track.getPoints().size());
+            }
+        }
+        
+        assertEquals(25, all.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals(start.plusSeconds(i), all.get(i).getTimestamp());
+        }
+    }
+    
+    @Test
+    void pageDoesNotEndBetweenPointsSharingATimestamp() {
+        for (int i = 0; i < 8; i++) {
+            store.append("v1", 52.0 + i * 0.001, 13.0, start.plusSeconds(i));
+        }
+        for (int i = 0; i < 4; i++) {
+            store.append("v1", 52.1, 13.0 + i * 0.001, start.plusSeconds(8));
+        }
+        
+        VehicleTrackDTO first = store.query("v1", start, start.plusMinutes(1), 0);
+        VehicleTrackDTO second = store.query("v1", first.getNextFrom(), start.plusMinutes(1), 0);
+        
+        assertEquals(8, first.getPoints().size());
+        assertEquals(start.plusSeconds(8), first.getNextFrom());
+        assertEquals(4, second.getPoints().size());
+        assertFalse(second.getTruncated());
+    }
+    
+    @Test
+    void forgottenVehicleHasNoPath() {
+        store.append("v1", 52.0, 13.0, start);
+        store.forget("v1");
+        
+        VehicleTrackDTO track = store.query("v1", start.minusMinutes(1), start.plusMinutes(1), 0);
+        
+        assertEquals(0, track.getStoredPoints().intValue());
+        assertTrue(track.getPoints().isEmpty());
+    }
+}
@@ -1,19 +1,35 @@
 package com.smartcity.events.controller;
 
+import com.smartcity.events.dto.BatchIngestResponse;
 import com.smartcity.events.dto.EventDTO;
+import com.smartcity.events.service.EventDeduplicator;
 import com.smartcity.events.service.EventIngestionService;
+import com.smartcity.events.service.EventPublisher;
+import com.smartcity.events.spool.EventSpool;
+import com.smartcity.events.workflow.DeadLetter;
+import com.smartcity.events.workflow.DeadLetterStore;
+import com.smartcity.events.workflow.IncidentWorkflowExecutor;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+
 @RestController
 @RequestMapping("/api/events")
 @RequiredArgsConstructor
 public class EventController {
     
     private final EventIngestionService ingestionService;
+    private final EventPublisher eventPublisher;
+    private final EventDeduplicator deduplicator;
+    private final IncidentWorkflowExecutor workflowExecutor;
+    private final DeadLetterStore deadLetterStore;
+    private final EventSpool spool;
     
     @PostMapping("/ingest")
     public ResponseEntity<EventDTO> ingestEvent(@Valid @RequestBody EventDTO eventDTO) {
@@ -22,11 +38,37 @@ public class EventController {
     }
     
     @PostMapping("/batch")
-    public ResponseEntity<String> ingestBatchEvents(@Valid @RequestBody java.util.List<EventDTO> events) {
-        for (EventDTO event : events) {
-            ingestionService.ingestEvent(event);
-        }
-        return ResponseEntity.ok("Batch processed: " + events.size() + " events");
+    public ResponseEntity<BatchIngestResponse> ingestBatchEvents(@RequestBody java.util.List<EventDTO> events) {
+        // Items are validated individually so one bad event doesn't reject the whole batch
+        BatchIngestResponse response = ingestionService.ingestBatch(events);
+        return ResponseEntity.ok(response);
+    }
+    
+    @PostMapping(value = "/stream", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "application/jsonl"})
+    public ResponseEntity<BatchIngestResponse> ingestEventStream(HttpServletRequest request) throws IOException {
+        // Newline-delimited JSON, read incrementally from the (possibly chunked) request body;
+        // results only lists rejected lines
+        BatchIngestResponse response = ingestionService.ingestStream(request.getInputStream());
+        return ResponseEntity.ok(response);
+    }
+    
+    @GetMapping("/pipeline/stats")
+    public ResponseEntity<java.util.Map<String, Object>> getPipelineStats() {
+        java.util.Map<String, Object> stats = new java.util.LinkedHashMap<>(eventPublisher.getStats());
+        stats.put("dedup", deduplicator.getStats());
+        stats.put("workflow", workflowExecutor.getStats());
+        stats.put("spool", spool.getStats());
+        return ResponseEntity.ok(stats);
+    }
+    
+    @GetMapping("/workflows/dead-letters")
+    public ResponseEntity<java.util.List<DeadLetter>> getWorkflowDeadLetters() {
+        return ResponseEntity.ok(deadLetterStore.getAll());
+    }
+    
+    @PostMapping("/workflows/dead-letters/replay")
+    public ResponseEntity<String> replayWorkflowDeadLetters() {
+        int replayed = workflowExecutor.replayDeadLetters();
+        return ResponseEntity.ok("Replayed " + replayed + " workflow dispatches");
     }
 }
-
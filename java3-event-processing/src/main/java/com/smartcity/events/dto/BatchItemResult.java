@@ -0,0 +1,17 @@
+package com.smartcity.events.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResult {
+    private int index;
+    private String eventId;
+    private String status; // accepted, duplicate, rejected
+    private String reason;
+}
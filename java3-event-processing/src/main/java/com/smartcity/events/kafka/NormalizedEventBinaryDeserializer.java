@@ -0,0 +1,21 @@
+package com.smartcity.events.kafka;
+
+import com.smartcity.events.dto.NormalizedEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+// Counterpart of NormalizedEventBinarySerializer for consumers of the smartcity-events topic
+public class NormalizedEventBinaryDeserializer implements Deserializer<NormalizedEvent> {
+    
+    @Override
+    public NormalizedEvent deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return NormalizedEventCodec.decode(data);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new SerializationException("Cannot decode NormalizedEvent from topic " + topic, e);
+        }
+    }
+}
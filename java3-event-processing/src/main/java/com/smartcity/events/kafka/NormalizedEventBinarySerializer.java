@@ -0,0 +1,13 @@
+package com.smartcity.events.kafka;
+
+import com.smartcity.events.dto.NormalizedEvent;
+import org.apache.kafka.common.serialization.Serializer;
+
+// Opt-in replacement for JsonSerializer on the smartcity-events topic, see NormalizedEventCodec
+public class NormalizedEventBinarySerializer implements Serializer<NormalizedEvent> {
+    
+    @Override
+    public byte[] serialize(String topic, NormalizedEvent event) {
+        return event == null ? null : NormalizedEventCodec.encode(event);
+    }
+}
@@ -0,0 +1,384 @@
+package com.smartcity.events.kafka;
+
+import com.smartcity.events.dto.NormalizedEvent;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Compact binary encoding of NormalizedEvent for the smartcity-events topic.
+//
+// Layout (schema version 1):
+//   byte     schema version
+//   varint   bitmap of non-null fields (bit order = FIELD_* constants)
+//   fields   in bit order; strings are varint length + UTF-8, type/severity/status/source/
+//            version are dictionary codes (0 = literal string follows), doubles are 8 raw
+//            bytes, timestamps are zigzag varint epoch seconds (UTC) + varint nanos with
+//            processedAt stored as a delta from eventTimestamp, normalizedData is a varint
+//            count of (key, tagged value) pairs.
+//
+// Dictionaries are part of the schema: entries may only be appended, never reordered.
+public final class NormalizedEventCodec {
+    
+    public static final byte SCHEMA_VERSION = 1;
+    
+    private static final int FIELD_EVENT_ID = 0;
+    private static final int FIELD_EVENT_TYPE = 1;
+    private static final int FIELD_SOURCE = 2;
+    private static final int FIELD_SEVERITY = 3;
+    private static final int FIELD_STATUS = 4;
+    private static final int FIELD_LOCATION = 5;
+    private static final int FIELD_LATITUDE = 6;
+    private static final int FIELD_LONGITUDE = 7;
+    private static final int FIELD_DESCRIPTION = 8;
+    private static final int FIELD_ASSIGNED_TO = 9;
+    private static final int FIELD_EVENT_TIMESTAMP = 10;
+    private static final int FIELD_NORMALIZED_DATA = 11;
+    private static final int FIELD_PROCESSED_AT = 12;
+    private static final int FIELD_VERSION = 13;
+    
+    private static final String[] EVENT_TYPES = {"traffic", "emergency", "pollution", "infrastructure", "unknown"};
+    private static final String[] SEVERITIES = {"low", "medium", "high", "critical"};
+    private static final String[] STATUSES = {"open", "in-progress", "resolved"};
+    private static final String[] SOURCES = {"sensor", "camera", "manual", "system"};
+    private static final String[] VERSIONS = {"1.0"};
+    private static final String[] DATA_KEYS = {"originalType", "source", "location"};
+    
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INTEGER = 2;
+    private static final byte TAG_DOUBLE = 3;
+    private static final byte TAG_TRUE = 4;
+    private static final byte TAG_FALSE = 5;
+    private static final byte TAG_MAP = 6;
+    private static final byte TAG_LIST = 7;
+    
+    private NormalizedEventCodec() {
+    }
+    
+    public static byte[] encode(NormalizedEvent event) {
+        Writer out = new Writer(128);
+        out.writeByte(SCHEMA_VERSION);
+        
+        int present = 0;
+        present |= bit(FIELD_EVENT_ID, event.getEventId());
+        present |= bit(FIELD_EVENT_TYPE, event.getEventType());
+        present |= bit(FIELD_SOURCE, event.getSource());
+        present |= bit(FIELD_SEVERITY, event.getSeverity());
+        present |= bit(FIELD_STATUS, event.getStatus());
+        present |= bit(FIELD_LOCATION, event.getLocation());
+        present |= bit(FIELD_LATITUDE, event.getLatitude());
+        present |= bit(FIELD_LONGITUDE, event.getLongitude());
+        present |= bit(FIELD_DESCRIPTION, event.getDescription());
+        present |= bit(FIELD_ASSIGNED_TO, event.getAssignedTo());
+        present |= bit(FIELD_EVENT_TIMESTAMP, event.getEventTimestamp());
+        present |= bit(FIELD_NORMALIZED_DATA, event.getNormalizedData());
+        present |= bit(FIELD_PROCESSED_AT, event.getProcessedAt());
+        present |= bit(FIELD_VERSION, event.getVersion());
+        out.writeVarint(present);
+        
+        if (has(present, FIELD_EVENT_ID)) out.writeString(event.getEventId());
+        if (has(present, FIELD_EVENT_TYPE)) out.writeDictionary(EVENT_TYPES, event.getEventType());
+        if (has(present, FIELD_SOURCE)) out.writeDictionary(SOURCES, event.getSource());
+        if (has(present, FIELD_SEVERITY)) out.writeDictionary(SEVERITIES, event.getSeverity());
+        if (has(present, FIELD_STATUS)) out.writeDictionary(STATUSES, event.getStatus());
+        if (has(present, FIELD_LOCATION)) out.writeString(event.getLocation());
+        if (has(present, FIELD_LATITUDE)) out.writeDouble(event.getLatitude());
+        if (has(present, FIELD_LONGITUDE)) out.writeDouble(event.getLongitude());
+        if (has(present, FIELD_DESCRIPTION)) out.writeString(event.getDescription());
+        if (has(present, FIELD_ASSIGNED_TO)) out.writeString(event.getAssignedTo());
+        if (has(present, FIELD_EVENT_TIMESTAMP)) out.writeTimestamp(event.getEventTimestamp(), 0);
+        if (has(present, FIELD_NORMALIZED_DATA)) out.writeMap(event.getNormalizedData(), DATA_KEYS);
+        if (has(present, FIELD_PROCESSED_AT)) {
+            long base = has(present, FIELD_EVENT_TIMESTAMP) ? epochSecond(event.getEventTimestamp()) : 0;
+            out.writeTimestamp(event.getProcessedAt(), base);
+        }
+        if (has(present, FIELD_VERSION)) out.writeDictionary(VERSIONS, event.getVersion());
+        
+        return out.toByteArray();
+    }
+    
+    public static NormalizedEvent decode(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        byte version = in.readByte();
+        if (version != SCHEMA_VERSION) {
+            throw new IllegalArgumentException("Unsupported NormalizedEvent schema version " + version);
+        }
+        int present = (int) in.readVarint();
+        
+        NormalizedEvent.NormalizedEventBuilder builder = NormalizedEvent.builder();
+        if (has(present, FIELD_EVENT_ID)) builder.eventId(in.readString());
+        if (has(present, FIELD_EVENT_TYPE)) builder.eventType(in.readDictionary(EVENT_TYPES));
+        if (has(present, FIELD_SOURCE)) builder.source(in.readDictionary(SOURCES));
+        if (has(present, FIELD_SEVERITY)) builder.severity(in.readDictionary(SEVERITIES));
+        if (has(present, FIELD_STATUS)) builder.status(in.readDictionary(STATUSES));
+        if (has(present, FIELD_LOCATION)) builder.location(in.readString());
+        if (has(present, FIELD_LATITUDE)) builder.latitude(in.readDouble());
+        if (has(present, FIELD_LONGITUDE)) builder.longitude(in.readDouble());
+        if (has(present, FIELD_DESCRIPTION)) builder.description(in.readString());
+        if (has(present, FIELD_ASSIGNED_TO)) builder.assignedTo(in.readString());
+        LocalDateTime eventTimestamp = null;
+        if (has(present, FIELD_EVENT_TIMESTAMP)) {
+            eventTimestamp = in.readTimestamp(0);
+            builder.eventTimestamp(eventTimestamp);
+        }
+        if (has(present, FIELD_NORMALIZED_DATA)) builder.normalizedData(in.readMap(DATA_KEYS));
+        if (has(present, FIELD_PROCESSED_AT)) {
+            builder.processedAt(in.readTimestamp(eventTimestamp != null ? epochSecond(eventTimestamp) : 0));
+        }
+        if (has(present, FIELD_VERSION)) builder.version(in.readDictionary(VERSIONS));
+        return builder.build();
+    }
+    
+    private static int bit(int field, Object value) {
+        return value != null ? 1 << field : 0;
+    }
+    
+    private static boolean has(int present, int field) {
+        return (present & (1 << field)) != 0;
+    }
+    
+    private static long epochSecond(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC);
+    }
+    
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+        
+        Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+        
+        void writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+        }
+        
+        void writeVarint(long value) {
+            ensure(10);
+            long remaining = value;
+            while ((remaining & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((remaining & 0x7F) | 0x80);
+                remaining >>>= 7;
+            }
+            buffer[size++] = (byte) remaining;
+        }
+        
+        void writeZigZag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+        
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (bits >>> shift);
+            }
+        }
+        
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            ensure(utf8.length);
+            System.arraycopy(utf8, 0, buffer, size, utf8.length);
+            size += utf8.length;
+        }
+        
+        void writeDictionary(String[] dictionary, String value) {
+            for (int i = 0; i < dictionary.length; i++) {
+                if (dictionary[i].equals(value)) {
+                    writeVarint(i + 1);
+                    return;
+                }
+            }
+            writeVarint(0);
+            writeString(value);
+        }
+        
+        void writeTimestamp(LocalDateTime timestamp, long baseEpochSecond) {
+            writeZigZag(epochSecond(timestamp) - baseEpochSecond);
+            writeVarint(timestamp.getNano());
+        }
+        
+        void writeMap(Map<?, ?> map, String[] keyDictionary) {
+            writeVarint(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeDictionary(keyDictionary, String.valueOf(entry.getKey()));
+                writeValue(entry.getValue());
+            }
+        }
+        
+        void writeValue(Object value) {
+            if (value == null) {
+                writeByte(TAG_NULL);
+            } else if (value instanceof String s) {
+                writeByte(TAG_STRING);
+                writeString(s);
+            } else if (value instanceof Integer || value instanceof Long
+                    || value instanceof Short || value instanceof Byte) {
+                writeByte(TAG_INTEGER);
+                writeZigZag(((Number) value).longValue());
+            } else if (value instanceof Double || value instanceof Float) {
+                writeByte(TAG_DOUBLE);
+                writeDouble(((Number) value).doubleValue());
+            } else if (value instanceof Boolean b) {
+                writeByte(b ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Map<?, ?> nested) {
+                writeByte(TAG_MAP);
+                writeMap(nested, new String[0]);
+            } else if (value instanceof Iterable<?> items) {
+                List<Object> list = new ArrayList<>();
+                items.forEach(list::add);
+                writeByte(TAG_LIST);
+                writeVarint(list.size());
+                list.forEach(this::writeValue);
+            } else if (value instanceof Object[] items) {
+                writeByte(TAG_LIST);
+                writeVarint(items.length);
+                Arrays.stream(items).forEach(this::writeValue);
+            } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+                // Arbitrary precision numbers keep their exact text form
+                writeByte(TAG_STRING);
+                writeString(value.toString());
+            } else {
+                writeByte(TAG_STRING);
+                writeString(String.valueOf(value));
+            }
+        }
+        
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+        
+        private void ensure(int additional) {
+            if (size + additional > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + additional));
+            }
+        }
+    }
+    
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+        
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+        
+        byte readByte() {
+            return buffer[position++];
+        }
+        
+        long readVarint() {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+        
+        long readZigZag() {
+            long raw = readVarint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+        
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (buffer[position++] & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+        
+        String readString() {
+            int length = readCount(1);
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+        
+        // A length or element count, checked against the bytes left so that a corrupt record
+        // fails before anything is sized from it
+        int readCount(int minBytesEach) {
+            long count = readVarint();
+            if (count < 0 || count > (long) (buffer.length - position) / minBytesEach) {
+                throw new IllegalArgumentException("Count " + count + " exceeds the "
+                        + (buffer.length - position) + " remaining bytes");
+            }
+            return (int) count;
+        }
+        
+        String readDictionary(String[] dictionary) {
+            int code = (int) readVarint();
+            if (code == 0) {
+                return readString();
+            }
+            if (code > dictionary.length) {
+                throw new IllegalArgumentException("Unknown dictionary code " + code);
+            }
+            return dictionary[code - 1];
+        }
+        
+        LocalDateTime readTimestamp(long baseEpochSecond) {
+            long epochSecond = baseEpochSecond + readZigZag();
+            int nanos = (int) readVarint();
+            return LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+        }
+        
+        Map<String, Object> readMap(String[] keyDictionary) {
+            // Each entry is at least a key code and a value tag
+            int count = readCount(2);
+            Map<String, Object> map = new LinkedHashMap<>(Math.max(4, count * 2));
+            for (int i = 0; i < count; i++) {
+                String key = readDictionary(keyDictionary);
+                map.put(key, readValue());
+            }
+            return map;
+        }
+        
+        Object readValue() {
+            byte tag = readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_STRING:
+                    return readString();
+                case TAG_INTEGER: {
+                    // Same shape Jackson produces: Integer when it fits, Long otherwise
+                    long value = readZigZag();
+                    return value == (int) value ? (Object) (int) value : (Object) value;
+                }
+                case TAG_DOUBLE:
+                    return readDouble();
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_MAP:
+                    return readMap(new String[0]);
+                case TAG_LIST: {
+                    int count = readCount(1);
+                    List<Object> list = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown value tag " + tag);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.smartcity.events.service;
+
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+
+// Immutable, case-insensitive alias -> canonical value lookup. Keys are hashed on
+// case-folded chars and compared in place with regionMatches, so a lookup never
+// allocates; canonical values are interned so every event shares the same instances.
+public final class AliasTable {
+    
+    private final String[] keys;
+    private final String[] values;
+    private final int mask;
+    private final String nullValue;
+    private final int size;
+    
+    private AliasTable(String nullValue, Map<String, ? extends Collection<String>> aliasesByCanonical) {
+        int entries = 0;
+        for (Map.Entry<String, ? extends Collection<String>> entry : aliasesByCanonical.entrySet()) {
+            entries += entry.getValue().size() + 1;
+        }
+        int capacity = Integer.highestOneBit(Math.max(entries * 2, 8) - 1) << 1;
+        this.keys = new String[capacity];
+        this.values = new String[capacity];
+        this.mask = capacity - 1;
+        this.nullValue = nullValue != null ? nullValue.intern() : null;
+        
+        int inserted = 0;
+        for (Map.Entry<String, ? extends Collection<String>> entry : aliasesByCanonical.entrySet()) {
+            String canonical = entry.getKey().toLowerCase(Locale.ROOT).intern();
+            inserted += insert(canonical, canonical);
+            for (String alias : entry.getValue()) {
+                inserted += insert(alias.toLowerCase(Locale.ROOT), canonical);
+            }
+        }
+        this.size = inserted;
+    }
+    
+    public static AliasTable of(String nullValue, Map<String, ? extends Collection<String>> aliasesByCanonical) {
+        return new AliasTable(nullValue, aliasesByCanonical);
+    }
+    
+    // Canonical value for the alias, the null value for null, otherwise the input lower-cased
+    public String normalize(String raw) {
+        if (raw == null) {
+            return nullValue;
+        }
+        String canonical = lookup(raw);
+        return canonical != null ? canonical : lowerCaseIfNeeded(raw);
+    }
+    
+    public String lookup(String raw) {
+        int length = raw.length();
+        for (int slot = foldedHash(raw) & mask; ; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (key == null) {
+                return null;
+            }
+            if (key.length() == length && key.regionMatches(true, 0, raw, 0, length)) {
+                return values[slot];
+            }
+        }
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    private int insert(String key, String canonical) {
+        for (int slot = foldedHash(key) & mask; ; slot = (slot + 1) & mask) {
+            String existing = keys[slot];
+            if (existing == null) {
+                keys[slot] = key;
+                values[slot] = canonical;
+                return 1;
+            }
+            if (existing.equals(key)) {
+                if (!values[slot].equals(canonical)) {
+                    throw new IllegalArgumentException("Alias '" + key + "' maps to both '"
+                            + values[slot] + "' and '" + canonical + "'");
+                }
+                return 0;
+            }
+        }
+    }
+    
+    private static int foldedHash(String s) {
+        int h = 0;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + fold(s.charAt(i));
+        }
+        return h ^ (h >>> 16);
+    }
+    
+    // Same equivalence as String.regionMatches(ignoreCase=true)
+    private static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+    
+    private static String lowerCaseIfNeeded(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.toLowerCase(c) != c) {
+                return s.toLowerCase(Locale.ROOT);
+            }
+        }
+        return s;
+    }
+}
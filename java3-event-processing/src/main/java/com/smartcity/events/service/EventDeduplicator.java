@@ -0,0 +1,107 @@
+package com.smartcity.events.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Remembers recently ingested event keys (id and status, see EventIngestionService) for
+// window-ms so device retries can be dropped before normalization. Ids are spread over
+// independently locked shards. Each shard is an insertion-ordered map capped at
+// max-entries / shards, so memory stays bounded, and expired ids are trimmed from its head
+// as new ones arrive.
+@Component
+public class EventDeduplicator {
+    
+    private final Map<String, Long>[] shards;
+    private final int maxEntriesPerShard;
+    private final long windowMs;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    @SuppressWarnings("unchecked")
+    public EventDeduplicator(@Value("${events.dedup.shards:16}") int shardCount,
+                             @Value("${events.dedup.max-entries:200000}") int maxEntries,
+                             @Value("${events.dedup.window-ms:600000}") long windowMs) {
+        int shardTotal = Integer.highestOneBit(Math.max(shardCount, 1) * 2 - 1);
+        this.shards = new Map[shardTotal];
+        for (int i = 0; i < shardTotal; i++) {
+            shards[i] = new LinkedHashMap<>();
+        }
+        this.maxEntriesPerShard = Math.max(1, maxEntries / shardTotal);
+        this.windowMs = windowMs;
+    }
+    
+    // Records the id and returns true the first time it is seen within the window
+    public boolean markIfFirst(String eventId) {
+        long now = System.currentTimeMillis();
+        Map<String, Long> shard = shardFor(eventId);
+        synchronized (shard) {
+            Long seenAt = shard.get(eventId);
+            if (seenAt != null && now - seenAt < windowMs) {
+                hits.increment();
+                return false;
+            }
+            if (seenAt != null) {
+                // Expired entry: re-insert at the tail to keep the map in time order
+                shard.remove(eventId);
+            }
+            shard.put(eventId, now);
+            trim(shard, now);
+        }
+        misses.increment();
+        return true;
+    }
+    
+    // Undo markIfFirst when the event was not actually accepted, so the client's retry goes through
+    public void forget(String eventId) {
+        Map<String, Long> shard = shardFor(eventId);
+        synchronized (shard) {
+            shard.remove(eventId);
+        }
+    }
+    
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int tracked = 0;
+        for (Map<String, Long> shard : shards) {
+            synchronized (shard) {
+                tracked += shard.size();
+            }
+        }
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("trackedIds", tracked);
+        return stats;
+    }
+    
+    private Map<String, Long> shardFor(String eventId) {
+        int h = eventId.hashCode();
+        return shards[(h ^ (h >>> 16)) & (shards.length - 1)];
+    }
+    
+    private void trim(Map<String, Long> shard, long now) {
+        Iterator<Map.Entry<String, Long>> oldest = shard.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<String, Long> entry = oldest.next();
+            boolean expired = now - entry.getValue() >= windowMs;
+            if (!expired && shard.size() <= maxEntriesPerShard) {
+                return;
+            }
+            oldest.remove();
+            if (!expired) {
+                evictions.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.smartcity.events.service;
+
+// Generates ids for events ingested without one; selected with events.id.generator
+public interface EventIdGenerator {
+    String nextId();
+}
@@ -1,55 +1,292 @@
 package com.smartcity.events.service;
 
+import com.smartcity.events.dto.BatchIngestResponse;
+import com.smartcity.events.dto.BatchItemResult;
 import com.smartcity.events.dto.EventDTO;
 import com.smartcity.events.dto.NormalizedEvent;
+import com.smartcity.events.exception.IngestQueueFullException;
+import com.smartcity.events.workflow.IncidentWorkflowExecutor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PreDestroy;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class EventIngestionService {
     
+    // Bulk batches are split into chunks of this size and normalized in parallel
+    private static final int BULK_CHUNK_SIZE = 256;
+    // Only the first rejections of a streamed upload are reported, to keep memory flat
+    private static final int MAX_STREAM_REJECTIONS_REPORTED = 100;
+    
+    private static final String ACCEPTED = "accepted";
+    private static final String REJECTED = "rejected";
+    private static final String DUPLICATE = "duplicate";
+    
     private final EventNormalizationService normalizationService;
-    private final KafkaTemplate<String, NormalizedEvent> kafkaTemplate;
-    private static final String KAFKA_TOPIC = "smartcity-events";
+    private final EventPublisher eventPublisher;
+    private final EventDeduplicator deduplicator;
+    private final EventIdGenerator idGenerator;
+    private final IncidentWorkflowExecutor workflowExecutor;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final ForkJoinPool bulkPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
     
-    @Transactional
     public EventDTO ingestEvent(EventDTO eventDTO) {
+        // Device retries carry the same id; drop them before doing any work
+        if (isDuplicate(eventDTO)) {
+            return eventDTO;
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        prepare(eventDTO, now);
+        
+        // Normalize the event
+        NormalizedEvent normalizedEvent;
+        try {
+            normalizedEvent = normalizationService.normalize(eventDTO, now);
+        } catch (RuntimeException e) {
+            deduplicator.forget(dedupKey(eventDTO));
+            throw e;
+        }
+        
+        // Hand off to the batching publisher; reject instead of queueing unboundedly
+        if (!eventPublisher.offer(normalizedEvent)) {
+            deduplicator.forget(dedupKey(eventDTO));
+            throw new IngestQueueFullException("Ingest queue is full, retry later");
+        }
+        
+        // Trigger Step Functions workflow if it's an incident
+        if (isIncidentEvent(normalizedEvent)) {
+            triggerWorkflow(normalizedEvent);
+        }
+        
+        return eventDTO;
+    }
+    
+    public BatchIngestResponse ingestBatch(List<EventDTO> events) {
+        int size = events.size();
+        NormalizedEvent[] normalized = new NormalizedEvent[size];
+        BatchItemResult[] results = new BatchItemResult[size];
+        
+        // Validate and normalize in parallel; each slot is written by exactly one task
+        bulkPool.invoke(new NormalizeChunk(events, normalized, results, 0, size));
+        
+        // Same bounded queue as single and streamed events, in request order; what does not
+        // fit before the blocking offer times out is reported back as rejected
+        List<Integer> indexes = new ArrayList<>(size);
+        List<NormalizedEvent> accepted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (normalized[i] != null) {
+                indexes.add(i);
+                accepted.add(normalized[i]);
+            }
+        }
+        int queued = accepted.isEmpty() ? 0 : eventPublisher.offerAllBlocking(accepted);
+        for (int i = queued; i < accepted.size(); i++) {
+            int index = indexes.get(i);
+            deduplicator.forget(dedupKey(events.get(index)));
+            results[index] = rejected(index, events.get(index).getId(), "Ingest queue is full");
+        }
+        if (queued == 0 && !accepted.isEmpty()) {
+            throw new IngestQueueFullException("Ingest queue is full, retry later");
+        }
+        accepted = accepted.subList(0, queued);
+        
+        for (NormalizedEvent event : accepted) {
+            if (isIncidentEvent(event)) {
+                triggerWorkflow(event);
+            }
+        }
+        
+        int duplicates = 0;
+        for (BatchItemResult result : results) {
+            if (DUPLICATE.equals(result.getStatus())) {
+                duplicates++;
+            }
+        }
+        
+        return BatchIngestResponse.builder()
+                .total(size)
+                .accepted(accepted.size())
+                .duplicates(duplicates)
+                .rejected(size - accepted.size() - duplicates)
+                .results(Arrays.asList(results))
+                .build();
+    }
+    
+    public BatchIngestResponse ingestStream(InputStream body) throws IOException {
+        ObjectReader eventReader = objectMapper.readerFor(EventDTO.class);
+        List<BatchItemResult> rejections = new ArrayList<>();
+        int total = 0;
+        int accepted = 0;
+        int duplicates = 0;
+        
+        // One event per line; each line is parsed, normalized and queued before the next is read
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                int index = total++;
+                BatchItemResult result = ingestStreamedLine(index, line, eventReader);
+                if (ACCEPTED.equals(result.getStatus())) {
+                    accepted++;
+                } else if (DUPLICATE.equals(result.getStatus())) {
+                    duplicates++;
+                } else if (rejections.size() < MAX_STREAM_REJECTIONS_REPORTED) {
+                    rejections.add(result);
+                }
+            }
+        }
+        
+        return BatchIngestResponse.builder()
+                .total(total)
+                .accepted(accepted)
+                .duplicates(duplicates)
+                .rejected(total - accepted - duplicates)
+                .results(rejections)
+                .build();
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        bulkPool.shutdown();
+    }
+    
+    private void prepare(EventDTO eventDTO, LocalDateTime now) {
         // Generate event ID if not provided
         if (eventDTO.getId() == null || eventDTO.getId().isEmpty()) {
-            eventDTO.setId("EVT-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
+            eventDTO.setId(idGenerator.nextId());
         }
         
         // Set timestamp if not provided
         if (eventDTO.getTimestamp() == null) {
-            eventDTO.setTimestamp(LocalDateTime.now());
+            eventDTO.setTimestamp(now);
+        }
+    }
+    
+    private BatchItemResult processBatchItem(int index, EventDTO eventDTO, NormalizedEvent[] normalized) {
+        String invalidReason = validate(eventDTO);
+        if (invalidReason != null) {
+            return rejected(index, eventDTO != null ? eventDTO.getId() : null, invalidReason);
+        }
+        if (isDuplicate(eventDTO)) {
+            return itemResult(index, eventDTO.getId(), DUPLICATE);
         }
         
-        // Normalize the event
-        NormalizedEvent normalizedEvent = normalizationService.normalize(eventDTO);
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            prepare(eventDTO, now);
+            normalized[index] = normalizationService.normalize(eventDTO, now);
+        } catch (RuntimeException e) {
+            deduplicator.forget(dedupKey(eventDTO));
+            return rejected(index, eventDTO.getId(), "Normalization failed: " + e.getMessage());
+        }
         
-        // Publish to Kafka (if available)
+        return itemResult(index, eventDTO.getId(), ACCEPTED);
+    }
+    
+    private BatchItemResult ingestStreamedLine(int index, String line, ObjectReader eventReader) {
+        EventDTO eventDTO;
         try {
-            kafkaTemplate.send(KAFKA_TOPIC, normalizedEvent.getEventId(), normalizedEvent);
-        } catch (Exception e) {
-            // Kafka not available - log but continue
-            System.err.println("Warning: Could not publish to Kafka: " + e.getMessage());
-            // Event ingestion still succeeds even if Kafka publish fails
+            eventDTO = eventReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            return rejected(index, null, "Malformed JSON: " + e.getOriginalMessage());
+        }
+        
+        String invalidReason = validate(eventDTO);
+        if (invalidReason != null) {
+            return rejected(index, eventDTO != null ? eventDTO.getId() : null, invalidReason);
+        }
+        if (isDuplicate(eventDTO)) {
+            return itemResult(index, eventDTO.getId(), DUPLICATE);
+        }
+        
+        NormalizedEvent normalizedEvent;
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            prepare(eventDTO, now);
+            normalizedEvent = normalizationService.normalize(eventDTO, now);
+        } catch (RuntimeException e) {
+            deduplicator.forget(dedupKey(eventDTO));
+            return rejected(index, eventDTO.getId(), "Normalization failed: " + e.getMessage());
+        }
+        
+        // Blocking hand-off: a full queue slows down reading the upload instead of failing it
+        if (!eventPublisher.offerBlocking(normalizedEvent)) {
+            deduplicator.forget(dedupKey(eventDTO));
+            return rejected(index, eventDTO.getId(), "Ingest queue is full");
         }
         
-        // Trigger Step Functions workflow if it's an incident
         if (isIncidentEvent(normalizedEvent)) {
             triggerWorkflow(normalizedEvent);
         }
+        return itemResult(index, eventDTO.getId(), ACCEPTED);
+    }
+    
+    // Only client-supplied ids can repeat; generated ids are unique by construction
+    private boolean isDuplicate(EventDTO eventDTO) {
+        String id = eventDTO.getId();
+        return id != null && !id.isEmpty() && !deduplicator.markIfFirst(dedupKey(eventDTO));
+    }
+    
+    // Producers reuse an event's id for its status updates (open -> in-progress -> resolved),
+    // so only a repeat of the same id in the same status is a retry
+    private static String dedupKey(EventDTO eventDTO) {
+        return eventDTO.getId() + '|' + eventDTO.getStatus();
+    }
+    
+    private String validate(EventDTO eventDTO) {
+        if (eventDTO == null) {
+            return "Event is null";
+        }
         
-        return eventDTO;
+        Set<ConstraintViolation<EventDTO>> violations = validator.validate(eventDTO);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+    
+    private BatchItemResult itemResult(int index, String eventId, String status) {
+        return BatchItemResult.builder()
+                .index(index)
+                .eventId(eventId)
+                .status(status)
+                .build();
+    }
+    
+    private BatchItemResult rejected(int index, String eventId, String reason) {
+        return BatchItemResult.builder()
+                .index(index)
+                .eventId(eventId)
+                .status(REJECTED)
+                .reason(reason)
+                .build();
     }
     
     private boolean isIncidentEvent(NormalizedEvent event) {
@@ -59,9 +296,37 @@ public class EventIngestionService {
     }
     
     private void triggerWorkflow(NormalizedEvent event) {
-        // TODO: Implement AWS Step Functions trigger
-        // This would trigger a workflow like: incident -> assign -> dispatch
-        System.out.println("Triggering workflow for event: " + event.getEventId());
+        // Incident -> assign -> dispatch runs asynchronously; ingest latency doesn't wait on it
+        workflowExecutor.submit(event);
+    }
+    
+    private class NormalizeChunk extends RecursiveAction {
+        private final List<EventDTO> events;
+        private final NormalizedEvent[] normalized;
+        private final BatchItemResult[] results;
+        private final int from;
+        private final int to;
+        
+        NormalizeChunk(List<EventDTO> events, NormalizedEvent[] normalized, BatchItemResult[] results,
+                       int from, int to) {
+            this.events = events;
+            this.normalized = normalized;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= BULK_CHUNK_SIZE) {
+                for (int i = from; i < to; i++) {
+                    results[i] = processBatchItem(i, events.get(i), normalized);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new NormalizeChunk(events, normalized, results, from, mid),
+                      new NormalizeChunk(events, normalized, results, mid, to));
+        }
     }
 }
-
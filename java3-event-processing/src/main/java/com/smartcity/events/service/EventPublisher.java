@@ -0,0 +1,266 @@
+package com.smartcity.events.service;
+
+import com.smartcity.events.dto.NormalizedEvent;
+import com.smartcity.events.spool.EventSpool;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Request threads only enqueue; a dedicated thread drains the bounded queue into
+// batches (batch-size events or linger-ms, whichever comes first) and tracks acks per batch.
+// Events Kafka does not ack go to the EventSpool; while the spool has a backlog, new batches
+// are appended behind it instead of being sent, so a broker outage neither blocks nor drops.
+// Producer callbacks only hand unacked events back through a queue; the publisher thread
+// waits for the previous batch to settle and spools its failures, in batch order, before it
+// sends anything newer, so the spool is only written from one thread and order is kept.
+// A send that fails straight away (no metadata within max.block.ms, or a full buffer) ends the
+// batch: the events after it are spooled with the failures rather than each blocking in turn,
+// and the backlog this leaves sends the following batches to the spool as well.
+@Slf4j
+@Component
+public class EventPublisher {
+    
+    private static final String KAFKA_TOPIC = "smartcity-events";
+    private static final long IDLE_POLL_MS = 100;
+    private static final CompletableFuture<?> NOT_SENT =
+            CompletableFuture.failedFuture(new IllegalStateException("not sent after an earlier send failed"));
+    
+    private final KafkaTemplate<String, NormalizedEvent> kafkaTemplate;
+    private final EventSpool spool;
+    private final BlockingQueue<NormalizedEvent> queue;
+    // Unacked events of settled batches, in batch order; drained by the publisher thread
+    private final Queue<NormalizedEvent> unacked = new ConcurrentLinkedQueue<>();
+    private final int batchSize;
+    private final long lingerNanos;
+    private final long blockingOfferTimeoutMs;
+    
+    private final AtomicLong batchSequence = new AtomicLong();
+    private final AtomicLong eventsAcked = new AtomicLong();
+    private final AtomicLong eventsFailed = new AtomicLong();
+    private final AtomicLong eventsRejected = new AtomicLong();
+    private final AtomicLong eventsSpooled = new AtomicLong();
+    
+    private volatile boolean running;
+    private Thread publisherThread;
+    // Publisher thread only
+    private CompletableFuture<?> inFlight = CompletableFuture.completedFuture(null);
+    
+    public EventPublisher(KafkaTemplate<String, NormalizedEvent> kafkaTemplate,
+                          EventSpool spool,
+                          @Value("${events.ingest.queue-capacity:10000}") int queueCapacity,
+                          @Value("${events.publisher.batch-size:500}") int batchSize,
+                          @Value("${events.publisher.linger-ms:20}") long lingerMs,
+                          @Value("${events.ingest.blocking-offer-timeout-ms:5000}") long blockingOfferTimeoutMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.spool = spool;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        this.blockingOfferTimeoutMs = blockingOfferTimeoutMs;
+    }
+    
+    @PostConstruct
+    public void start() {
+        running = true;
+        publisherThread = new Thread(this::runLoop, "event-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+    
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        publisherThread.join(TimeUnit.SECONDS.toMillis(10));
+        if (publisherThread.isAlive()) {
+            publisherThread.interrupt();
+        }
+    }
+    
+    // Non-blocking; returns false when the queue is full
+    public boolean offer(NormalizedEvent event) {
+        if (queue.offer(event)) {
+            return true;
+        }
+        eventsRejected.incrementAndGet();
+        return false;
+    }
+    
+    // Waits up to blocking-offer-timeout-ms for queue space; returns false on timeout
+    public boolean offerBlocking(NormalizedEvent event) {
+        try {
+            if (queue.offer(event, blockingOfferTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        eventsRejected.incrementAndGet();
+        return false;
+    }
+    
+    // Queues the events in order, waiting up to blocking-offer-timeout-ms in all for space.
+    // Returns how many were queued; the events after them were not.
+    public int offerAllBlocking(List<NormalizedEvent> events) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockingOfferTimeoutMs);
+        for (int i = 0; i < events.size(); i++) {
+            try {
+                if (!queue.offer(events.get(i), deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    eventsRejected.addAndGet(events.size() - i);
+                    return i;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                eventsRejected.addAndGet(events.size() - i);
+                return i;
+            }
+        }
+        return events.size();
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueRemainingCapacity", queue.remainingCapacity());
+        stats.put("batchesPublished", batchSequence.get());
+        stats.put("eventsAcked", eventsAcked.get());
+        stats.put("eventsFailed", eventsFailed.get());
+        stats.put("eventsRejected", eventsRejected.get());
+        stats.put("eventsSpooled", eventsSpooled.get());
+        return stats;
+    }
+    
+    private void runLoop() {
+        List<NormalizedEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                NormalizedEvent first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    spoolUnacked();
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                publish(batch);
+                batch.clear();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        awaitInFlight();
+        spoolUnacked();
+    }
+    
+    private void fillBatch(List<NormalizedEvent> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            NormalizedEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+    
+    private void publish(List<NormalizedEvent> batch) {
+        // Whatever the previous batch failed to deliver is older than this one
+        awaitInFlight();
+        spoolUnacked();
+        long batchId = batchSequence.incrementAndGet();
+        if (spool.hasBacklog()) {
+            // Keep order: nothing goes to Kafka directly until the spool has been replayed
+            spool.appendAll(batch);
+            eventsSpooled.addAndGet(batch.size());
+            return;
+        }
+        
+        NormalizedEvent[] events = batch.toArray(new NormalizedEvent[0]);
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[events.length];
+        Arrays.fill(sends, NOT_SENT);
+        for (int i = 0; i < events.length; i++) {
+            try {
+                sends[i] = kafkaTemplate.send(KAFKA_TOPIC, events[i].getEventId(), events[i]);
+            } catch (Exception e) {
+                sends[i] = CompletableFuture.failedFuture(e);
+            }
+            if (sends[i].isCompletedExceptionally()) {
+                // The broker is unreachable; every further send would block for max.block.ms too
+                break;
+            }
+        }
+        
+        // Runs on a producer I/O thread: count and hand back, never touch the spool here
+        inFlight = CompletableFuture.allOf(sends).handle((ignored, firstError) -> {
+            int failed = 0;
+            for (int i = 0; i < sends.length; i++) {
+                if (sends[i].isCompletedExceptionally()) {
+                    unacked.add(events[i]);
+                    failed++;
+                }
+            }
+            int acked = sends.length - failed;
+            eventsAcked.addAndGet(acked);
+            eventsFailed.addAndGet(failed);
+            if (failed > 0) {
+                log.warn("Kafka batch {} partially failed, unacked events spooled: {}/{} acked ({})",
+                        batchId, acked, sends.length, firstError != null ? firstError.getMessage() : "unknown");
+            } else {
+                log.debug("Kafka batch {} acked: {} events", batchId, acked);
+            }
+            return null;
+        });
+    }
+    
+    // Every send completes within the producer's delivery.timeout.ms, so this wait is bounded,
+    // but only by that: 10 s as configured in application.yml, 120 s with Kafka's default. One
+    // batch is in flight at a time, so while the broker is slow to fail the queue fills and
+    // ingest turns new events away
+    private void awaitInFlight() {
+        try {
+            inFlight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Failures are reported per event through unacked
+        }
+    }
+    
+    private void spoolUnacked() {
+        List<NormalizedEvent> failed = new ArrayList<>();
+        NormalizedEvent event;
+        while ((event = unacked.poll()) != null) {
+            failed.add(event);
+        }
+        if (!failed.isEmpty()) {
+            spool.appendAll(failed);
+            eventsSpooled.addAndGet(failed.size());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.smartcity.events.service;
+
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Immutable set of compiled alias tables; replaced as a whole when the rules file changes
+public final class NormalizationRules {
+    
+    private final AliasTable eventTypes;
+    private final AliasTable severities;
+    private final AliasTable statuses;
+    
+    private NormalizationRules(AliasTable eventTypes, AliasTable severities, AliasTable statuses) {
+        this.eventTypes = eventTypes;
+        this.severities = severities;
+        this.statuses = statuses;
+    }
+    
+    public static NormalizationRules parse(InputStream yaml) throws IOException {
+        Object root = new Yaml().load(yaml);
+        if (!(root instanceof Map<?, ?> sections)) {
+            throw new IOException("Normalization rules must be a YAML mapping");
+        }
+        return new NormalizationRules(
+                compile(sections, "event-types"),
+                compile(sections, "severities"),
+                compile(sections, "statuses"));
+    }
+    
+    public AliasTable getEventTypes() {
+        return eventTypes;
+    }
+    
+    public AliasTable getSeverities() {
+        return severities;
+    }
+    
+    public AliasTable getStatuses() {
+        return statuses;
+    }
+    
+    private static AliasTable compile(Map<?, ?> sections, String name) throws IOException {
+        if (!(sections.get(name) instanceof Map<?, ?> section)) {
+            throw new IOException("Missing section '" + name + "'");
+        }
+        Object defaultValue = section.get("default");
+        if (!(section.get("aliases") instanceof Map<?, ?> aliases)) {
+            throw new IOException("Section '" + name + "' has no 'aliases' mapping");
+        }
+        
+        Map<String, Collection<String>> aliasesByCanonical = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : aliases.entrySet()) {
+            Object value = entry.getValue();
+            List<String> names = value instanceof Collection<?> list
+                    ? list.stream().map(String::valueOf).toList()
+                    : value == null ? List.of() : List.of(String.valueOf(value));
+            aliasesByCanonical.put(String.valueOf(entry.getKey()), names);
+        }
+        
+        try {
+            return AliasTable.of(defaultValue != null ? String.valueOf(defaultValue) : null, aliasesByCanonical);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Section '" + name + "': " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.smartcity.events.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Holds the active NormalizationRules. Starts from the bundled normalization-rules.yml,
+// or from events.normalization.rules-file when set, and polls that file for changes;
+// a changed file is compiled off the hot path and swapped in atomically.
+@Slf4j
+@Component
+public class NormalizationRulesLoader {
+    
+    private static final String DEFAULT_RULES = "normalization-rules.yml";
+    
+    private final AtomicReference<NormalizationRules> current = new AtomicReference<>();
+    private final String rulesFile;
+    private Path rulesPath;
+    private final long reloadIntervalMs;
+    private ScheduledExecutorService watcher;
+    private long loadedModifiedTime = -1;
+    
+    public NormalizationRulesLoader(@Value("${events.normalization.rules-file:}") String rulesFile,
+                                    @Value("${events.normalization.reload-interval-ms:5000}") long reloadIntervalMs) {
+        this.rulesFile = rulesFile;
+        this.reloadIntervalMs = reloadIntervalMs;
+    }
+    
+    @PostConstruct
+    public void init() throws IOException {
+        try (InputStream in = new ClassPathResource(DEFAULT_RULES).getInputStream()) {
+            current.set(NormalizationRules.parse(in));
+        }
+        if (rulesFile == null || rulesFile.isBlank()) {
+            return;
+        }
+        
+        rulesPath = Path.of(rulesFile);
+        reloadIfChanged();
+        watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "normalization-rules-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reloadIfChanged, reloadIntervalMs, reloadIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+    
+    public NormalizationRules current() {
+        return current.get();
+    }
+    
+    // Package-private so tests can trigger a poll without waiting for the watcher
+    void reloadIfChanged() {
+        Path path = rulesPath;
+        try {
+            if (!Files.isRegularFile(path)) {
+                return;
+            }
+            long modified = Files.getLastModifiedTime(path).toMillis();
+            if (modified == loadedModifiedTime) {
+                return;
+            }
+            // Remember the attempt so a broken file is reported once, not on every poll
+            loadedModifiedTime = modified;
+            try (InputStream in = Files.newInputStream(path)) {
+                current.set(NormalizationRules.parse(in));
+            }
+            log.info("Loaded normalization rules from {}", path);
+        } catch (IOException | RuntimeException e) {
+            // Keep serving the previous rules until the file is fixed
+            log.error("Could not load normalization rules from {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.smartcity.events.service;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+// Read-only view of originalType/source/location overlaid by the event's metadata.
+// Behaves like the map previously built with three puts followed by putAll(metadata),
+// without copying the metadata entries.
+final class NormalizedDataView extends AbstractMap<String, Object> {
+    
+    private static final String[] BASE_KEYS = {"originalType", "source", "location"};
+    
+    private final Object[] baseValues;
+    private final Map<String, Object> metadata;
+    
+    NormalizedDataView(String originalType, String source, String location, Map<String, Object> metadata) {
+        this.baseValues = new Object[] {originalType, source, location};
+        this.metadata = metadata;
+    }
+    
+    @Override
+    public Object get(Object key) {
+        if (metadata != null && metadata.containsKey(key)) {
+            return metadata.get(key);
+        }
+        int base = baseIndex(key);
+        return base >= 0 ? baseValues[base] : null;
+    }
+    
+    @Override
+    public boolean containsKey(Object key) {
+        return baseIndex(key) >= 0 || (metadata != null && metadata.containsKey(key));
+    }
+    
+    @Override
+    public int size() {
+        if (metadata == null) {
+            return BASE_KEYS.length;
+        }
+        int size = metadata.size();
+        for (String key : BASE_KEYS) {
+            if (!metadata.containsKey(key)) {
+                size++;
+            }
+        }
+        return size;
+    }
+    
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Object>> iterator() {
+                return new EntryIterator();
+            }
+            
+            @Override
+            public int size() {
+                return NormalizedDataView.this.size();
+            }
+        };
+    }
+    
+    private static int baseIndex(Object key) {
+        for (int i = 0; i < BASE_KEYS.length; i++) {
+            if (BASE_KEYS[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    // Base entries not shadowed by metadata first, then the metadata entries
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int baseCursor = nextBase(0);
+        private Iterator<Entry<String, Object>> metadataEntries;
+        
+        @Override
+        public boolean hasNext() {
+            if (baseCursor < BASE_KEYS.length) {
+                return true;
+            }
+            return metadata != null && metadataIterator().hasNext();
+        }
+        
+        @Override
+        public Entry<String, Object> next() {
+            if (baseCursor < BASE_KEYS.length) {
+                Entry<String, Object> entry = new SimpleImmutableEntry<>(BASE_KEYS[baseCursor], baseValues[baseCursor]);
+                baseCursor = nextBase(baseCursor + 1);
+                return entry;
+            }
+            if (metadata == null) {
+                throw new NoSuchElementException();
+            }
+            return metadataIterator().next();
+        }
+        
+        private Iterator<Entry<String, Object>> metadataIterator() {
+            if (metadataEntries == null) {
+                metadataEntries = metadata.entrySet().iterator();
+            }
+            return metadataEntries;
+        }
+        
+        private int nextBase(int from) {
+            int i = from;
+            while (i < BASE_KEYS.length && metadata != null && metadata.containsKey(BASE_KEYS[i])) {
+                i++;
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.smartcity.events.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+// Previous id format (EVT- plus 8 random hex chars); not sortable and collision-prone at volume
+@Component
+@ConditionalOnProperty(name = "events.id.generator", havingValue = "uuid")
+public class RandomEventIdGenerator implements EventIdGenerator {
+    
+    @Override
+    public String nextId() {
+        return "EVT-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    }
+}
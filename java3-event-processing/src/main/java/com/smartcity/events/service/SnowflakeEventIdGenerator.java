@@ -0,0 +1,95 @@
+package com.smartcity.events.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Time-ordered 64-bit ids: 41 bits of milliseconds since 2024-01-01, 12 bits of sequence,
+// 10 bits of node id. The last id is kept in one AtomicLong and advanced with CAS, so
+// request threads never block each other. Sequence overflow carries into the timestamp
+// and a clock that steps back is ignored, so ids stay strictly increasing per node.
+// Rendered as EVT- plus 13 fixed-width Crockford base32 chars, which sort like the number.
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "events.id.generator", havingValue = "snowflake", matchIfMissing = true)
+public class SnowflakeEventIdGenerator implements EventIdGenerator {
+    
+    private static final long EPOCH_MS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_INCREMENT = 1L << NODE_BITS;
+    
+    private static final String PREFIX = "EVT-";
+    private static final char[] CROCKFORD = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ENCODED_LENGTH = 13;
+    
+    private final long nodeId;
+    private final LongSupplier clock;
+    private final AtomicLong lastId = new AtomicLong();
+    
+    @Autowired
+    public SnowflakeEventIdGenerator(@Value("${events.id.node-id:-1}") long configuredNodeId) {
+        this(configuredNodeId, System::currentTimeMillis);
+    }
+    
+    // Tests substitute the wall clock to step it backwards
+    SnowflakeEventIdGenerator(long configuredNodeId, LongSupplier clock) {
+        this.nodeId = configuredNodeId >= 0 ? configuredNodeId & MAX_NODE_ID : hostNodeId();
+        this.clock = clock;
+        log.info("Event id generator using node id {}", nodeId);
+    }
+    
+    @Override
+    public String nextId() {
+        return encode(nextRawId());
+    }
+    
+    public long nextRawId() {
+        while (true) {
+            long last = lastId.get();
+            long timestamp = clock.getAsLong() - EPOCH_MS;
+            long candidate = (timestamp << TIMESTAMP_SHIFT) | nodeId;
+            if (candidate <= last) {
+                // Same millisecond (or clock went back): bump the sequence of the last id
+                candidate = last + SEQUENCE_INCREMENT;
+            }
+            if (lastId.compareAndSet(last, candidate)) {
+                return candidate;
+            }
+        }
+    }
+    
+    private static String encode(long id) {
+        char[] chars = new char[PREFIX.length() + ENCODED_LENGTH];
+        PREFIX.getChars(0, PREFIX.length(), chars, 0);
+        long remaining = id;
+        for (int i = chars.length - 1; i >= PREFIX.length(); i--) {
+            chars[i] = CROCKFORD[(int) (remaining & 31)];
+            remaining >>>= 5;
+        }
+        return new String(chars);
+    }
+    
+    // Without a configured node id, derive one from the host name (container id under Docker)
+    private static long hostNodeId() {
+        String host = System.getenv("HOSTNAME");
+        if (host == null || host.isEmpty()) {
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (UnknownHostException e) {
+                host = "localhost";
+            }
+        }
+        return (host.hashCode() & 0x7fffffff) & MAX_NODE_ID;
+    }
+}
@@ -0,0 +1,437 @@
+package com.smartcity.events.spool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcity.events.dto.NormalizedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Disk-backed write-ahead spool for events that could not be published to Kafka.
+// Records ([length][crc32][json]) are appended to size-capped segment files through a
+// FileChannel; a background task replays closed segments oldest-first, rate limited,
+// once the broker accepts sends again, and deletes each segment after it is fully acked.
+// When the spool exceeds max-bytes the oldest segment is dropped.
+@Slf4j
+@Component
+public class EventSpool {
+    
+    private static final String KAFKA_TOPIC = "smartcity-events";
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int HEADER_BYTES = 8;
+    private static final int REPLAY_WINDOW = 100;
+    
+    enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+    
+    private final KafkaTemplate<String, NormalizedEvent> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long maxBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+    private final long replayIntervalMs;
+    private final int replayRatePerSecond;
+    private final long sendTimeoutMs;
+    
+    // Guarded by this
+    private final Deque<Path> closedSegments = new ArrayDeque<>();
+    private long closedBytes;
+    private FileChannel activeChannel;
+    private Path activeSegment;
+    private long activeBytes;
+    private long nextSegmentSequence;
+    private boolean unsynced;
+    private long lastFsyncMs;
+    
+    // Replay thread only; the segment stays mapped across retries until it is fully acked
+    private Path replaySegment;
+    private MappedByteBuffer replayBuffer;
+    private int replayOffset;
+    // Records past replayOffset that an earlier, partly failed window already got acked
+    private final Set<Integer> replayAcked = new HashSet<>();
+    
+    private volatile boolean backlog;
+    private ScheduledExecutorService scheduler;
+    
+    private final AtomicLong spooled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+    private final AtomicLong droppedSegments = new AtomicLong();
+    private final AtomicLong corruptRecords = new AtomicLong();
+    
+    public EventSpool(KafkaTemplate<String, NormalizedEvent> kafkaTemplate,
+                      ObjectMapper objectMapper,
+                      @Value("${events.spool.directory:./data/spool}") String directory,
+                      @Value("${events.spool.segment-bytes:67108864}") long segmentBytes,
+                      @Value("${events.spool.max-bytes:1073741824}") long maxBytes,
+                      @Value("${events.spool.fsync:interval}") String fsyncPolicy,
+                      @Value("${events.spool.fsync-interval-ms:1000}") long fsyncIntervalMs,
+                      @Value("${events.spool.replay-interval-ms:5000}") long replayIntervalMs,
+                      @Value("${events.spool.replay-rate-per-second:2000}") int replayRatePerSecond,
+                      @Value("${events.spool.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsyncPolicy.toUpperCase(Locale.ROOT));
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.replayIntervalMs = replayIntervalMs;
+        this.replayRatePerSecond = replayRatePerSecond;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+    
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        // Segments left by a previous run are replayed first, in order
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> existing = files
+                    .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+            for (Path segment : existing) {
+                closedSegments.addLast(segment);
+                closedBytes += Files.size(segment);
+                nextSegmentSequence = Math.max(nextSegmentSequence, sequenceOf(segment) + 1);
+            }
+        }
+        backlog = !closedSegments.isEmpty();
+        if (backlog) {
+            log.info("Found {} spooled segment(s) ({} bytes) to replay", closedSegments.size(), closedBytes);
+        }
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "event-spool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::replay, replayIntervalMs, replayIntervalMs, TimeUnit.MILLISECONDS);
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            scheduler.scheduleWithFixedDelay(this::syncIfDirty, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    @PreDestroy
+    public synchronized void stop() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (activeChannel != null) {
+            activeChannel.force(false);
+            activeChannel.close();
+            activeChannel = null;
+        }
+    }
+    
+    // True while anything is waiting to be replayed; new events must queue behind it
+    public boolean hasBacklog() {
+        return backlog;
+    }
+    
+    public void append(NormalizedEvent event) {
+        appendAll(List.of(event));
+    }
+    
+    public synchronized void appendAll(List<NormalizedEvent> events) {
+        for (NormalizedEvent event : events) {
+            try {
+                writeRecord(objectMapper.writeValueAsBytes(event));
+                spooled.incrementAndGet();
+                backlog = true;
+            } catch (IOException e) {
+                lost.incrementAndGet();
+                log.error("Could not spool event {}: {}", event.getEventId(), e.getMessage());
+            }
+        }
+        try {
+            if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+                sync();
+            } else if (fsyncPolicy == FsyncPolicy.INTERVAL
+                    && System.currentTimeMillis() - lastFsyncMs >= fsyncIntervalMs) {
+                sync();
+            }
+        } catch (IOException e) {
+            log.error("Could not fsync spool segment {}: {}", activeSegment, e.getMessage());
+        }
+    }
+    
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backlog", backlog);
+        stats.put("segments", closedSegments.size() + (activeBytes > 0 ? 1 : 0));
+        stats.put("bytes", closedBytes + activeBytes);
+        stats.put("spooled", spooled.get());
+        stats.put("replayed", replayed.get());
+        stats.put("lost", lost.get());
+        stats.put("droppedSegments", droppedSegments.get());
+        stats.put("corruptRecords", corruptRecords.get());
+        return stats;
+    }
+    
+    private void writeRecord(byte[] payload) throws IOException {
+        long recordBytes = HEADER_BYTES + payload.length;
+        enforceDiskLimit(recordBytes);
+        if (activeChannel == null || (activeBytes > 0 && activeBytes + recordBytes > segmentBytes)) {
+            rollActive();
+            openActive();
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate((int) recordBytes);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        while (record.hasRemaining()) {
+            activeChannel.write(record);
+        }
+        activeBytes += recordBytes;
+        unsynced = true;
+    }
+    
+    private void enforceDiskLimit(long incomingBytes) throws IOException {
+        while (closedBytes + activeBytes + incomingBytes > maxBytes) {
+            if (closedSegments.isEmpty()) {
+                if (activeBytes == 0) {
+                    return;
+                }
+                rollActive();
+            }
+            Path oldest = closedSegments.removeFirst();
+            long size = Files.size(oldest);
+            closedBytes -= size;
+            Files.deleteIfExists(oldest);
+            droppedSegments.incrementAndGet();
+            log.warn("Spool over {} bytes: dropped oldest segment {} ({} bytes)", maxBytes, oldest, size);
+        }
+    }
+    
+    private void openActive() throws IOException {
+        activeSegment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentSequence++, SEGMENT_SUFFIX));
+        activeChannel = FileChannel.open(activeSegment,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        activeBytes = 0;
+    }
+    
+    // Closes the active segment (if it has data) and makes it eligible for replay
+    private void rollActive() throws IOException {
+        if (activeChannel == null) {
+            return;
+        }
+        activeChannel.force(false);
+        activeChannel.close();
+        activeChannel = null;
+        unsynced = false;
+        if (activeBytes > 0) {
+            closedSegments.addLast(activeSegment);
+            closedBytes += activeBytes;
+        } else {
+            Files.deleteIfExists(activeSegment);
+        }
+        activeSegment = null;
+        activeBytes = 0;
+    }
+    
+    private void sync() throws IOException {
+        if (activeChannel != null && unsynced) {
+            activeChannel.force(false);
+            unsynced = false;
+        }
+        lastFsyncMs = System.currentTimeMillis();
+    }
+    
+    private synchronized void syncIfDirty() {
+        try {
+            sync();
+        } catch (IOException e) {
+            log.error("Could not fsync spool segment {}: {}", activeSegment, e.getMessage());
+        }
+    }
+    
+    // Package-private so tests can run a pass without the scheduler
+    void replay() {
+        if (!backlog) {
+            return;
+        }
+        try {
+            synchronized (this) {
+                rollActive();
+            }
+            while (true) {
+                Path segment;
+                synchronized (this) {
+                    segment = closedSegments.peekFirst();
+                    if (segment == null) {
+                        backlog = activeBytes > 0;
+                        return;
+                    }
+                }
+                if (!segment.equals(replaySegment)) {
+                    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                        replayBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    }
+                    replaySegment = segment;
+                    replayOffset = 0;
+                    replayAcked.clear();
+                }
+                if (!replaySegment()) {
+                    // Broker still unavailable; resume from replayOffset on the next tick
+                    return;
+                }
+                replaySegment = null;
+                replayBuffer = null;
+                synchronized (this) {
+                    // The disk limit may already have dropped it while it was being replayed
+                    if (segment.equals(closedSegments.peekFirst())) {
+                        closedSegments.removeFirst();
+                        closedBytes -= Files.size(segment);
+                        Files.deleteIfExists(segment);
+                    }
+                }
+                log.info("Replayed spool segment {}", segment);
+            }
+        } catch (IOException e) {
+            log.error("Spool replay failed: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Returns true once every record of the segment has been acked by Kafka. Each record is
+    // counted as replayed once, when its ack is seen.
+    private boolean replaySegment() throws InterruptedException {
+        MappedByteBuffer buffer = replayBuffer;
+        buffer.position(replayOffset);
+        long nanosPerRecord = TimeUnit.SECONDS.toNanos(1) / Math.max(1, replayRatePerSecond);
+        
+        List<Integer> offsets = new ArrayList<>(REPLAY_WINDOW);
+        List<CompletableFuture<?>> sends = new ArrayList<>(REPLAY_WINDOW);
+        while (true) {
+            long windowStart = System.nanoTime();
+            offsets.clear();
+            sends.clear();
+            while (sends.size() < REPLAY_WINDOW) {
+                int offset = buffer.position();
+                NormalizedEvent event = readRecord(buffer);
+                if (event == null) {
+                    if (buffer.position() == offset) {
+                        break;
+                    }
+                    continue;
+                }
+                if (replayAcked.remove(offset)) {
+                    continue;
+                }
+                offsets.add(offset);
+                try {
+                    sends.add(kafkaTemplate.send(KAFKA_TOPIC, event.getEventId(), event));
+                } catch (Exception e) {
+                    sends.add(CompletableFuture.failedFuture(e));
+                }
+            }
+            if (sends.isEmpty()) {
+                replayOffset = buffer.position();
+                return true;
+            }
+            
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+            int firstFailed = -1;
+            Exception failure = null;
+            for (int i = 0; i < sends.size(); i++) {
+                try {
+                    sends.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    replayed.incrementAndGet();
+                    if (firstFailed >= 0) {
+                        replayAcked.add(offsets.get(i));
+                    }
+                } catch (ExecutionException | TimeoutException e) {
+                    if (firstFailed < 0) {
+                        firstFailed = i;
+                        failure = e;
+                    }
+                }
+            }
+            if (firstFailed >= 0) {
+                // Resume at the first unacked record; acked ones after it are skipped, though a
+                // send that timed out may still land and be sent again (at-least-once)
+                replayOffset = offsets.get(firstFailed);
+                log.warn("Spool replay paused, Kafka still unavailable: {}", failure.getMessage());
+                return false;
+            }
+            replayOffset = buffer.position();
+            
+            long remaining = sends.size() * nanosPerRecord - (System.nanoTime() - windowStart);
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+        }
+    }
+    
+    // Returns null at end of data (position unchanged) or for a skipped corrupt record (position advanced)
+    private NormalizedEvent readRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            // Torn write at the tail of a segment (crash mid-append): skip the rest
+            corruptRecords.incrementAndGet();
+            buffer.position(buffer.limit());
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            corruptRecords.incrementAndGet();
+            return null;
+        }
+        try {
+            return objectMapper.readValue(payload, NormalizedEvent.class);
+        } catch (IOException e) {
+            corruptRecords.incrementAndGet();
+            return null;
+        }
+    }
+    
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.smartcity.events.workflow;
+
+import com.smartcity.events.dto.NormalizedEvent;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetter {
+    private String eventId;
+    private int attempts;
+    private String lastError;
+    private LocalDateTime failedAt;
+    private NormalizedEvent event;
+}
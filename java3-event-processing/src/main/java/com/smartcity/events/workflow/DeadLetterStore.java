@@ -0,0 +1,49 @@
+package com.smartcity.events.workflow;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Bounded in-memory store of workflow dispatches that exhausted their retries;
+// the oldest entry is dropped when full
+@Component
+public class DeadLetterStore {
+    
+    private final Deque<DeadLetter> deadLetters = new ArrayDeque<>();
+    private final int capacity;
+    private long dropped;
+    
+    public DeadLetterStore(@Value("${events.workflow.dead-letter.capacity:1000}") int capacity) {
+        this.capacity = capacity;
+    }
+    
+    public synchronized void add(DeadLetter deadLetter) {
+        if (deadLetters.size() == capacity) {
+            deadLetters.removeFirst();
+            dropped++;
+        }
+        deadLetters.addLast(deadLetter);
+    }
+    
+    public synchronized List<DeadLetter> getAll() {
+        return new ArrayList<>(deadLetters);
+    }
+    
+    public synchronized List<DeadLetter> drain() {
+        List<DeadLetter> drained = new ArrayList<>(deadLetters);
+        deadLetters.clear();
+        return drained;
+    }
+    
+    public synchronized int size() {
+        return deadLetters.size();
+    }
+    
+    public synchronized long getDropped() {
+        return dropped;
+    }
+}
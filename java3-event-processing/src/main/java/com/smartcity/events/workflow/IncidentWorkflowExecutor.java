@@ -0,0 +1,142 @@
+package com.smartcity.events.workflow;
+
+import com.smartcity.events.dto.NormalizedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs workflow dispatches off the request path on a bounded pool. Failed attempts are
+// retried with exponential backoff; events that exhaust their attempts, or arrive while
+// the pool and its queue are full, go to the DeadLetterStore instead of blocking ingest.
+@Slf4j
+@Component
+public class IncidentWorkflowExecutor {
+    
+    private final WorkflowDispatcher dispatcher;
+    private final DeadLetterStore deadLetterStore;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService retryScheduler;
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    
+    public IncidentWorkflowExecutor(WorkflowDispatcher dispatcher,
+                                    DeadLetterStore deadLetterStore,
+                                    @Value("${events.workflow.executor.threads:4}") int threads,
+                                    @Value("${events.workflow.executor.queue-capacity:1000}") int queueCapacity,
+                                    @Value("${events.workflow.retry.max-attempts:5}") int maxAttempts,
+                                    @Value("${events.workflow.retry.initial-backoff-ms:500}") long initialBackoffMs,
+                                    @Value("${events.workflow.retry.max-backoff-ms:30000}") long maxBackoffMs) {
+        this.dispatcher = dispatcher;
+        this.deadLetterStore = deadLetterStore;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), namedThreads("incident-workflow"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(namedThreads("incident-workflow-retry"));
+    }
+    
+    // Never blocks the caller
+    public void submit(NormalizedEvent event) {
+        schedule(event, 1);
+    }
+    
+    // Re-submits everything in the dead-letter store with a fresh attempt budget
+    public int replayDeadLetters() {
+        List<DeadLetter> deadLetters = deadLetterStore.drain();
+        for (DeadLetter deadLetter : deadLetters) {
+            submit(deadLetter.getEvent());
+        }
+        return deadLetters.size();
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeWorkers", workers.getActiveCount());
+        stats.put("queued", workers.getQueue().size());
+        stats.put("dispatched", dispatched.get());
+        stats.put("retried", retried.get());
+        stats.put("deadLettered", deadLettered.get());
+        stats.put("deadLetterStoreSize", deadLetterStore.size());
+        return stats;
+    }
+    
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        retryScheduler.shutdownNow();
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    
+    private void schedule(NormalizedEvent event, int attempt) {
+        try {
+            workers.execute(() -> attempt(event, attempt));
+        } catch (RejectedExecutionException e) {
+            deadLetter(event, attempt - 1, "Workflow executor saturated");
+        }
+    }
+    
+    private void attempt(NormalizedEvent event, int attempt) {
+        try {
+            dispatcher.dispatch(event);
+            dispatched.incrementAndGet();
+        } catch (Exception e) {
+            if (attempt >= maxAttempts) {
+                deadLetter(event, attempt, e.getMessage());
+                return;
+            }
+            long backoff = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+            log.warn("Workflow dispatch for event {} failed (attempt {}/{}), retrying in {} ms: {}",
+                    event.getEventId(), attempt, maxAttempts, backoff, e.getMessage());
+            retried.incrementAndGet();
+            try {
+                retryScheduler.schedule(() -> schedule(event, attempt + 1), backoff, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException shuttingDown) {
+                deadLetter(event, attempt, e.getMessage());
+            }
+        }
+    }
+    
+    private void deadLetter(NormalizedEvent event, int attempts, String error) {
+        log.error("Workflow dispatch for event {} dead-lettered after {} attempt(s): {}",
+                event.getEventId(), attempts, error);
+        deadLettered.incrementAndGet();
+        deadLetterStore.add(DeadLetter.builder()
+                .eventId(event.getEventId())
+                .attempts(attempts)
+                .lastError(error)
+                .failedAt(LocalDateTime.now())
+                .event(event)
+                .build());
+    }
+    
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
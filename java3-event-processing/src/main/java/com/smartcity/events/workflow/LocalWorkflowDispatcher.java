@@ -0,0 +1,45 @@
+package com.smartcity.events.workflow;
+
+import com.smartcity.events.dto.NormalizedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// In-process stand-in for Step Functions: records the most recent dispatches so local
+// runs and tests can see which incidents would have started a workflow
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "events.workflow.dispatcher", havingValue = "local", matchIfMissing = true)
+public class LocalWorkflowDispatcher implements WorkflowDispatcher {
+    
+    private final Deque<String> recentDispatches = new ArrayDeque<>();
+    private final int capacity;
+    
+    public LocalWorkflowDispatcher(@Value("${events.workflow.local.history-size:100}") int capacity) {
+        this.capacity = capacity;
+    }
+    
+    @Override
+    public void dispatch(NormalizedEvent event) {
+        log.info("Local workflow started for event {} ({}, {})",
+                event.getEventId(), event.getEventType(), event.getSeverity());
+        synchronized (recentDispatches) {
+            if (recentDispatches.size() == capacity) {
+                recentDispatches.removeFirst();
+            }
+            recentDispatches.addLast(event.getEventId());
+        }
+    }
+    
+    public List<String> getRecentDispatches() {
+        synchronized (recentDispatches) {
+            return new ArrayList<>(recentDispatches);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.smartcity.events.workflow;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcity.events.dto.NormalizedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.sfn.SfnClient;
+import software.amazon.awssdk.services.sfn.model.ExecutionAlreadyExistsException;
+import software.amazon.awssdk.services.sfn.model.StartExecutionRequest;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "events.workflow.dispatcher", havingValue = "stepfunctions")
+public class StepFunctionsWorkflowDispatcher implements WorkflowDispatcher {
+    
+    // Step Functions execution names: up to 80 chars of letters, digits, '-' and '_'
+    private static final int MAX_EXECUTION_NAME_LENGTH = 80;
+    
+    private final SfnClient sfnClient;
+    private final String stateMachineArn;
+    private final ObjectMapper objectMapper;
+    
+    public StepFunctionsWorkflowDispatcher(@Value("${aws.stepfunctions.state-machine-arn}") String stateMachineArn,
+                                           @Value("${aws.stepfunctions.region}") String region,
+                                           ObjectMapper objectMapper) {
+        this.sfnClient = SfnClient.builder().region(Region.of(region)).build();
+        this.stateMachineArn = stateMachineArn;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    public void dispatch(NormalizedEvent event) throws Exception {
+        StartExecutionRequest request = StartExecutionRequest.builder()
+                .stateMachineArn(stateMachineArn)
+                .name(executionName(event.getEventId()))
+                .input(objectMapper.writeValueAsString(event))
+                .build();
+        try {
+            sfnClient.startExecution(request);
+        } catch (ExecutionAlreadyExistsException e) {
+            // The execution is named after the event, so a retry after a lost response is a no-op
+            log.debug("Workflow for event {} already started", event.getEventId());
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        sfnClient.close();
+    }
+    
+    private static String executionName(String eventId) {
+        String name = eventId.replaceAll("[^A-Za-z0-9_-]", "_");
+        return name.length() > MAX_EXECUTION_NAME_LENGTH ? name.substring(0, MAX_EXECUTION_NAME_LENGTH) : name;
+    }
+}
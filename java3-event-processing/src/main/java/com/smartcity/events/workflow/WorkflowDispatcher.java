@@ -0,0 +1,9 @@
+package com.smartcity.events.workflow;
+
+import com.smartcity.events.dto.NormalizedEvent;
+
+// Starts the incident workflow (incident -> assign -> dispatch) for one event.
+// Implementations may block; they are only called from IncidentWorkflowExecutor threads.
+public interface WorkflowDispatcher {
+    void dispatch(NormalizedEvent event) throws Exception;
+}
@@ -0,0 +1,102 @@
+package com.smartcity.events.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcity.events.dto.NormalizedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.kafka.support.JacksonUtils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Binary codec against the JsonSerializer payload it replaces, on a typical sensor event.
+// main prints both record sizes before running; the GC profiler adds bytes allocated per call.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizedEventCodecBenchmark {
+    
+    // Configured like the mapper spring-kafka's JsonSerializer creates
+    private final ObjectMapper objectMapper = JacksonUtils.enhancedObjectMapper();
+    
+    private NormalizedEvent event;
+    private byte[] binary;
+    private byte[] json;
+    
+    public static void main(String[] args) throws IOException, RunnerException {
+        NormalizedEventCodecBenchmark sizes = new NormalizedEventCodecBenchmark();
+        sizes.setUp();
+        System.out.printf("binary: %d bytes, json: %d bytes%n", sizes.binary.length, sizes.json.length);
+        new Runner(new OptionsBuilder()
+                .include(NormalizedEventCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+    
+    @Setup
+    public void setUp() throws IOException {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("originalType", "traffic_jam");
+        data.put("source", "sensor");
+        data.put("location", "Main St & 5th Ave");
+        data.put("sensorId", "TRF-0042");
+        data.put("vehicleCount", 57);
+        data.put("averageSpeed", 12.5);
+        LocalDateTime now = LocalDateTime.of(2025, 3, 14, 9, 26, 53, 589_000_000);
+        event = NormalizedEvent.builder()
+                .eventId("EVT-01HQ3K7Z9X2VB")
+                .eventType("traffic")
+                .source("sensor")
+                .severity("high")
+                .status("open")
+                .location("Main St & 5th Ave")
+                .latitude(40.7128)
+                .longitude(-74.0060)
+                .description("Heavy congestion reported by loop detector")
+                .eventTimestamp(now)
+                .normalizedData(data)
+                .processedAt(now.plusNanos(1_250_000))
+                .version("1.0")
+                .build();
+        binary = NormalizedEventCodec.encode(event);
+        json = objectMapper.writeValueAsBytes(event);
+    }
+    
+    @Benchmark
+    public byte[] encodeBinary() {
+        return NormalizedEventCodec.encode(event);
+    }
+    
+    @Benchmark
+    public NormalizedEvent decodeBinary() {
+        return NormalizedEventCodec.decode(binary);
+    }
+    
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return objectMapper.writeValueAsBytes(event);
+    }
+    
+    @Benchmark
+    public NormalizedEvent decodeJson() throws IOException {
+        return objectMapper.readValue(json, NormalizedEvent.class);
+    }
+}
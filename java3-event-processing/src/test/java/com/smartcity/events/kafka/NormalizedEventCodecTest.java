@@ -0,0 +1,145 @@
+package com.smartcity.events.kafka;
+
+import com.smartcity.events.dto.NormalizedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NormalizedEventCodecTest {
+    
+    @Test
+    void everyFieldRoundTrips() {
+        Map<String, Object> nested = new LinkedHashMap<>();
+        nested.put("lane", 2);
+        nested.put("tags", List.of("a", "b"));
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("originalType", "traffic_jam");
+        data.put("source", "sensor");
+        data.put("location", "Main St");
+        data.put("count", 42);
+        data.put("total", 1L << 40);
+        data.put("negative", -7);
+        data.put("reading", 3.25);
+        data.put("active", true);
+        data.put("stale", false);
+        data.put("missing", null);
+        data.put("nested", nested);
+        data.put("readings", Arrays.asList(1, 2.5, "x", null));
+        NormalizedEvent event = NormalizedEvent.builder()
+                .eventId("EVT-0000000000001")
+                .eventType("traffic")
+                .source("sensor")
+                .severity("critical")
+                .status("in-progress")
+                .location("Main St & 5th Ave")
+                .latitude(40.7128)
+                .longitude(-74.0060)
+                .description("Multi-vehicle collision, two lanes closed")
+                .assignedTo("unit-7")
+                .eventTimestamp(LocalDateTime.of(2025, 3, 14, 9, 26, 53, 589_793_238))
+                .normalizedData(data)
+                .processedAt(LocalDateTime.of(2025, 3, 14, 9, 26, 55, 1_000))
+                .version("1.0")
+                .build();
+        
+        assertEquals(event, roundTrip(event));
+    }
+    
+    @Test
+    void valuesOutsideTheDictionariesRoundTripAsLiterals() {
+        NormalizedEvent event = NormalizedEvent.builder()
+                .eventType("flood")
+                .source("drone")
+                .severity("extreme")
+                .status("escalated")
+                .version("2.0")
+                .normalizedData(Map.of("sensorId", "s-1"))
+                .build();
+        
+        assertEquals(event, roundTrip(event));
+    }
+    
+    @Test
+    void absentFieldsStayNull() {
+        NormalizedEvent event = NormalizedEvent.builder().eventId("only-id").build();
+        
+        NormalizedEvent decoded = roundTrip(event);
+        assertEquals(event, decoded);
+        assertNull(decoded.getNormalizedData());
+        assertNull(decoded.getEventTimestamp());
+    }
+    
+    @Test
+    void timestampsBeforeTheEpochAndProcessedBeforeTheEvent() {
+        NormalizedEvent event = NormalizedEvent.builder()
+                .eventTimestamp(LocalDateTime.of(1969, 7, 20, 20, 17, 40))
+                .processedAt(LocalDateTime.of(1969, 7, 20, 20, 17, 39, 999_999_999))
+                .build();
+        
+        assertEquals(event, roundTrip(event));
+        
+        NormalizedEvent processedOnly = NormalizedEvent.builder()
+                .processedAt(LocalDateTime.of(2030, 1, 1, 0, 0))
+                .build();
+        assertEquals(processedOnly, roundTrip(processedOnly));
+    }
+    
+    @Test
+    void arbitraryPrecisionNumbersKeepTheirText() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("amount", new BigDecimal("12345678901234567890.000001"));
+        data.put("array", new Object[] {1, "two"});
+        
+        Map<String, Object> decoded = roundTrip(NormalizedEvent.builder().normalizedData(data).build())
+                .getNormalizedData();
+        
+        assertEquals("12345678901234567890.000001", decoded.get("amount"));
+        assertEquals(List.of(1, "two"), decoded.get("array"));
+    }
+    
+    @Test
+    void countsLargerThanTheRecordAreRejected() {
+        // Only normalizedData present, claiming 2^31 - 1 entries
+        byte[] hugeMap = {NormalizedEventCodec.SCHEMA_VERSION, (byte) 0x80, 0x10,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertRejected(hugeMap);
+        
+        // One entry whose value is a list claiming a billion items
+        byte[] hugeList = {NormalizedEventCodec.SCHEMA_VERSION, (byte) 0x80, 0x10, 0x01, 0x01, 0x07,
+                (byte) 0x80, (byte) 0x94, (byte) 0xEB, (byte) 0xDC, 0x03};
+        assertRejected(hugeList);
+        
+        // Event id whose length runs past the end
+        byte[] longString = {NormalizedEventCodec.SCHEMA_VERSION, 0x01, 0x05, 'a', 'b'};
+        assertRejected(longString);
+    }
+    
+    @Test
+    void unknownSchemaVersionIsRejected() {
+        byte[] encoded = NormalizedEventCodec.encode(NormalizedEvent.builder().eventId("x").build());
+        encoded[0] = 2;
+        
+        assertThrows(IllegalArgumentException.class, () -> NormalizedEventCodec.decode(encoded));
+    }
+    
+    // Rejected by the count check, before anything is allocated from the count
+    private static void assertRejected(byte[] bytes) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> NormalizedEventCodec.decode(bytes));
+        assertTrue(e.getMessage().contains("remaining bytes"), e.getMessage());
+    }
+    
+    private static NormalizedEvent roundTrip(NormalizedEvent event) {
+        return NormalizedEventCodec.decode(NormalizedEventCodec.encode(event));
+    }
+}
@@ -0,0 +1,85 @@
+package com.smartcity.events.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AliasTableTest {
+    
+    private final AliasTable table = AliasTable.of("unknown", Map.of(
+            "traffic", List.of("traffic_jam", "Congestion"),
+            "in-progress", List.of("in_progress", "processing")));
+    
+    @Test
+    void aliasesAndCanonicalValuesNormalizeIgnoringCase() {
+        assertEquals("traffic", table.normalize("TRAFFIC_JAM"));
+        assertEquals("traffic", table.normalize("congestion"));
+        assertEquals("traffic", table.normalize("Traffic"));
+        assertEquals("in-progress", table.normalize("In_Progress"));
+        assertEquals(6, table.size());
+    }
+    
+    @Test
+    void canonicalValuesAreSharedInstances() {
+        assertSame(table.normalize("processing"), table.normalize("IN-PROGRESS"));
+        assertSame("traffic".intern(), table.normalize("traffic_jam"));
+    }
+    
+    @Test
+    void nullAndUnknownValues() {
+        assertEquals("unknown", table.normalize(null));
+        assertEquals("flood", table.normalize("Flood"));
+        assertNull(table.lookup("flood"));
+        
+        // Already lower-case input is returned as is
+        String raw = "flood";
+        assertSame(raw, table.normalize(raw));
+    }
+    
+    @Test
+    void nonAsciiCharactersFoldLikeRegionMatches() {
+        AliasTable accents = AliasTable.of(null, Map.of("\u00e9tat", List.of("\u00dcBERLAUF")));
+        assertEquals("\u00e9tat", accents.normalize("\u00c9TAT"));
+        assertEquals("\u00e9tat", accents.normalize("\u00fcberlauf"));
+        assertNull(accents.normalize(null));
+    }
+    
+    @Test
+    void everyAliasIsFoundInALargeTable() {
+        Map<String, List<String>> aliases = new LinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            List<String> names = new ArrayList<>();
+            for (int j = 0; j < 3; j++) {
+                names.add("alias-" + i + "-" + j);
+            }
+            aliases.put("value-" + i, names);
+        }
+        AliasTable large = AliasTable.of(null, aliases);
+        
+        assertEquals(4000, large.size());
+        for (int i = 0; i < 1000; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals("value-" + i, large.lookup("ALIAS-" + i + "-" + j));
+            }
+            assertEquals("value-" + i, large.lookup("value-" + i));
+        }
+        assertNull(large.lookup("alias-1000-0"));
+    }
+    
+    @Test
+    void aliasClaimedByTwoValuesIsRejected() {
+        Map<String, List<String>> aliases = new LinkedHashMap<>();
+        aliases.put("high", List.of("major"));
+        aliases.put("critical", List.of("MAJOR"));
+        
+        assertThrows(IllegalArgumentException.class, () -> AliasTable.of(null, aliases));
+    }
+}
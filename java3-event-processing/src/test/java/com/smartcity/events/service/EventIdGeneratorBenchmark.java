@@ -0,0 +1,52 @@
+package com.smartcity.events.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// Snowflake ids against the UUID substring they replaced, with request threads contending
+// for one shared generator as they do in EventIngestionService. UUID.randomUUID() draws from
+// a shared SecureRandom; the snowflake path is one CAS on the last id.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class EventIdGeneratorBenchmark {
+    
+    private final EventIdGenerator snowflake = new SnowflakeEventIdGenerator(1);
+    private final EventIdGenerator uuid = new RandomEventIdGenerator();
+    
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventIdGeneratorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+    
+    @Benchmark
+    public String snowflake() {
+        return snowflake.nextId();
+    }
+    
+    // The previous path: "EVT-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase()
+    @Benchmark
+    public String uuidSubstring() {
+        return uuid.nextId();
+    }
+}
@@ -0,0 +1,130 @@
+package com.smartcity.events.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcity.events.dto.NormalizedEvent;
+import com.smartcity.events.spool.EventSpool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventPublisherTest {
+    
+    private static final long HOUR_MS = 3_600_000;
+    
+    @TempDir
+    Path dir;
+    
+    private final UnavailableBroker kafka = new UnavailableBroker();
+    private EventSpool spool;
+    private EventPublisher publisher;
+    
+    @AfterEach
+    void tearDown() throws Exception {
+        if (publisher != null) {
+            publisher.stop();
+        }
+        if (spool != null) {
+            spool.stop();
+        }
+    }
+    
+    @Test
+    void sendThatTimesOutOnMetadataSpoolsTheRestOfTheBatch() throws Exception {
+        kafka.throwOnSend = true;
+        start();
+        
+        for (int i = 0; i < 100; i++) {
+            assertTrue(publisher.offer(event(i)));
+        }
+        awaitSpooled(100);
+        
+        // One send blocked for max.block.ms; the other 99 events went straight to the spool
+        assertEquals(1, kafka.sends.get());
+        assertEquals(100L, publisher.getStats().get("eventsFailed"));
+        assertTrue(spool.hasBacklog());
+        
+        for (int i = 100; i < 150; i++) {
+            assertTrue(publisher.offer(event(i)));
+        }
+        awaitSpooled(150);
+        
+        // Later batches queue behind the backlog without touching the producer
+        assertEquals(1, kafka.sends.get());
+        assertEquals(150L, spool.getStats().get("spooled"));
+    }
+    
+    @Test
+    void failedSendFutureSpoolsTheRestOfTheBatch() throws Exception {
+        start();
+        
+        for (int i = 0; i < 100; i++) {
+            assertTrue(publisher.offer(event(i)));
+        }
+        awaitSpooled(100);
+        
+        assertEquals(1, kafka.sends.get());
+        assertEquals(0L, publisher.getStats().get("eventsAcked"));
+        assertEquals(100L, spool.getStats().get("spooled"));
+    }
+    
+    // Scheduled replay is pushed out of the way so the backlog stays
+    private void start() throws IOException {
+        spool = new EventSpool(kafka, new ObjectMapper().findAndRegisterModules(), dir.toString(),
+                1 << 20, 1 << 24, "never", 1000, HOUR_MS, 1_000_000, 1000);
+        spool.start();
+        publisher = new EventPublisher(kafka, spool, 1000, 100, 50, 1000);
+        publisher.start();
+    }
+    
+    private void awaitSpooled(long events) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((Long) publisher.getStats().get("eventsSpooled") < events && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(events, publisher.getStats().get("eventsSpooled"));
+    }
+    
+    private static NormalizedEvent event(int i) {
+        return NormalizedEvent.builder()
+                .eventId("evt-" + i)
+                .eventType("traffic")
+                .severity("high")
+                .status("open")
+                .description("Published event " + i)
+                .build();
+    }
+    
+    // No broker: each send either throws, as after max.block.ms without metadata, or fails
+    private static final class UnavailableBroker extends KafkaTemplate<String, NormalizedEvent> {
+        private final AtomicInteger sends = new AtomicInteger();
+        private volatile boolean throwOnSend;
+        
+        UnavailableBroker() {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+        }
+        
+        @Override
+        public CompletableFuture<SendResult<String, NormalizedEvent>> send(String topic, String key,
+                                                                          NormalizedEvent data) {
+            sends.incrementAndGet();
+            IllegalStateException unavailable = new IllegalStateException("broker unavailable");
+            if (throwOnSend) {
+                throw unavailable;
+            }
+            return CompletableFuture.failedFuture(unavailable);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.smartcity.events.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NormalizationRulesLoaderTest {
+    
+    @TempDir
+    Path dir;
+    
+    private NormalizationRulesLoader loader;
+    private long modifiedTime = System.currentTimeMillis();
+    
+    @AfterEach
+    void tearDown() {
+        if (loader != null) {
+            loader.shutdown();
+        }
+    }
+    
+    @Test
+    void bundledRulesAreUsedWithoutARulesFile() throws IOException {
+        loader = new NormalizationRulesLoader("", 60_000);
+        loader.init();
+        
+        NormalizationRules rules = loader.current();
+        assertEquals("critical", rules.getSeverities().normalize("URGENT"));
+        assertEquals("emergency", rules.getEventTypes().normalize("fire"));
+        assertEquals("open", rules.getStatuses().normalize(null));
+    }
+    
+    @Test
+    void changedFileIsSwappedIn() throws IOException {
+        Path file = dir.resolve("rules.yml");
+        write(file, rules("alpha", "one"));
+        loader = new NormalizationRulesLoader(file.toString(), 60_000);
+        loader.init();
+        assertEquals("one", loader.current().getEventTypes().normalize("alpha"));
+        
+        write(file, rules("alpha", "two"));
+        loader.reloadIfChanged();
+        
+        assertEquals("two", loader.current().getEventTypes().normalize("ALPHA"));
+        assertEquals("two", loader.current().getSeverities().normalize("alpha"));
+    }
+    
+    @Test
+    void invalidFileKeepsThePreviousRules() throws IOException {
+        Path file = dir.resolve("rules.yml");
+        write(file, rules("alpha", "one"));
+        loader = new NormalizationRulesLoader(file.toString(), 60_000);
+        loader.init();
+        NormalizationRules loaded = loader.current();
+        
+        // Missing sections, then an alias claimed by two values
+        write(file, "event-types:\n  aliases:\n    one: [alpha]\n");
+        loader.reloadIfChanged();
+        assertSame(loaded, loader.current());
+        
+        write(file, rules("alpha", "two").replace("  aliases:\n    two: [alpha]\n",
+                "  aliases:\n    two: [alpha]\n    three: [alpha]\n"));
+        loader.reloadIfChanged();
+        assertSame(loaded, loader.current());
+        
+        // Unchanged broken file is not reparsed; a fixed one is picked up
+        write(file, rules("alpha", "three"));
+        loader.reloadIfChanged();
+        assertEquals("three", loader.current().getEventTypes().normalize("alpha"));
+    }
+    
+    @Test
+    void readersNeverSeeTablesFromTwoRuleSets() throws Exception {
+        Path file = dir.resolve("rules.yml");
+        write(file, rules("alpha", "one"));
+        loader = new NormalizationRulesLoader(file.toString(), 60_000);
+        loader.init();
+        
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        CountDownLatch started = new CountDownLatch(4);
+        Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; i++) {
+            readers[i] = new Thread(() -> {
+                started.countDown();
+                while (!stop.get()) {
+                    // One read of current() per event, as EventNormalizationService does
+                    NormalizationRules rules = loader.current();
+                    String type = rules.getEventTypes().normalize("alpha");
+                    String severity = rules.getSeverities().normalize("alpha");
+                    String status = rules.getStatuses().normalize("alpha");
+                    if (!type.equals(severity) || !type.equals(status)) {
+                        failure.compareAndSet(null, type + "/" + severity + "/" + status);
+                    }
+                    seen.add(type);
+                }
+            });
+            readers[i].start();
+        }
+        started.await();
+        
+        for (int i = 0; i < 200; i++) {
+            write(file, rules("alpha", i % 2 == 0 ? "two" : "one"));
+            loader.reloadIfChanged();
+        }
+        stop.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        
+        assertNull(failure.get());
+        assertTrue(seen.contains("one"));
+        assertEquals("one", loader.current().getEventTypes().normalize("alpha"));
+    }
+    
+    // All three sections map the alias to the same canonical value
+    private static String rules(String alias, String canonical) {
+        StringBuilder yaml = new StringBuilder();
+        for (String section : new String[] {"event-types", "severities", "statuses"}) {
+            yaml.append(section).append(":\n")
+                    .append("  default: none\n")
+                    .append("  aliases:\n")
+                    .append("    ").append(canonical).append(": [").append(alias).append("]\n");
+        }
+        return yaml.toString();
+    }
+    
+    // Each write gets a distinct modification time, however coarse the file system clock
+    private void write(Path file, String content) throws IOException {
+        Files.writeString(file, content);
+        modifiedTime += 2_000;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modifiedTime));
+    }
+}
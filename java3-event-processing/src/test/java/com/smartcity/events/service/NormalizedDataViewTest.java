@@ -0,0 +1,77 @@
+package com.smartcity.events.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NormalizedDataViewTest {
+    
+    @Test
+    void viewEqualsTheCopiedMap() {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("sensorId", "s-17");
+        metadata.put("reading", 42);
+        metadata.put("source", "gateway");
+        
+        Map<String, Object> view = new NormalizedDataView("traffic_jam", "sensor", "Main St", metadata);
+        
+        assertEquals(copied("traffic_jam", "sensor", "Main St", metadata), view);
+        assertEquals(copied("traffic_jam", "sensor", "Main St", metadata).hashCode(), view.hashCode());
+        assertEquals(5, view.size());
+        assertEquals(5, view.entrySet().size());
+        assertEquals("gateway", view.get("source"));
+        assertEquals("Main St", view.get("location"));
+        assertEquals(42, view.get("reading"));
+    }
+    
+    @Test
+    void baseEntriesComeFirstAndShadowedOnesAreSkipped() {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("location", "Depot");
+        metadata.put("lane", 2);
+        
+        Iterator<Map.Entry<String, Object>> entries =
+                new NormalizedDataView("fire", "camera", "Main St", metadata).entrySet().iterator();
+        
+        assertEquals(Map.entry("originalType", "fire"), entries.next());
+        assertEquals(Map.entry("source", "camera"), entries.next());
+        assertEquals(Map.entry("location", "Depot"), entries.next());
+        assertEquals(Map.entry("lane", 2), entries.next());
+        assertFalse(entries.hasNext());
+        assertThrows(NoSuchElementException.class, entries::next);
+    }
+    
+    @Test
+    void nullMetadataAndNullValues() {
+        Map<String, Object> view = new NormalizedDataView(null, "manual", null, null);
+        
+        assertEquals(copied(null, "manual", null, null), view);
+        assertEquals(3, view.size());
+        assertTrue(view.containsKey("originalType"));
+        assertFalse(view.containsKey("sensorId"));
+        assertNull(view.get("location"));
+    }
+    
+    // What normalization built before the view: three puts followed by putAll(metadata)
+    private static Map<String, Object> copied(String type, String source, String location,
+                                              Map<String, Object> metadata) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("originalType", type);
+        map.put("source", source);
+        map.put("location", location);
+        if (metadata != null) {
+            map.putAll(metadata);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,117 @@
+package com.smartcity.events.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SnowflakeEventIdGeneratorTest {
+    
+    private static final long EPOCH_MS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 50_000;
+    
+    @Test
+    void idsAreUniqueAcrossThreadsAndIncreasingWithinEach() throws InterruptedException {
+        SnowflakeEventIdGenerator generator = new SnowflakeEventIdGenerator(7);
+        long[][] ids = new long[THREADS][IDS_PER_THREAD];
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            long[] own = ids[t];
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < own.length; i++) {
+                    own[i] = generator.nextRawId();
+                    if (i > 0 && own[i] <= own[i - 1]) {
+                        failure.compareAndSet(null, own[i - 1] + " then " + own[i]);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            System.arraycopy(ids[t], 0, all, t * IDS_PER_THREAD, IDS_PER_THREAD);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] > all[i - 1], "duplicate id " + all[i]);
+        }
+        for (long id : all) {
+            assertEquals(7, id & 1023);
+        }
+    }
+    
+    @Test
+    void clockSteppingBackKeepsIdsIncreasing() {
+        AtomicLong now = new AtomicLong(EPOCH_MS + 1_000_000);
+        SnowflakeEventIdGenerator generator = new SnowflakeEventIdGenerator(3, now::get);
+        
+        long first = generator.nextRawId();
+        assertEquals(1_000_000, timestamp(first));
+        
+        now.addAndGet(-60_000);
+        long afterStepBack = generator.nextRawId();
+        assertTrue(afterStepBack > first);
+        assertEquals(1_000_000, timestamp(afterStepBack));
+        
+        // Once the clock passes the last id again, ids follow the clock
+        now.set(EPOCH_MS + 1_000_005);
+        long caughtUp = generator.nextRawId();
+        assertTrue(caughtUp > afterStepBack);
+        assertEquals(1_000_005, timestamp(caughtUp));
+    }
+    
+    @Test
+    void sequenceOverflowCarriesIntoTheTimestamp() {
+        AtomicLong now = new AtomicLong(EPOCH_MS + 5_000);
+        SnowflakeEventIdGenerator generator = new SnowflakeEventIdGenerator(1, now::get);
+        
+        long previous = generator.nextRawId();
+        // More ids than the 4096 sequence values of one millisecond
+        for (int i = 0; i < 10_000; i++) {
+            long id = generator.nextRawId();
+            assertTrue(id > previous);
+            assertEquals(1, id & 1023);
+            previous = id;
+        }
+        assertEquals(5_002, timestamp(previous));
+    }
+    
+    @Test
+    void encodedIdsSortLikeTheRawIds() {
+        SnowflakeEventIdGenerator generator = new SnowflakeEventIdGenerator(0);
+        
+        String previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            String id = generator.nextId();
+            assertEquals(17, id.length());
+            assertTrue(id.startsWith("EVT-"));
+            assertTrue(id.compareTo(previous) > 0, previous + " then " + id);
+            previous = id;
+        }
+    }
+    
+    private static long timestamp(long id) {
+        return id >>> 22;
+    }
+}
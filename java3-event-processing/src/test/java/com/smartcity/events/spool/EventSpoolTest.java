@@ -0,0 +1,187 @@
+package com.smartcity.events.spool;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcity.events.dto.NormalizedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventSpoolTest {
+    
+    private static final long HOUR_MS = 3_600_000;
+    
+    @TempDir
+    Path dir;
+    
+    private final RecordingTemplate kafka = new RecordingTemplate();
+    private final List<EventSpool> spools = new ArrayList<>();
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        for (EventSpool spool : spools) {
+            spool.stop();
+        }
+    }
+    
+    @Test
+    void spooledEventsAreReplayedInOrderAcrossSegments() throws IOException {
+        EventSpool spool = start(1024, 1 << 20);
+        for (int i = 0; i < 40; i++) {
+            spool.append(event(i));
+        }
+        assertTrue(spool.hasBacklog());
+        
+        spool.replay();
+        
+        assertEquals(ids(0, 40), kafka.sent);
+        assertFalse(spool.hasBacklog());
+        assertEquals(40L, spool.getStats().get("replayed"));
+        assertEquals(0, segments().size());
+    }
+    
+    @Test
+    void failedReplayResumesAtTheFirstUnackedRecord() throws IOException {
+        EventSpool spool = start(1 << 20, 1 << 20);
+        for (int i = 0; i < 10; i++) {
+            spool.append(event(i));
+        }
+        kafka.failing.add("evt-3");
+        
+        spool.replay();
+        
+        // Every record was sent once; 3 failed, so the segment stays and records after it are remembered
+        assertEquals(ids(0, 10), kafka.sent);
+        assertEquals(9L, spool.getStats().get("replayed"));
+        assertTrue(spool.hasBacklog());
+        assertEquals(1, segments().size());
+        
+        kafka.failing.clear();
+        kafka.sent.clear();
+        spool.replay();
+        
+        assertEquals(List.of("evt-3"), kafka.sent);
+        assertEquals(10L, spool.getStats().get("replayed"));
+        assertFalse(spool.hasBacklog());
+        assertEquals(0, segments().size());
+    }
+    
+    @Test
+    void segmentsLeftByAPreviousRunAreReplayedAndTornTailsSkipped() throws IOException {
+        EventSpool first = start(1024, 1 << 20);
+        for (int i = 0; i < 20; i++) {
+            first.append(event(i));
+        }
+        first.stop();
+        // A crash mid-append leaves a header promising more bytes than were written
+        Path last = segments().get(segments().size() - 1);
+        Files.write(last, new byte[] {0, 0, 1, 0, 0, 0, 0, 0, '{'}, StandardOpenOption.APPEND);
+        
+        EventSpool restarted = start(1024, 1 << 20);
+        assertTrue(restarted.hasBacklog());
+        restarted.replay();
+        
+        assertEquals(ids(0, 20), kafka.sent);
+        assertEquals(1L, restarted.getStats().get("corruptRecords"));
+        assertEquals(0, segments().size());
+        
+        // New segments continue the sequence rather than reusing a replayed name
+        restarted.append(event(20));
+        restarted.replay();
+        assertEquals("evt-20", kafka.sent.get(kafka.sent.size() - 1));
+    }
+    
+    @Test
+    void diskLimitDropsTheOldestSegments() throws IOException {
+        EventSpool spool = start(1024, 4096);
+        for (int i = 0; i < 200; i++) {
+            spool.append(event(i));
+        }
+        
+        Map<String, Object> stats = spool.getStats();
+        assertTrue((Long) stats.get("bytes") <= 4096, "spool holds " + stats.get("bytes") + " bytes");
+        assertTrue((Long) stats.get("droppedSegments") > 0);
+        
+        spool.replay();
+        // Only the newest events survive, still in order and ending with the last one
+        assertEquals("evt-199", kafka.sent.get(kafka.sent.size() - 1));
+        assertTrue(kafka.sent.size() < 200);
+        for (int i = 1; i < kafka.sent.size(); i++) {
+            assertTrue(number(kafka.sent.get(i)) > number(kafka.sent.get(i - 1)));
+        }
+    }
+    
+    // Scheduled replay is pushed out of the way; tests call replay() themselves
+    private EventSpool start(long segmentBytes, long maxBytes) throws IOException {
+        EventSpool spool = new EventSpool(kafka, new ObjectMapper().findAndRegisterModules(), dir.toString(),
+                segmentBytes, maxBytes, "always", 1000, HOUR_MS, 1_000_000, 1000);
+        spool.start();
+        spools.add(spool);
+        return spool;
+    }
+    
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.sorted().toList();
+        }
+    }
+    
+    private static NormalizedEvent event(int i) {
+        return NormalizedEvent.builder()
+                .eventId("evt-" + i)
+                .eventType("traffic")
+                .severity("high")
+                .status("open")
+                .description("Spooled event " + i)
+                .build();
+    }
+    
+    private static List<String> ids(int from, int to) {
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ids.add("evt-" + i);
+        }
+        return ids;
+    }
+    
+    private static int number(String id) {
+        return Integer.parseInt(id.substring("evt-".length()));
+    }
+    
+    // Records the key of every send and fails those listed in failing
+    private static final class RecordingTemplate extends KafkaTemplate<String, NormalizedEvent> {
+        private final List<String> sent = new ArrayList<>();
+        private final Set<String> failing = new HashSet<>();
+        
+        RecordingTemplate() {
+            super(new DefaultKafkaProducerFactory<>(Map.of()));
+        }
+        
+        @Override
+        public CompletableFuture<SendResult<String, NormalizedEvent>> send(String topic, String key,
+                                                                          NormalizedEvent data) {
+            sent.add(key);
+            return failing.contains(key)
+                    ? CompletableFuture.failedFuture(new IllegalStateException("broker unavailable"))
+                    : CompletableFuture.completedFuture(null);
+        }
+    }
+}
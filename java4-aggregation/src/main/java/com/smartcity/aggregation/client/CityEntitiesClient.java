@@ -0,0 +1,19 @@
+package com.smartcity.aggregation.client;
+
+import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+// Resolved through Eureka; timeouts are set per client under spring.cloud.openfeign.client.config
+@FeignClient(name = "city-entities-service")
+public interface CityEntitiesClient {
+    
+    @GetMapping("/api/cameras/count")
+    long countCameras(@RequestParam("status") String status);
+    
+    @GetMapping("/api/sensors/count")
+    long countSensors(@RequestParam("status") String status);
+    
+    @GetMapping("/api/vehicles/count")
+    long countVehicles(@RequestParam("status") String status);
+}
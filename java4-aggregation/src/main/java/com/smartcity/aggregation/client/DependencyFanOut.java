@@ -0,0 +1,155 @@
+package com.smartcity.aggregation.client;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Runs blocking remote calls concurrently so a fan-out costs its slowest dependency, not the
+// sum. A call still running after the hedge delay gets a second attempt and the first answer
+// wins. Past its timeout, or when every attempt failed, the dependency resolves to its last
+// known value, so callers always get a complete, possibly partly stale, result.
+@Slf4j
+@Component
+public class DependencyFanOut {
+    
+    private final Environment environment;
+    private final long defaultTimeoutMs;
+    private final long defaultHedgeDelayMs;
+    private final ThreadPoolExecutor workers;
+    private final ScheduledExecutorService timers;
+    private final Map<String, Object> lastKnown = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> fallbacks = new ConcurrentHashMap<>();
+    private final AtomicLong hedged = new AtomicLong();
+    
+    public DependencyFanOut(Environment environment,
+                            @Value("${aggregation.fanout.threads:16}") int threads,
+                            @Value("${aggregation.fanout.queue-capacity:256}") int queueCapacity,
+                            @Value("${aggregation.fanout.timeout-ms:800}") long defaultTimeoutMs,
+                            @Value("${aggregation.fanout.hedge-delay-ms:150}") long defaultHedgeDelayMs) {
+        this.environment = environment;
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        this.defaultHedgeDelayMs = defaultHedgeDelayMs;
+        this.workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), namedThreads("kpi-fanout"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timers = Executors.newSingleThreadScheduledExecutor(namedThreads("kpi-fanout-timer"));
+    }
+    
+    // Never completes exceptionally. Per-dependency overrides live under
+    // aggregation.fanout.dependencies.<name>.timeout-ms / hedge-delay-ms
+    public <T> CompletableFuture<Result<T>> call(String dependency, Supplier<T> call, T initial) {
+        long timeoutMs = setting(dependency, "timeout-ms", defaultTimeoutMs);
+        long hedgeDelayMs = setting(dependency, "hedge-delay-ms", defaultHedgeDelayMs);
+        
+        CompletableFuture<T> answer = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        Runnable hedge = () -> {
+            if (!answer.isDone() && outstanding.incrementAndGet() > 1) {
+                hedged.incrementAndGet();
+                attempt(call, answer, outstanding);
+            }
+        };
+        attempt(call, answer, outstanding);
+        if (hedgeDelayMs > 0 && hedgeDelayMs < timeoutMs) {
+            timers.schedule(hedge, hedgeDelayMs, TimeUnit.MILLISECONDS);
+        }
+        
+        return answer
+                .completeOnTimeout(null, timeoutMs, TimeUnit.MILLISECONDS)
+                .handle((value, error) -> {
+                    if (error == null && value != null) {
+                        lastKnown.put(dependency, value);
+                        return new Result<>(value, false);
+                    }
+                    fallbacks.computeIfAbsent(dependency, name -> new AtomicLong()).incrementAndGet();
+                    log.warn("{} unavailable ({}), using last known value", dependency,
+                            error != null ? rootMessage(error) : "timed out after " + timeoutMs + " ms");
+                    @SuppressWarnings("unchecked")
+                    T previous = (T) lastKnown.getOrDefault(dependency, initial);
+                    return new Result<>(previous, true);
+                });
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("activeWorkers", workers.getActiveCount());
+        stats.put("queued", workers.getQueue().size());
+        stats.put("hedged", hedged.get());
+        Map<String, Long> fallbackCounts = new LinkedHashMap<>();
+        fallbacks.forEach((dependency, count) -> fallbackCounts.put(dependency, count.get()));
+        stats.put("fallbacks", fallbackCounts);
+        return stats;
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        timers.shutdownNow();
+        workers.shutdownNow();
+    }
+    
+    // The answer fails only once every attempt has failed; a hedge still running may yet win
+    private <T> void attempt(Supplier<T> call, CompletableFuture<T> answer, AtomicInteger outstanding) {
+        try {
+            workers.execute(() -> {
+                try {
+                    answer.complete(call.get());
+                } catch (RuntimeException e) {
+                    if (outstanding.decrementAndGet() == 0) {
+                        answer.completeExceptionally(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (outstanding.decrementAndGet() == 0) {
+                answer.completeExceptionally(new RejectedExecutionException("Fan-out pool saturated"));
+            }
+        }
+    }
+    
+    private long setting(String dependency, String key, long defaultValue) {
+        return environment.getProperty("aggregation.fanout.dependencies." + dependency + "." + key, Long.class, defaultValue);
+    }
+    
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getClass().getSimpleName() + ": " + cause.getMessage();
+    }
+    
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    @Getter
+    @AllArgsConstructor
+    public static final class Result<T> {
+        private final T value;
+        private final boolean stale;
+    }
+}
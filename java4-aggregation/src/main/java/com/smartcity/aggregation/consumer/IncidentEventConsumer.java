@@ -0,0 +1,62 @@
+package com.smartcity.aggregation.consumer;
+
+import com.smartcity.aggregation.dto.IncidentEventDTO;
+import com.smartcity.aggregation.service.DashboardSnapshotCache;
+import com.smartcity.aggregation.service.IncidentKpiTracker;
+import com.smartcity.aggregation.service.RecentIncidentIndex;
+import com.smartcity.aggregation.timeseries.EventMetricsRecorder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Feeds smartcity-events into the in-memory KPI state and metric series in batches. The KPI
+// state lives only in this process, so each partition is read from the beginning the first
+// time it is assigned; metric samples already persisted on disk are skipped by offset.
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class IncidentEventConsumer implements ConsumerSeekAware {
+    
+    private final IncidentKpiTracker kpiTracker;
+    private final RecentIncidentIndex recentIncidentIndex;
+    private final EventMetricsRecorder metricsRecorder;
+    private final DashboardSnapshotCache dashboardSnapshotCache;
+    private final Set<TopicPartition> replayed = ConcurrentHashMap.newKeySet();
+    
+    @Value("${aggregation.kafka.replay-from-beginning:true}")
+    private boolean replayFromBeginning;
+    
+    @KafkaListener(topics = "${aggregation.kafka.topic:smartcity-events}", batch = "true")
+    public void onEvents(List<ConsumerRecord<String, IncidentEventDTO>> records) {
+        List<IncidentEventDTO> events = records.stream().map(ConsumerRecord::value).toList();
+        kpiTracker.apply(events);
+        recentIncidentIndex.apply(events);
+        metricsRecorder.record(records);
+        dashboardSnapshotCache.requestRefresh();
+    }
+    
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        if (!replayFromBeginning) {
+            return;
+        }
+        Set<TopicPartition> fresh = assignments.keySet().stream()
+                .filter(replayed::add)
+                .collect(Collectors.toSet());
+        if (!fresh.isEmpty()) {
+            log.info("Rebuilding KPI state from the beginning of {}", fresh);
+            callback.seekToBeginning(fresh);
+        }
+    }
+}
@@ -1,15 +1,22 @@
 package com.smartcity.aggregation.controller;
 
-import com.smartcity.aggregation.dto.DashboardDTO;
+import com.smartcity.aggregation.dto.IncidentSummaryDTO;
 import com.smartcity.aggregation.dto.KPIDTO;
 import com.smartcity.aggregation.dto.TimeWindowedMetricDTO;
+import com.smartcity.aggregation.exception.BadRequestException;
 import com.smartcity.aggregation.service.AnalyticsService;
-import com.smartcity.aggregation.service.DashboardService;
+import com.smartcity.aggregation.service.DashboardSnapshotCache;
+import com.smartcity.aggregation.service.DashboardStreamService;
 import com.smartcity.aggregation.service.KPIService;
+import com.smartcity.aggregation.service.RecentIncidentIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 
@@ -18,14 +25,35 @@ import java.time.LocalDateTime;
 @RequiredArgsConstructor
 public class DashboardController {
     
-    private final DashboardService dashboardService;
+    private final DashboardSnapshotCache dashboardSnapshotCache;
+    private final DashboardStreamService dashboardStreamService;
     private final KPIService kpiService;
     private final AnalyticsService analyticsService;
+    private final RecentIncidentIndex recentIncidentIndex;
     
-    @GetMapping
-    public ResponseEntity<DashboardDTO> getDashboard() {
-        DashboardDTO dashboard = dashboardService.getDashboardData();
-        return ResponseEntity.ok(dashboard);
+    // Served from the background-refreshed snapshot; a matching If-None-Match gets a 304
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getDashboard(WebRequest request) {
+        DashboardSnapshotCache.Snapshot snapshot = dashboardSnapshotCache.current();
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(snapshot.getEtag())
+                .cacheControl(CacheControl.noCache())
+                .body(snapshot.getJson());
+    }
+    
+    // Server-sent "kpis" and "incidents" events, each carrying the whole section when it changes
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDashboard() {
+        return dashboardStreamService.subscribe();
+    }
+    
+    @GetMapping("/stream/stats")
+    public ResponseEntity<java.util.Map<String, Object>> getStreamStats() {
+        return ResponseEntity.ok(dashboardStreamService.getStats());
     }
     
     @GetMapping("/kpis")
@@ -42,20 +70,50 @@ public class DashboardController {
         return ResponseEntity.ok(kpis);
     }
     
+    // Newest first; reads only as far into the index as the limit requires
+    @GetMapping("/incidents")
+    public ResponseEntity<java.util.List<IncidentSummaryDTO>> getRecentIncidents(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String severity,
+            @RequestParam(required = false) String type,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(recentIncidentIndex.query(status, severity, type, checkLimit(limit)));
+    }
+    
+    @GetMapping("/incidents/by-type")
+    public ResponseEntity<java.util.Map<String, java.util.List<IncidentSummaryDTO>>> getRecentIncidentsByType(
+            @RequestParam(defaultValue = "5") int limit) {
+        return ResponseEntity.ok(recentIncidentIndex.topByType(checkLimit(limit)));
+    }
+    
     @GetMapping("/metrics/{metricName}")
     public ResponseEntity<TimeWindowedMetricDTO> getTimeWindowedMetric(
             @PathVariable String metricName,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime,
-            @RequestParam(defaultValue = "hour") String windowSize) {
+            @RequestParam(defaultValue = "hour") String windowSize,
+            @RequestParam(defaultValue = "avg") String aggregation,
+            @RequestParam(required = false) java.util.List<Double> quantiles,
+            @RequestParam(defaultValue = "false") boolean distinct) {
         TimeWindowedMetricDTO metric = analyticsService.getTimeWindowedMetric(
-                metricName, startTime, endTime, windowSize);
+                metricName, startTime, endTime, windowSize, aggregation, quantiles, distinct);
         return ResponseEntity.ok(metric);
     }
     
+    @GetMapping("/metrics")
+    public ResponseEntity<java.util.Set<String>> getMetricNames() {
+        return ResponseEntity.ok(analyticsService.getMetricNames());
+    }
+    
     @GetMapping("/analytics")
     public ResponseEntity<java.util.Map<String, Object>> getAnalyticsData() {
         return ResponseEntity.ok(analyticsService.getAnalyticsData());
     }
+    
+    private static int checkLimit(int limit) {
+        if (limit < 1 || limit > 1000) {
+            throw new BadRequestException("limit must be between 1 and 1000");
+        }
+        return limit;
+    }
 }
-
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Data
 @Builder
@@ -15,5 +16,7 @@ public class DataPointDTO {
     private LocalDateTime timestamp;
     private Double value;
     private String label;
+    private Map<String, Double> quantiles; // p50, p95, ... when requested
+    private Long distinctSources; // approximate, when requested
 }
 
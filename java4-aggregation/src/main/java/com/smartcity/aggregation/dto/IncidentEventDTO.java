@@ -0,0 +1,31 @@
+package com.smartcity.aggregation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+// Normalized event as published by event-processing-service on smartcity-events
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IncidentEventDTO {
+    private String eventId;
+    private String eventType;
+    private String source;
+    private String severity;
+    private String status;
+    private String location;
+    private Double latitude;
+    private Double longitude;
+    private String description;
+    private String assignedTo;
+    private LocalDateTime eventTimestamp;
+    private Map<String, Object> normalizedData;
+    private LocalDateTime processedAt;
+    private String version;
+}
@@ -5,6 +5,9 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+import java.util.Map;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -14,11 +17,14 @@ public class KPIDTO {
     private Integer openIncidents;
     private Integer inProgressIncidents;
     private Integer resolvedIncidents;
+    private Map<String, Integer> incidentsByType;
     private Double trafficFlowPercentage;
     private Integer airQualityIndex;
     private Double energyUsageGW;
     private Integer activeCameras;
     private Integer onlineSensors;
     private Integer availableVehicles;
+    // Sources that did not answer in time; their values are the last ones seen
+    private List<String> staleSources;
 }
 
@@ -16,7 +16,8 @@ public class TimeWindowedMetricDTO {
     private String metricName;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
-    private String windowSize; // hour, day, week, month
+    private String windowSize; // raw, minute, hour, day, week, month
+    private String resolution; // stored tier that answered: raw, 1m, 1h, 1d
     private List<DataPointDTO> dataPoints;
 }
 
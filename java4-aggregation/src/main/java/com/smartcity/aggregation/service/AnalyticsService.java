@@ -2,19 +2,31 @@ package com.smartcity.aggregation.service;
 
 import com.smartcity.aggregation.dto.DataPointDTO;
 import com.smartcity.aggregation.dto.TimeWindowedMetricDTO;
+import com.smartcity.aggregation.exception.BadRequestException;
+import com.smartcity.aggregation.timeseries.TimeSeriesStore;
+import com.smartcity.aggregation.timeseries.Window;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class AnalyticsService {
     
+    private static final Set<String> AGGREGATIONS = Set.of("avg", "sum", "min", "max", "count");
+    
+    private final TimeSeriesStore timeSeriesStore;
+    
     public Map<String, Object> getAnalyticsData() {
         Map<String, Object> analytics = new HashMap<>();
         
@@ -63,17 +75,112 @@ public class AnalyticsService {
     public TimeWindowedMetricDTO getTimeWindowedMetric(String metricName, 
                                                         LocalDateTime startTime, 
                                                         LocalDateTime endTime, 
-                                                        String windowSize) {
-        // TODO: Query Timestream or DynamoDB for time-windowed metrics
+                                                        String windowSize,
+                                                        String aggregation,
+                                                        List<Double> quantiles,
+                                                        boolean distinct) {
+        Window window = Window.parse(windowSize);
+        if (window == null) {
+            throw new BadRequestException("Unsupported windowSize '" + windowSize
+                    + "', expected one of raw, minute, hour, day, week, month");
+        }
+        String statistic = aggregation.trim().toLowerCase(Locale.ROOT);
+        if (!AGGREGATIONS.contains(statistic)) {
+            throw new BadRequestException("Unsupported aggregation '" + aggregation
+                    + "', expected one of avg, sum, min, max, count");
+        }
+        if (endTime.isBefore(startTime)) {
+            throw new BadRequestException("endTime must not be before startTime");
+        }
+        double[] requestedQuantiles = quantiles == null ? new double[0]
+                : quantiles.stream().mapToDouble(Double::doubleValue).toArray();
+        for (double q : requestedQuantiles) {
+            if (!(q >= 0.0 && q <= 1.0)) {
+                throw new BadRequestException("Quantiles must be between 0 and 1, got " + q);
+            }
+        }
+        boolean sketches = requestedQuantiles.length > 0 || distinct;
+        Window finestSketchWindow = TimeSeriesStore.finestSketchWindow();
+        if (sketches && window.ordinal() < finestSketchWindow.ordinal()) {
+            throw new BadRequestException("quantiles and distinct need windowSize "
+                    + finestSketchWindow.name().toLowerCase(Locale.ROOT) + " or coarser");
+        }
+        
+        long from = Window.toEpochMs(startTime);
+        long to = Window.toEpochMs(endTime);
         List<DataPointDTO> dataPoints = new ArrayList<>();
+        Window tier = window;
+        if (window == Window.RAW) {
+            timeSeriesStore.scanRaw(metricName, from, to,
+                    (timestamp, value) -> dataPoints.add(dataPoint(window, timestamp, value)));
+        } else {
+            tier = timeSeriesStore.scan(metricName, window, from, to,
+                    (bucketStart, count, sum, min, max) -> dataPoints.add(
+                            dataPoint(window, bucketStart, statistic(statistic, count, sum, min, max))));
+        }
+        if (sketches && !dataPoints.isEmpty()) {
+            Map<LocalDateTime, DataPointDTO> byBucket = new HashMap<>();
+            dataPoints.forEach(point -> byBucket.put(point.getTimestamp(), point));
+            String[] labels = Arrays.stream(requestedQuantiles).mapToObj(AnalyticsService::quantileLabel)
+                    .toArray(String[]::new);
+            timeSeriesStore.scanSketches(metricName, window, from, to, requestedQuantiles,
+                    (bucketStart, count, values, distinctCount) -> {
+                        DataPointDTO point = byBucket.get(Window.toDateTime(bucketStart));
+                        if (point == null) {
+                            return;
+                        }
+                        if (labels.length > 0) {
+                            Map<String, Double> quantileValues = new LinkedHashMap<>();
+                            for (int i = 0; i < labels.length; i++) {
+                                quantileValues.put(labels[i], Double.isNaN(values[i]) ? null : values[i]);
+                            }
+                            point.setQuantiles(quantileValues);
+                        }
+                        if (distinct && distinctCount >= 0) {
+                            point.setDistinctSources(distinctCount);
+                        }
+                    });
+        }
         
         return TimeWindowedMetricDTO.builder()
                 .metricName(metricName)
                 .startTime(startTime)
                 .endTime(endTime)
-                .windowSize(windowSize)
+                .windowSize(window.name().toLowerCase(Locale.ROOT))
+                .resolution(tier != null ? tier.resolution() : null)
                 .dataPoints(dataPoints)
                 .build();
     }
+    
+    public Set<String> getMetricNames() {
+        return timeSeriesStore.getMetricNames();
+    }
+    
+    private static DataPointDTO dataPoint(Window window, long timestamp, double value) {
+        return DataPointDTO.builder()
+                .timestamp(Window.toDateTime(timestamp))
+                .value(value)
+                .label(window.label(timestamp))
+                .build();
+    }
+    
+    // 0.5 -> p50, 0.999 -> p99.9
+    private static String quantileLabel(double q) {
+        return "p" + BigDecimal.valueOf(q).movePointRight(2).stripTrailingZeros().toPlainString();
+    }
+    
+    private static double statistic(String statistic, long count, double sum, double min, double max) {
+        switch (statistic) {
+            case "sum":
+                return sum;
+            case "min":
+                return min;
+            case "max":
+                return max;
+            case "count":
+                return count;
+            default:
+                return sum / count;
+        }
+    }
 }
-
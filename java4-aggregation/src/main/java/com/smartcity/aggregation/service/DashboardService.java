@@ -2,11 +2,10 @@ package com.smartcity.aggregation.service;
 
 import com.smartcity.aggregation.dto.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -16,11 +15,15 @@ public class DashboardService {
     
     private final KPIService kpiService;
     private final AnalyticsService analyticsService;
+    private final RecentIncidentIndex recentIncidentIndex;
+    
+    @Value("${aggregation.incidents.dashboard-limit:10}")
+    private int recentIncidentLimit;
     
     public DashboardDTO getDashboardData() {
         KPIDTO kpis = kpiService.getKPIs();
         List<MetricDTO> metrics = buildMetrics(kpis);
-        List<IncidentSummaryDTO> recentIncidents = getRecentIncidents();
+        List<IncidentSummaryDTO> recentIncidents = recentIncidentIndex.query(null, null, null, recentIncidentLimit);
         Map<String, Object> analyticsData = analyticsService.getAnalyticsData();
         
         return DashboardDTO.builder()
@@ -64,62 +67,4 @@ public class DashboardService {
         
         return metrics;
     }
-    
-    private List<IncidentSummaryDTO> getRecentIncidents() {
-        List<IncidentSummaryDTO> incidents = new ArrayList<>();
-
-        incidents.add(IncidentSummaryDTO.builder()
-                .id("INC-001")
-                .type("traffic")
-                .severity("high")
-                .status("open")
-                .location("Highway 101 North")
-                .description("Heavy congestion detected, estimated 45min delay")
-                .latitude(37.7749)
-                .longitude(-122.4194)
-                .timestamp(LocalDateTime.now().minusMinutes(15))
-                .assignedTo("Traffic Dept.")
-                .build());
-
-        incidents.add(IncidentSummaryDTO.builder()
-                .id("INC-002")
-                .type("emergency")
-                .severity("critical")
-                .status("in-progress")
-                .location("Downtown Plaza")
-                .description("Fire alarm triggered at commercial building")
-                .latitude(37.7849)
-                .longitude(-122.4094)
-                .timestamp(LocalDateTime.now().minusMinutes(5))
-                .assignedTo("Fire Dept.")
-                .build());
-
-        incidents.add(IncidentSummaryDTO.builder()
-                .id("INC-003")
-                .type("pollution")
-                .severity("medium")
-                .status("open")
-                .location("Industrial District")
-                .description("Elevated particulate matter levels detected")
-                .latitude(37.7649)
-                .longitude(-122.4294)
-                .timestamp(LocalDateTime.now().minusHours(2))
-                .build());
-
-        incidents.add(IncidentSummaryDTO.builder()
-                .id("INC-004")
-                .type("infrastructure")
-                .severity("low")
-                .status("resolved")
-                .location("Water Treatment Plant 3")
-                .description("Pump maintenance completed")
-                .latitude(37.7549)
-                .longitude(-122.4394)
-                .timestamp(LocalDateTime.now().minusHours(4))
-                .assignedTo("Utilities")
-                .build());
-
-        return incidents;
-    }
 }
-
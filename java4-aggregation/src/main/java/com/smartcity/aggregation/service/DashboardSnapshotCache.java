@@ -0,0 +1,161 @@
+package com.smartcity.aggregation.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartcity.aggregation.dto.DashboardDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// GET /api/dashboard is served from here: a background task rebuilds the DashboardDTO once
+// per refresh interval and publishes it as pre-serialized JSON with a content ETag, so
+// polling displays cost a reference read and, when nothing changed, a 304 with no body.
+// New incident data triggers an early rebuild, debounced so a burst of batches costs one.
+@Slf4j
+@Component
+public class DashboardSnapshotCache {
+    
+    private final DashboardService dashboardService;
+    private final ObjectMapper objectMapper;
+    private final long refreshIntervalMs;
+    private final long changeDebounceMs;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+    
+    private ScheduledExecutorService scheduler;
+    
+    public DashboardSnapshotCache(DashboardService dashboardService,
+                                  ObjectMapper objectMapper,
+                                  @Value("${aggregation.dashboard.refresh-interval-ms:2000}") long refreshIntervalMs,
+                                  @Value("${aggregation.dashboard.change-debounce-ms:250}") long changeDebounceMs) {
+        this.dashboardService = dashboardService;
+        this.objectMapper = objectMapper;
+        this.refreshIntervalMs = Math.max(100, refreshIntervalMs);
+        this.changeDebounceMs = Math.max(0, changeDebounceMs);
+    }
+    
+    @PostConstruct
+    public void start() {
+        refresh();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dashboard-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshIntervalMs, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    
+    // Rebuilds soon instead of at the next interval; requests made while one is queued are absorbed
+    public void requestRefresh() {
+        if (scheduler == null || !refreshQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.schedule(this::refresh, changeDebounceMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException shuttingDown) {
+            refreshQueued.set(false);
+        }
+    }
+    
+    // Called on the refresh thread with each snapshot whose content differs from the last
+    public void addListener(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
+    
+    // Built inline only while no refresh has succeeded yet
+    public Snapshot current() {
+        Snapshot snapshot = current.get();
+        return snapshot != null ? snapshot : build();
+    }
+    
+    void refresh() {
+        refreshQueued.set(false);
+        try {
+            Snapshot previous = current.get();
+            Snapshot next = build();
+            // Keep the old instance when the content is unchanged so its ETag and version hold
+            if (previous != null && Arrays.equals(previous.json, next.json)) {
+                return;
+            }
+            next = next.withVersion(previous == null ? 1 : previous.version + 1);
+            current.set(next);
+            for (Consumer<Snapshot> listener : listeners) {
+                listener.accept(next);
+            }
+        } catch (RuntimeException e) {
+            // Keep serving the last good snapshot
+            log.error("Dashboard snapshot refresh failed: {}", e.getMessage(), e);
+        }
+    }
+    
+    private Snapshot build() {
+        try {
+            DashboardDTO dashboard = dashboardService.getDashboardData();
+            byte[] json = objectMapper.writeValueAsBytes(dashboard);
+            // Sections are serialized on their own for the stream, which pushes only what changed
+            return new Snapshot(json, etag(json), System.currentTimeMillis(), 0,
+                    objectMapper.writeValueAsString(dashboard.getKpis()),
+                    objectMapper.writeValueAsString(dashboard.getRecentIncidents()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize dashboard", e);
+        }
+    }
+    
+    // Derived from the bytes rather than the version, so replicas agree on it
+    private static String etag(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    @Getter
+    public static final class Snapshot {
+        private final byte[] json;
+        private final String etag;
+        private final long builtAt;
+        private final long version;
+        private final String kpisJson;
+        private final String incidentsJson;
+        
+        private Snapshot(byte[] json, String etag, long builtAt, long version, String kpisJson, String incidentsJson) {
+            this.json = json;
+            this.etag = etag;
+            this.builtAt = builtAt;
+            this.version = version;
+            this.kpisJson = kpisJson;
+            this.incidentsJson = incidentsJson;
+        }
+        
+        private Snapshot withVersion(long version) {
+            return new Snapshot(json, etag, builtAt, version, kpisJson, incidentsJson);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.smartcity.aggregation.service;
+
+import com.smartcity.aggregation.exception.ServiceUnavailableException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Pushes dashboard sections over SSE when the snapshot changes. Each subscriber holds at most
+// one pending payload per section (plus a heartbeat), so a newer update replaces one the
+// client has not received yet, and a slow client costs a few references rather than a
+// growing queue. Payloads are serialized once per change and shared by every subscriber.
+// SseEmitter writes block, so a watchdog drops any subscriber whose send has been running for
+// longer than send-timeout-ms: it is removed, its sender thread is interrupted, and a
+// replacement sender thread is added until the stuck send returns, so clients that cannot
+// keep up never hold back the others.
+@Slf4j
+@Service
+public class DashboardStreamService {
+    
+    private static final String[] SECTIONS = {"kpis", "incidents"};
+    private static final int HEARTBEAT = SECTIONS.length;
+    
+    private final DashboardSnapshotCache snapshotCache;
+    private final int maxSubscribers;
+    private final long emitterTimeoutMs;
+    private final long heartbeatIntervalMs;
+    private final long sendTimeoutMs;
+    private final int senderThreads;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicReferenceArray<String> lastPublished = new AtomicReferenceArray<>(SECTIONS.length);
+    // Each subscriber has at most one drain queued, so the queue is bounded by max-subscribers
+    private final ThreadPoolExecutor senders;
+    private final AtomicLong pushed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong stalled = new AtomicLong();
+    // Sender threads added in place of ones stuck in an abandoned send, at most senderThreads
+    private final AtomicInteger replacements = new AtomicInteger();
+    
+    private ScheduledExecutorService heartbeats;
+    
+    public DashboardStreamService(DashboardSnapshotCache snapshotCache,
+                                  @Value("${aggregation.stream.max-subscribers:5000}") int maxSubscribers,
+                                  @Value("${aggregation.stream.sender-threads:4}") int senderThreads,
+                                  @Value("${aggregation.stream.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                                  @Value("${aggregation.stream.heartbeat-interval-ms:15000}") long heartbeatIntervalMs,
+                                  @Value("${aggregation.stream.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.snapshotCache = snapshotCache;
+        this.maxSubscribers = maxSubscribers;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.sendTimeoutMs = Math.max(100, sendTimeoutMs);
+        this.senderThreads = senderThreads;
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxSubscribers)), namedThreads("dashboard-stream"));
+    }
+    
+    @PostConstruct
+    public void start() {
+        snapshotCache.addListener(this::publish);
+        heartbeats = Executors.newSingleThreadScheduledExecutor(namedThreads("dashboard-stream-heartbeat"));
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        long checkIntervalMs = Math.max(50, sendTimeoutMs / 4);
+        heartbeats.scheduleWithFixedDelay(this::abandonStuckSends, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+    
+    // Starts with the current value of every section, then only sections that changed
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ServiceUnavailableException("Dashboard stream is at its limit of " + maxSubscribers + " subscribers");
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        // Under the publish lock so an older snapshot cannot overwrite a newer pending one
+        synchronized (this) {
+            subscribers.add(subscriber);
+            DashboardSnapshotCache.Snapshot snapshot = snapshotCache.current();
+            subscriber.offer(0, snapshot.getKpisJson());
+            subscriber.offer(1, snapshot.getIncidentsJson());
+        }
+        return emitter;
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("pushed", pushed.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("stalled", stalled.get());
+        stats.put("queuedDrains", senders.getQueue().size());
+        stats.put("senderThreads", senders.getCorePoolSize());
+        return stats;
+    }
+    
+    private synchronized void publish(DashboardSnapshotCache.Snapshot snapshot) {
+        String[] payloads = {snapshot.getKpisJson(), snapshot.getIncidentsJson()};
+        for (int section = 0; section < SECTIONS.length; section++) {
+            String previous = lastPublished.getAndSet(section, payloads[section]);
+            if (payloads[section].equals(previous)) {
+                continue;
+            }
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(section, payloads[section]);
+            }
+        }
+    }
+    
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(HEARTBEAT, "");
+        }
+    }
+    
+    private void abandonStuckSends() {
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince;
+            if (since > 0 && now - since > sendTimeoutMs) {
+                subscriber.abandon();
+            }
+        }
+    }
+    
+    // Grows before shrinking and shrinks after, so core never exceeds maximum
+    private void resizeSenders(int delta) {
+        synchronized (senders) {
+            int size = senders.getCorePoolSize() + delta;
+            if (delta > 0) {
+                senders.setMaximumPoolSize(size);
+                senders.setCorePoolSize(size);
+            } else {
+                senders.setCorePoolSize(size);
+                senders.setMaximumPoolSize(size);
+            }
+        }
+    }
+    
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    private final class Subscriber {
+        
+        private final SseEmitter emitter;
+        private final AtomicReferenceArray<String> pending = new AtomicReferenceArray<>(SECTIONS.length + 1);
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean abandoned = new AtomicBoolean();
+        // Start of the send in progress, 0 when idle
+        private volatile long sendingSince;
+        // Guarded by this
+        private Thread sender;
+        private boolean replaced;
+        
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        
+        void offer(int slot, String payload) {
+            if (pending.getAndSet(slot, payload) != null && slot != HEARTBEAT) {
+                coalesced.incrementAndGet();
+            }
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    // Stopping, or more drains queued than subscribers; leave draining set
+                    subscribers.remove(this);
+                    emitter.complete();
+                }
+            }
+        }
+        
+        // Called by the watchdog. The emitter is completed by the sender thread once the send
+        // returns, since completing it here would block on the emitter's lock.
+        private void abandon() {
+            if (!abandoned.compareAndSet(false, true)) {
+                return;
+            }
+            subscribers.remove(this);
+            stalled.incrementAndGet();
+            log.debug("Dropping dashboard stream subscriber stuck in a send for over {} ms", sendTimeoutMs);
+            synchronized (this) {
+                if (sender == null) {
+                    return;
+                }
+                if (replacements.incrementAndGet() <= senderThreads) {
+                    replaced = true;
+                    resizeSenders(1);
+                } else {
+                    replacements.decrementAndGet();
+                }
+                sender.interrupt();
+            }
+        }
+        
+        // At most one drain per subscriber runs at a time, so sends never interleave
+        private void drain() {
+            while (true) {
+                for (int slot = 0; slot <= SECTIONS.length; slot++) {
+                    String payload = pending.getAndSet(slot, null);
+                    if (payload != null && !send(slot, payload)) {
+                        return;
+                    }
+                    if (abandoned.get()) {
+                        // Leave draining set so it stays idle
+                        emitter.completeWithError(new IOException("Send took longer than " + sendTimeoutMs + " ms"));
+                        return;
+                    }
+                }
+                draining.set(false);
+                if (!hasPending() || !draining.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+        
+        private boolean hasPending() {
+            for (int slot = 0; slot <= SECTIONS.length; slot++) {
+                if (pending.get(slot) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private boolean send(int slot, String payload) {
+            synchronized (this) {
+                sender = Thread.currentThread();
+            }
+            sendingSince = System.currentTimeMillis();
+            try {
+                if (slot == HEARTBEAT) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    emitter.send(SseEmitter.event().name(SECTIONS[slot]).data(payload));
+                    pushed.incrementAndGet();
+                }
+                return true;
+            } catch (IOException | IllegalStateException e) {
+                // Client went away or the emitter already completed; leave draining set so it stays idle
+                log.debug("Dropping dashboard stream subscriber: {}", e.getMessage());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return false;
+            } finally {
+                sendingSince = 0;
+                synchronized (this) {
+                    sender = null;
+                    if (replaced) {
+                        replaced = false;
+                        replacements.decrementAndGet();
+                        resizeSenders(-1);
+                    }
+                }
+                // An interrupt from abandon() must not leak into the next drain on this thread
+                Thread.interrupted();
+            }
+        }
+    }
+}
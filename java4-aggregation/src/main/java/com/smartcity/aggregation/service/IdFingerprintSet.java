@@ -0,0 +1,85 @@
+package com.smartcity.aggregation.service;
+
+import java.util.Arrays;
+
+// Bounded memory of ids as 64-bit fingerprints in open-addressed long tables, 8 bytes per slot
+// instead of a map entry per id. Ids go into the current generation; when it holds capacity ids
+// it becomes the previous one and the generation before is forgotten, so the last capacity to
+// 2 x capacity ids added are remembered. Two ids sharing a fingerprint (about 1 in 2^64) are
+// taken for the same id. Not thread safe.
+final class IdFingerprintSet {
+    
+    private static final long EMPTY = 0;
+    
+    private final int capacity;
+    private final int mask;
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+    
+    IdFingerprintSet(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        // At most half full
+        int slots = Integer.highestOneBit(Math.max(this.capacity * 2, 8) - 1) << 1;
+        this.mask = slots - 1;
+        this.current = new long[slots];
+        this.previous = new long[slots];
+    }
+    
+    void add(String id) {
+        long fingerprint = fingerprint(id);
+        if (!insert(current, fingerprint)) {
+            return;
+        }
+        if (++currentSize >= capacity) {
+            long[] recycled = previous;
+            Arrays.fill(recycled, EMPTY);
+            previous = current;
+            current = recycled;
+            currentSize = 0;
+        }
+    }
+    
+    boolean contains(String id) {
+        long fingerprint = fingerprint(id);
+        return contains(current, fingerprint) || contains(previous, fingerprint);
+    }
+    
+    private boolean insert(long[] table, long fingerprint) {
+        for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == EMPTY) {
+                table[slot] = fingerprint;
+                return true;
+            }
+            if (table[slot] == fingerprint) {
+                return false;
+            }
+        }
+    }
+    
+    private boolean contains(long[] table, long fingerprint) {
+        for (int slot = (int) fingerprint & mask; ; slot = (slot + 1) & mask) {
+            if (table[slot] == EMPTY) {
+                return false;
+            }
+            if (table[slot] == fingerprint) {
+                return true;
+            }
+        }
+    }
+    
+    // FNV-1a over the chars, finished with the murmur3 mixer so the low bits index well
+    private static long fingerprint(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h != EMPTY ? h : 1;
+    }
+}
@@ -0,0 +1,255 @@
+package com.smartcity.aggregation.service;
+
+import com.smartcity.aggregation.dto.IncidentEventDTO;
+import com.smartcity.aggregation.timeseries.MinuteCounters;
+import com.smartcity.aggregation.timeseries.Window;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Incident KPIs maintained incrementally from the smartcity-events topic. An event opens an
+// incident under the same rule event-processing-service uses to start the incident workflow
+// (emergency type, or high/critical severity); later events for a tracked id are updates
+// whatever their severity. Each incident's last known type and status is remembered so a
+// status update moves it between counters instead of counting it twice; redelivered events
+// are no-ops. Incidents dropped from the tracked map are still remembered by fingerprint, so
+// one that reappears is never counted as new. Counters are only touched
+// by the consumer, which publishes an immutable snapshot after every batch for readers.
+// The same transitions are counted per minute of their event time in MinuteCounters, so
+// countBetween answers any range inside the retention from prefix sums, without a scan.
+@Slf4j
+@Component
+public class IncidentKpiTracker {
+    
+    private static final String TYPE_EMERGENCY = "emergency";
+    private static final String SEVERITY_HIGH = "high";
+    private static final String SEVERITY_CRITICAL = "critical";
+    private static final String STATUS_OPEN = "open";
+    private static final String STATUS_IN_PROGRESS = "in-progress";
+    private static final String STATUS_RESOLVED = "resolved";
+    private static final String UNKNOWN_TYPE = "unknown";
+    private static final String OTHER_TYPE = "other";
+    private static final int MAX_WINDOW_TYPES = 32;
+    private static final long MAX_CLOCK_SKEW_MINUTES = 5;
+    private static final int TOTAL_COLUMN = 0;
+    private static final int OPEN_COLUMN = 1;
+    private static final int IN_PROGRESS_COLUMN = 2;
+    private static final int RESOLVED_COLUMN = 3;
+    
+    private final int maxTrackedIncidents;
+    
+    // Insertion ordered; an incident is moved to the tail whenever its status changes
+    private final LinkedHashMap<String, TrackedIncident> incidents = new LinkedHashMap<>();
+    // Ids trimmed from incidents; their counts stand, later events for them are ignored
+    private final IdFingerprintSet forgotten;
+    private final Map<String, Integer> byType = new HashMap<>();
+    private int total;
+    private int open;
+    private int inProgress;
+    private int resolved;
+    
+    // Incidents first seen, and transitions into each status, per minute of event time
+    private final MinuteCounters windowCounters;
+    private final Map<String, Integer> typeColumns = new LinkedHashMap<>();
+    
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.EMPTY);
+    
+    public IncidentKpiTracker(@Value("${aggregation.kpi.max-tracked-incidents:500000}") int maxTrackedIncidents,
+                              @Value("${aggregation.kpi.window-retention-days:8}") int windowRetentionDays,
+                              @Value("${aggregation.kpi.max-forgotten-incidents:500000}") int maxForgottenIncidents) {
+        this.maxTrackedIncidents = maxTrackedIncidents;
+        this.forgotten = new IdFingerprintSet(maxForgottenIncidents);
+        this.windowCounters = new MinuteCounters(Math.max(1, windowRetentionDays) * 24 * 60, RESOLVED_COLUMN + 1);
+    }
+    
+    public synchronized void apply(List<IncidentEventDTO> events) {
+        int skipped = 0;
+        for (IncidentEventDTO event : events) {
+            // Null when the record could not be deserialized
+            if (event == null || event.getEventId() == null) {
+                skipped++;
+                continue;
+            }
+            apply(event);
+        }
+        if (skipped > 0) {
+            log.warn("Skipped {} undecodable event(s) in batch of {}", skipped, events.size());
+        }
+        snapshot.set(new Snapshot(total, open, inProgress, resolved, Map.copyOf(byType)));
+    }
+    
+    // Same predicate as EventIngestionService.isIncidentEvent in event-processing-service
+    public static boolean isIncident(IncidentEventDTO event) {
+        return TYPE_EMERGENCY.equals(event.getEventType())
+                || SEVERITY_CRITICAL.equals(event.getSeverity())
+                || SEVERITY_HIGH.equals(event.getSeverity());
+    }
+    
+    // Constant time; safe to call from any thread
+    public Snapshot current() {
+        return snapshot.get();
+    }
+    
+    // Incidents first reported in [start, end), by type, and how many moved into each status in
+    // that range. Minute resolution: a partly covered minute counts whole. Ranges reaching past
+    // the retention only count what is retained.
+    public synchronized Snapshot countBetween(LocalDateTime start, LocalDateTime end) {
+        long fromMinute = Math.floorDiv(Window.toEpochMs(start), 60_000L);
+        long toMinute = Math.floorDiv(Window.toEpochMs(end) + 59_999L, 60_000L) - 1;
+        Map<String, Integer> windowByType = new HashMap<>();
+        typeColumns.forEach((type, column) -> {
+            long count = windowCounters.sum(column, fromMinute, toMinute);
+            if (count > 0) {
+                windowByType.put(type, (int) count);
+            }
+        });
+        return new Snapshot(
+                (int) windowCounters.sum(TOTAL_COLUMN, fromMinute, toMinute),
+                (int) windowCounters.sum(OPEN_COLUMN, fromMinute, toMinute),
+                (int) windowCounters.sum(IN_PROGRESS_COLUMN, fromMinute, toMinute),
+                (int) windowCounters.sum(RESOLVED_COLUMN, fromMinute, toMinute),
+                windowByType);
+    }
+    
+    private void apply(IncidentEventDTO event) {
+        String type = event.getEventType() != null ? event.getEventType() : UNKNOWN_TYPE;
+        String status = event.getStatus();
+        TrackedIncident known = incidents.get(event.getEventId());
+        long minute = eventMinute(event);
+        
+        if (known == null) {
+            if (!isIncident(event) || forgotten.contains(event.getEventId())) {
+                return;
+            }
+            total++;
+            byType.merge(type, 1, Integer::sum);
+            count(status, 1);
+            countInWindow(minute, TOTAL_COLUMN);
+            countInWindow(minute, typeColumn(type));
+            countInWindow(minute, statusColumn(status));
+            incidents.put(event.getEventId(), new TrackedIncident(type, status));
+            trim();
+            return;
+        }
+        
+        boolean typeChanged = !type.equals(known.type);
+        boolean statusChanged = status != null && !status.equals(known.status);
+        if (!typeChanged && !statusChanged) {
+            return;
+        }
+        if (typeChanged) {
+            byType.merge(known.type, -1, Integer::sum);
+            byType.remove(known.type, 0);
+            byType.merge(type, 1, Integer::sum);
+            known.type = type;
+        }
+        if (statusChanged) {
+            count(known.status, -1);
+            count(status, 1);
+            countInWindow(minute, statusColumn(status));
+            known.status = status;
+        }
+        incidents.remove(event.getEventId());
+        incidents.put(event.getEventId(), known);
+    }
+    
+    private void count(String status, int delta) {
+        if (STATUS_OPEN.equals(status)) {
+            open += delta;
+        } else if (STATUS_IN_PROGRESS.equals(status)) {
+            inProgress += delta;
+        } else if (STATUS_RESOLVED.equals(status)) {
+            resolved += delta;
+        }
+    }
+    
+    private void countInWindow(long minute, int column) {
+        if (minute != Long.MIN_VALUE && column >= 0) {
+            windowCounters.add(minute, column, 1);
+        }
+    }
+    
+    private static int statusColumn(String status) {
+        if (STATUS_OPEN.equals(status)) {
+            return OPEN_COLUMN;
+        } else if (STATUS_IN_PROGRESS.equals(status)) {
+            return IN_PROGRESS_COLUMN;
+        } else if (STATUS_RESOLVED.equals(status)) {
+            return RESOLVED_COLUMN;
+        }
+        return -1;
+    }
+    
+    // Types past the first MAX_WINDOW_TYPES share one column
+    private int typeColumn(String type) {
+        Integer column = typeColumns.get(type);
+        if (column != null) {
+            return column;
+        }
+        String key = typeColumns.size() < MAX_WINDOW_TYPES - 1 ? type : OTHER_TYPE;
+        return typeColumns.computeIfAbsent(key, k -> {
+            windowCounters.addColumn();
+            return windowCounters.columns() - 1;
+        });
+    }
+    
+    // Long.MIN_VALUE when the event has no usable time; one from the future would advance the
+    // ring past everything it holds
+    private static long eventMinute(IncidentEventDTO event) {
+        LocalDateTime timestamp = event.getEventTimestamp() != null ? event.getEventTimestamp() : event.getProcessedAt();
+        if (timestamp == null) {
+            return Long.MIN_VALUE;
+        }
+        long minute = Math.floorDiv(Window.toEpochMs(timestamp), 60_000L);
+        long nowMinute = Math.floorDiv(System.currentTimeMillis(), 60_000L);
+        return minute > nowMinute + MAX_CLOCK_SKEW_MINUTES ? Long.MIN_VALUE : minute;
+    }
+    
+    // Forget the least recently updated incidents; their counts stay, only later transitions are lost
+    private void trim() {
+        Iterator<String> oldest = incidents.keySet().iterator();
+        while (incidents.size() > maxTrackedIncidents && oldest.hasNext()) {
+            forgotten.add(oldest.next());
+            oldest.remove();
+        }
+    }
+    
+    private static final class TrackedIncident {
+        private String type;
+        private String status;
+        
+        private TrackedIncident(String type, String status) {
+            this.type = type;
+            this.status = status;
+        }
+    }
+    
+    @Getter
+    public static final class Snapshot {
+        
+        static final Snapshot EMPTY = new Snapshot(0, 0, 0, 0, Map.of());
+        
+        private final int total;
+        private final int open;
+        private final int inProgress;
+        private final int resolved;
+        private final Map<String, Integer> byType;
+        
+        private Snapshot(int total, int open, int inProgress, int resolved, Map<String, Integer> byType) {
+            this.total = total;
+            this.open = open;
+            this.inProgress = inProgress;
+            this.resolved = resolved;
+            this.byType = byType;
+        }
+    }
+}
@@ -1,41 +1,82 @@
 package com.smartcity.aggregation.service;
 
+import com.smartcity.aggregation.client.CityEntitiesClient;
+import com.smartcity.aggregation.client.DependencyFanOut;
 import com.smartcity.aggregation.dto.KPIDTO;
+import com.smartcity.aggregation.exception.BadRequestException;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 public class KPIService {
     
-    // TODO: Inject Feign clients or repositories to fetch data from other services
+    private final IncidentKpiTracker incidentKpiTracker;
+    private final CityEntitiesClient cityEntitiesClient;
+    private final DependencyFanOut fanOut;
     
     public KPIDTO getKPIs() {
-        // TODO: Aggregate data from multiple services
-        // This would query:
-        // - Event service for incidents
-        // - Entity service for cameras, sensors, vehicles
-        // - DynamoDB/Timestream for time-series metrics
+        // Entity counts are fetched concurrently; each falls back to its last known value
+        CompletableFuture<DependencyFanOut.Result<Long>> cameras =
+                fanOut.call("cameras", () -> cityEntitiesClient.countCameras("ONLINE"), 0L);
+        CompletableFuture<DependencyFanOut.Result<Long>> sensors =
+                fanOut.call("sensors", () -> cityEntitiesClient.countSensors("ONLINE"), 0L);
+        CompletableFuture<DependencyFanOut.Result<Long>> vehicles =
+                fanOut.call("vehicles", () -> cityEntitiesClient.countVehicles("AVAILABLE"), 0L);
+        
+        // Incident counts are precomputed from smartcity-events by IncidentEventConsumer
+        IncidentKpiTracker.Snapshot incidents = incidentKpiTracker.current();
+        
+        CompletableFuture.allOf(cameras, sensors, vehicles).join();
+        List<String> staleSources = new ArrayList<>();
+        int activeCameras = resolve("cameras", cameras, staleSources);
+        int onlineSensors = resolve("sensors", sensors, staleSources);
+        int availableVehicles = resolve("vehicles", vehicles, staleSources);
         
         return KPIDTO.builder()
-                .totalIncidents(145)
-                .openIncidents(12)
-                .inProgressIncidents(8)
-                .resolvedIncidents(125)
+                .totalIncidents(incidents.getTotal())
+                .openIncidents(incidents.getOpen())
+                .inProgressIncidents(incidents.getInProgress())
+                .resolvedIncidents(incidents.getResolved())
+                .incidentsByType(incidents.getByType())
+                // Fixed values: nothing publishes traffic flow, air quality or energy readings yet.
+                // Sourcing them from TimeSeriesStore waits for such a producer.
                 .trafficFlowPercentage(87.0)
                 .airQualityIndex(42)
                 .energyUsageGW(2.4)
-                .activeCameras(6)
-                .onlineSensors(45)
-                .availableVehicles(12)
+                .activeCameras(activeCameras)
+                .onlineSensors(onlineSensors)
+                .availableVehicles(availableVehicles)
+                .staleSources(staleSources)
                 .build();
     }
     
+    // Incident figures cover the window; the other KPIs are current values
     public KPIDTO getKPIsForTimeWindow(LocalDateTime startTime, LocalDateTime endTime) {
-        // TODO: Query time-windowed data from Timestream or DynamoDB
-        return getKPIs();
+        if (!startTime.isBefore(endTime)) {
+            throw new BadRequestException("startTime must be before endTime");
+        }
+        IncidentKpiTracker.Snapshot incidents = incidentKpiTracker.countBetween(startTime, endTime);
+        KPIDTO kpis = getKPIs();
+        kpis.setTotalIncidents(incidents.getTotal());
+        kpis.setOpenIncidents(incidents.getOpen());
+        kpis.setInProgressIncidents(incidents.getInProgress());
+        kpis.setResolvedIncidents(incidents.getResolved());
+        kpis.setIncidentsByType(incidents.getByType());
+        return kpis;
+    }
+    
+    private static int resolve(String source, CompletableFuture<DependencyFanOut.Result<Long>> future,
+                               List<String> staleSources) {
+        DependencyFanOut.Result<Long> result = future.join();
+        if (result.isStale()) {
+            staleSources.add(source);
+        }
+        return result.getValue().intValue();
     }
 }
-
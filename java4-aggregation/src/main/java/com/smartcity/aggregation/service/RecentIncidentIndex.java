@@ -0,0 +1,278 @@
+package com.smartcity.aggregation.service;
+
+import com.smartcity.aggregation.dto.IncidentEventDTO;
+import com.smartcity.aggregation.dto.IncidentSummaryDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// The most recent incidents from smartcity-events, newest first. Besides the global order each
+// incident sits in a per-status, per-severity and per-type set with the same order, so a
+// filtered query walks the smallest matching set and stops at its limit instead of copying
+// everything. Status and other changes update the entry in place; it keeps its first-seen
+// timestamp. Past max-tracked the oldest incidents are dropped, except that every type keeps
+// its newest keep-per-type so a burst of one type cannot push the others off the dashboard.
+// The oldest droppable incident of each type over that floor sits in a set of its own, so an
+// eviction costs a few tree operations however many types are at the floor. max-tracked is a
+// hard cap: with more than max-tracked / keep-per-type types the floor gives way and the
+// oldest incidents go regardless of type.
+@Component
+public class RecentIncidentIndex {
+    
+    private static final String UNKNOWN = "unknown";
+    private static final Comparator<Entry> NEWEST_FIRST = (left, right) -> {
+        int byTime = right.timestamp.compareTo(left.timestamp);
+        return byTime != 0 ? byTime : left.id.compareTo(right.id);
+    };
+    
+    private final int maxTracked;
+    private final int keepPerType;
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> byId = new HashMap<>();
+    private final NavigableSet<Entry> all = new TreeSet<>(NEWEST_FIRST);
+    private final Map<String, NavigableSet<Entry>> byStatus = new HashMap<>();
+    private final Map<String, NavigableSet<Entry>> bySeverity = new HashMap<>();
+    private final Map<String, NavigableSet<Entry>> byType = new HashMap<>();
+    // The oldest entry of every type holding more than keepPerType
+    private final NavigableSet<Entry> evictable = new TreeSet<>(NEWEST_FIRST);
+    
+    public RecentIncidentIndex(@Value("${aggregation.incidents.max-tracked:20000}") int maxTracked,
+                               @Value("${aggregation.incidents.keep-per-type:50}") int keepPerType) {
+        this.maxTracked = Math.max(1, maxTracked);
+        this.keepPerType = Math.max(0, keepPerType);
+    }
+    
+    public void apply(List<IncidentEventDTO> events) {
+        lock.writeLock().lock();
+        try {
+            for (IncidentEventDTO event : events) {
+                // Null when the record could not be deserialized
+                if (event != null && event.getEventId() != null) {
+                    apply(event);
+                }
+            }
+            evict();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    // Null filters match everything; filter values are case-insensitive
+    public List<IncidentSummaryDTO> query(String status, String severity, String type, int limit) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Entry> withStatus = indexed(byStatus, status);
+            NavigableSet<Entry> withSeverity = indexed(bySeverity, severity);
+            NavigableSet<Entry> withType = indexed(byType, type);
+            if (withStatus == null || withSeverity == null || withType == null) {
+                return List.of();
+            }
+            NavigableSet<Entry> candidates = withStatus;
+            if (withSeverity.size() < candidates.size()) {
+                candidates = withSeverity;
+            }
+            if (withType.size() < candidates.size()) {
+                candidates = withType;
+            }
+            List<IncidentSummaryDTO> result = new ArrayList<>(Math.min(limit, candidates.size()));
+            Iterator<Entry> newest = candidates.iterator();
+            while (result.size() < limit && newest.hasNext()) {
+                Entry entry = newest.next();
+                if (matches(entry.status, status) && matches(entry.severity, severity) && matches(entry.type, type)) {
+                    result.add(entry.toSummary());
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Map<String, List<IncidentSummaryDTO>> topByType(int limit) {
+        lock.readLock().lock();
+        try {
+            Map<String, List<IncidentSummaryDTO>> result = new LinkedHashMap<>();
+            byType.forEach((type, entries) -> {
+                List<IncidentSummaryDTO> top = new ArrayList<>(Math.min(limit, entries.size()));
+                Iterator<Entry> newest = entries.iterator();
+                while (top.size() < limit && newest.hasNext()) {
+                    top.add(newest.next().toSummary());
+                }
+                result.put(type, top);
+            });
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    public Map<String, Object> getStats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("tracked", all.size());
+            stats.put("byStatus", sizes(byStatus));
+            stats.put("bySeverity", sizes(bySeverity));
+            stats.put("byType", sizes(byType));
+            return stats;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void apply(IncidentEventDTO event) {
+        Entry known = byId.get(event.getEventId());
+        if (known == null) {
+            Entry entry = new Entry(event.getEventId(), timestampOf(event));
+            entry.update(event);
+            byId.put(entry.id, entry);
+            all.add(entry);
+            index(entry);
+            return;
+        }
+        unindex(known);
+        known.update(event);
+        index(known);
+    }
+    
+    // Oldest first among incidents outside the newest keepPerType of their type, then oldest
+    // first overall when only those are left
+    private void evict() {
+        while (all.size() > maxTracked) {
+            Entry entry = evictable.isEmpty() ? all.last() : evictable.last();
+            all.remove(entry);
+            unindex(entry);
+            byId.remove(entry.id);
+        }
+    }
+    
+    private void index(Entry entry) {
+        byStatus.computeIfAbsent(key(entry.status), k -> new TreeSet<>(NEWEST_FIRST)).add(entry);
+        bySeverity.computeIfAbsent(key(entry.severity), k -> new TreeSet<>(NEWEST_FIRST)).add(entry);
+        NavigableSet<Entry> ofType = byType.computeIfAbsent(key(entry.type), k -> new TreeSet<>(NEWEST_FIRST));
+        withdrawEvictable(ofType);
+        ofType.add(entry);
+        offerEvictable(ofType);
+    }
+    
+    private void unindex(Entry entry) {
+        remove(byStatus, entry.status, entry);
+        remove(bySeverity, entry.severity, entry);
+        NavigableSet<Entry> ofType = byType.get(key(entry.type));
+        if (ofType != null) {
+            withdrawEvictable(ofType);
+            remove(byType, entry.type, entry);
+            offerEvictable(ofType);
+        }
+    }
+    
+    // Called before a type's set changes, with offerEvictable after, as its oldest may change
+    private void withdrawEvictable(NavigableSet<Entry> ofType) {
+        if (ofType.size() > keepPerType) {
+            evictable.remove(ofType.last());
+        }
+    }
+    
+    private void offerEvictable(NavigableSet<Entry> ofType) {
+        if (ofType.size() > keepPerType) {
+            evictable.add(ofType.last());
+        }
+    }
+    
+    private static void remove(Map<String, NavigableSet<Entry>> index, String value, Entry entry) {
+        String key = key(value);
+        NavigableSet<Entry> entries = index.get(key);
+        if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+            index.remove(key);
+        }
+    }
+    
+    // Null when a filter is given but nothing carries that value
+    private NavigableSet<Entry> indexed(Map<String, NavigableSet<Entry>> index, String filter) {
+        return filter == null ? all : index.get(key(filter));
+    }
+    
+    private static boolean matches(String value, String filter) {
+        return filter == null || key(value).equals(key(filter));
+    }
+    
+    private static String key(String value) {
+        return value == null ? UNKNOWN : value.toLowerCase(Locale.ROOT);
+    }
+    
+    private static Map<String, Integer> sizes(Map<String, NavigableSet<Entry>> index) {
+        Map<String, Integer> sizes = new LinkedHashMap<>();
+        index.forEach((key, entries) -> sizes.put(key, entries.size()));
+        return sizes;
+    }
+    
+    // Producer clocks run ahead at times, and an incident dated in the future would stay first
+    // until that time came; like EventMetricsRecorder, take anything later than now as now
+    private static LocalDateTime timestampOf(IncidentEventDTO event) {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        LocalDateTime timestamp = event.getEventTimestamp() != null ? event.getEventTimestamp()
+                : event.getProcessedAt() != null ? event.getProcessedAt()
+                : now;
+        return timestamp.isAfter(now) ? now : timestamp;
+    }
+    
+    // Ordering fields (id, timestamp) never change, so the rest can be updated while indexed
+    private static final class Entry {
+        private final String id;
+        private final LocalDateTime timestamp;
+        private String type;
+        private String severity;
+        private String status;
+        private String location;
+        private String description;
+        private Double latitude;
+        private Double longitude;
+        private String assignedTo;
+        
+        private Entry(String id, LocalDateTime timestamp) {
+            this.id = id;
+            this.timestamp = timestamp;
+        }
+        
+        // Later events may omit fields; keep what was known
+        private void update(IncidentEventDTO event) {
+            type = event.getEventType() != null ? event.getEventType() : type;
+            severity = event.getSeverity() != null ? event.getSeverity() : severity;
+            status = event.getStatus() != null ? event.getStatus() : status;
+            location = event.getLocation() != null ? event.getLocation() : location;
+            description = event.getDescription() != null ? event.getDescription() : description;
+            latitude = event.getLatitude() != null ? event.getLatitude() : latitude;
+            longitude = event.getLongitude() != null ? event.getLongitude() : longitude;
+            assignedTo = event.getAssignedTo() != null ? event.getAssignedTo() : assignedTo;
+        }
+        
+        private IncidentSummaryDTO toSummary() {
+            return IncidentSummaryDTO.builder()
+                    .id(id)
+                    .type(type)
+                    .severity(severity)
+                    .status(status)
+                    .location(location)
+                    .description(description)
+                    .latitude(latitude)
+                    .longitude(longitude)
+                    .timestamp(timestamp)
+                    .assignedTo(assignedTo)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.smartcity.aggregation.timeseries;
+
+// Pre-rolled count/sum/min/max buckets of one metric at one tier, in columnar primitive
+// arrays ordered by bucket start. Only buckets that received samples are stored, so a sparse
+// metric does not spend slots on empty periods. The oldest bucket is overwritten when full.
+// Tiers created with sketches also keep a QuantileSketch per bucket and, for samples that
+// carry a source hash, a HyperLogLog; both are allocated on first use and reused on overwrite.
+final class BucketRing {
+    
+    private final long[] starts;
+    private final long[] counts;
+    private final double[] sums;
+    private final double[] mins;
+    private final double[] maxs;
+    private final QuantileSketch[] quantiles;
+    private final HyperLogLog[] distinct;
+    private int head;
+    private int size;
+    
+    BucketRing(int capacity, boolean sketches) {
+        this.starts = new long[capacity];
+        this.counts = new long[capacity];
+        this.sums = new double[capacity];
+        this.mins = new double[capacity];
+        this.maxs = new double[capacity];
+        this.quantiles = sketches ? new QuantileSketch[capacity] : null;
+        this.distinct = sketches ? new HyperLogLog[capacity] : null;
+    }
+    
+    boolean hasSketches() {
+        return quantiles != null;
+    }
+    
+    // Returns false when the sample belongs to a bucket that is older than the ring holds
+    // or to a gap before the newest bucket (late data for a period that saw no samples).
+    // distinctHash is 0 for samples without a source.
+    boolean add(long bucketStart, double value, long distinctHash) {
+        if (size > 0) {
+            int newest = physical(size - 1);
+            if (starts[newest] == bucketStart) {
+                merge(newest, value, distinctHash);
+                return true;
+            }
+            if (bucketStart < starts[newest]) {
+                int logical = lowerBound(bucketStart);
+                if (logical < size && starts[physical(logical)] == bucketStart) {
+                    merge(physical(logical), value, distinctHash);
+                    return true;
+                }
+                return false;
+            }
+        }
+        int slot;
+        if (size < starts.length) {
+            slot = physical(size++);
+        } else {
+            slot = head;
+            head = (head + 1) % starts.length;
+        }
+        starts[slot] = bucketStart;
+        counts[slot] = 1;
+        sums[slot] = value;
+        mins[slot] = value;
+        maxs[slot] = value;
+        if (quantiles != null) {
+            if (quantiles[slot] != null) {
+                quantiles[slot].clear();
+            }
+            if (distinct[slot] != null) {
+                distinct[slot].clear();
+            }
+            sketch(slot, value, distinctHash);
+        }
+        return true;
+    }
+    
+    // Visits buckets with from <= start < to in time order
+    void scan(long from, long to, BucketVisitor visitor) {
+        for (int i = lowerBound(from); i < size; i++) {
+            int slot = physical(i);
+            if (starts[slot] >= to) {
+                return;
+            }
+            visitor.accept(starts[slot], counts[slot], sums[slot], mins[slot], maxs[slot]);
+        }
+    }
+    
+    // Visits the sketches of buckets with from <= start < to in time order; distinct is null
+    // for buckets whose samples carried no source
+    void scanSketches(long from, long to, SketchScan visitor) {
+        for (int i = lowerBound(from); i < size; i++) {
+            int slot = physical(i);
+            if (starts[slot] >= to) {
+                return;
+            }
+            visitor.accept(starts[slot], counts[slot], quantiles[slot], distinct[slot]);
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    // Bytes held by the sketches' bins and registers
+    long sketchBytes() {
+        if (quantiles == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (int slot = 0; slot < quantiles.length; slot++) {
+            bytes += quantiles[slot] != null ? quantiles[slot].sizeBytes() : 0;
+            bytes += distinct[slot] != null ? distinct[slot].sizeBytes() : 0;
+        }
+        return bytes;
+    }
+    
+    long oldestStart() {
+        return starts[head];
+    }
+    
+    private void merge(int slot, double value, long distinctHash) {
+        if (quantiles != null) {
+            sketch(slot, value, distinctHash);
+        }
+        counts[slot]++;
+        sums[slot] += value;
+        if (value < mins[slot]) {
+            mins[slot] = value;
+        }
+        if (value > maxs[slot]) {
+            maxs[slot] = value;
+        }
+    }
+    
+    private void sketch(int slot, double value, long distinctHash) {
+        if (quantiles[slot] == null) {
+            quantiles[slot] = new QuantileSketch();
+        }
+        quantiles[slot].add(value);
+        if (distinctHash != 0) {
+            if (distinct[slot] == null) {
+                distinct[slot] = new HyperLogLog();
+            }
+            distinct[slot].add(distinctHash);
+        }
+    }
+    
+    private int lowerBound(long bucketStart) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[physical(mid)] < bucketStart) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private int physical(int logical) {
+        int slot = head + logical;
+        return slot < starts.length ? slot : slot - starts.length;
+    }
+    
+    @FunctionalInterface
+    interface SketchScan {
+        void accept(long bucketStart, long count, QuantileSketch quantiles, HyperLogLog distinct);
+    }
+}
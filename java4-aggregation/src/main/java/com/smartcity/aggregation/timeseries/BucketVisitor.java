@@ -0,0 +1,7 @@
+package com.smartcity.aggregation.timeseries;
+
+// Receives rollup buckets as primitives so range scans never box
+@FunctionalInterface
+public interface BucketVisitor {
+    void accept(long bucketStart, long count, double sum, double min, double max);
+}
@@ -0,0 +1,102 @@
+package com.smartcity.aggregation.timeseries;
+
+import com.smartcity.aggregation.dto.IncidentEventDTO;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Turns consumed events into metric samples: a count of 1 under "events" and
+// "events.<type>", and every numeric normalizedData entry under "<type>.<key>"
+// (e.g. pollution.aqi), stamped with the event's own timestamp. The count samples carry
+// a hash of the reporting source for distinct counts. Samples go to the in-memory store
+// and to MetricSegmentStorage, committed together with the batch offsets. Types and keys
+// come from producers, so once TimeSeriesStore is at max-series a new per-type count goes
+// to "events.other" and a new data key to "other" rather than opening another series.
+// Timestamps come from producer clocks. A series only moves forward, so one sample dated
+// in the future would make every real sample after it look late: a timestamp up to
+// MAX_CLOCK_SKEW_MS ahead is taken as now, and an event dated further ahead records nothing.
+@Component
+@RequiredArgsConstructor
+public class EventMetricsRecorder {
+    
+    private static final List<String> REPORTER_KEYS = List.of("deviceId", "sensorId", "cameraId", "vehicleId");
+    private static final String OTHER_EVENTS = "events.other";
+    static final long MAX_CLOCK_SKEW_MS = TimeUnit.MINUTES.toMillis(5);
+    
+    private final TimeSeriesStore store;
+    private final MetricSegmentStorage storage;
+    
+    public void record(List<ConsumerRecord<String, IncidentEventDTO>> records) {
+        Map<Integer, Long> nextOffsets = new HashMap<>();
+        for (ConsumerRecord<String, IncidentEventDTO> record : records) {
+            if (record.offset() < storage.committedOffset(record.partition())) {
+                // Already loaded from disk at startup
+                continue;
+            }
+            if (record.value() != null) {
+                record(record.value());
+            }
+            nextOffsets.merge(record.partition(), record.offset() + 1, Math::max);
+        }
+        storage.commit(nextOffsets);
+    }
+    
+    private void record(IncidentEventDTO event) {
+        long now = System.currentTimeMillis();
+        long timestamp = timestampOf(event, now);
+        if (timestamp > now + MAX_CLOCK_SKEW_MS) {
+            return;
+        }
+        timestamp = Math.min(timestamp, now);
+        String type = event.getEventType() != null ? event.getEventType() : "unknown";
+        
+        long reporter = HyperLogLog.hash(reporterOf(event));
+        
+        sample("events", timestamp, 1.0, reporter);
+        sample(store.admit("events." + type, OTHER_EVENTS), timestamp, 1.0, reporter);
+        
+        Map<String, Object> data = event.getNormalizedData();
+        if (data == null) {
+            return;
+        }
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            if (entry.getValue() instanceof Number number && !REPORTER_KEYS.contains(entry.getKey())) {
+                sample(store.admit(type + "." + entry.getKey(), TimeSeriesStore.OVERFLOW_METRIC), timestamp,
+                        number.doubleValue(), 0L);
+            }
+        }
+    }
+    
+    // metricName has already been admitted, or is one of the fixed names
+    private void sample(String metricName, long timestamp, double value, long distinctHash) {
+        store.record(metricName, timestamp, value, distinctHash);
+        storage.append(metricName, timestamp, value, distinctHash);
+    }
+    
+    // Device id from the metadata when the producer sent one, otherwise source and location
+    private static String reporterOf(IncidentEventDTO event) {
+        Map<String, Object> data = event.getNormalizedData();
+        if (data != null) {
+            for (String key : REPORTER_KEYS) {
+                Object id = data.get(key);
+                if (id != null) {
+                    return key + ":" + id;
+                }
+            }
+        }
+        return event.getSource() + "@" + event.getLocation();
+    }
+    
+    private static long timestampOf(IncidentEventDTO event, long now) {
+        LocalDateTime timestamp = event.getEventTimestamp() != null ? event.getEventTimestamp()
+                : event.getProcessedAt() != null ? event.getProcessedAt()
+                : null;
+        return timestamp != null ? Window.toEpochMs(timestamp) : now;
+    }
+}
@@ -0,0 +1,907 @@
+package com.smartcity.aggregation.timeseries;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Local persistence for metric samples, so history is served right after a restart instead
+// of being rebuilt from the topic. Samples are appended as fixed 28-byte records
+// ([metric id][timestamp][value][source hash]) to an active segment that is rolled every
+// segment-duration-ms. Every consumed batch ends with checkpoint records holding the next
+// Kafka offset per partition; anything after the last checkpoint of a segment is discarded
+// on load, so a crash mid-batch neither loses nor double counts it. At startup every
+// segment is read sequentially through a read-only mapping and fed into the TimeSeriesStore, and
+// the consumer skips records below the restored offsets. A background task rewrites closed
+// segments into per-day partitions of timestamp-sorted segments, each at most
+// compacted-segment-bytes, and drops days older than retention-days.
+@Slf4j
+@Component
+public class MetricSegmentStorage {
+    
+    private static final String SEGMENT_PREFIX = "metrics-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String DICTIONARY_FILE = "metrics.dict";
+    private static final String JOURNAL_FILE = "compaction.journal";
+    private static final int MAGIC = 0x534D5453;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final int RECORD_BYTES = 28;
+    // Version 1 records had no source hash
+    private static final int V1_RECORD_BYTES = 20;
+    private static final int FLAG_COMPACTED = 1;
+    // Compacted into a day partition; the header's fourth int holds the epoch day
+    private static final int FLAG_PARTITIONED = 2;
+    private static final long DAY_MS = TimeUnit.DAYS.toMillis(1);
+    // Samples sorted in memory at once during compaction: about 36 MB of columns and indexes
+    private static final int SORT_CHUNK_SAMPLES = 1 << 20;
+    // Keeps every file well inside what int positions and a single mapping can address
+    private static final long MAX_COMPACTED_SEGMENT_BYTES = 1L << 30;
+    
+    private final TimeSeriesStore store;
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentDurationMs;
+    private final long segmentBytes;
+    private final long compactedSegmentBytes;
+    private final long retentionMs;
+    private final int compactionMinSegments;
+    private final long compactionIntervalMs;
+    
+    // Guarded by this
+    private final Map<String, Integer> metricIds = new HashMap<>();
+    private final List<String> metricNames = new ArrayList<>();
+    private final Map<Integer, Long> committedOffsets = new HashMap<>();
+    // Closed segments not yet compacted, oldest first
+    private final Deque<Path> closedSegments = new ArrayDeque<>();
+    // Compacted segments by epoch day, each day's oldest first
+    private final TreeMap<Long, List<Path>> partitions = new TreeMap<>();
+    private FileChannel dictionaryChannel;
+    private FileChannel activeChannel;
+    private Path activeSegment;
+    private long activeOpenedAt;
+    private long activeBytes;
+    private long nextSegmentSequence;
+    private ByteBuffer pending = ByteBuffer.allocate(RECORD_BYTES * 1024);
+    
+    private ScheduledExecutorService scheduler;
+    
+    public MetricSegmentStorage(TimeSeriesStore store,
+                                @Value("${aggregation.timeseries.storage.enabled:true}") boolean enabled,
+                                @Value("${aggregation.timeseries.storage.directory:./data/metrics}") String directory,
+                                @Value("${aggregation.timeseries.storage.segment-duration-ms:3600000}") long segmentDurationMs,
+                                @Value("${aggregation.timeseries.storage.segment-bytes:67108864}") long segmentBytes,
+                                @Value("${aggregation.timeseries.storage.compacted-segment-bytes:268435456}") long compactedSegmentBytes,
+                                @Value("${aggregation.timeseries.storage.retention-days:730}") int retentionDays,
+                                @Value("${aggregation.timeseries.storage.compaction-min-segments:4}") int compactionMinSegments,
+                                @Value("${aggregation.timeseries.storage.compaction-interval-ms:600000}") long compactionIntervalMs) {
+        this.store = store;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentDurationMs = segmentDurationMs;
+        this.segmentBytes = segmentBytes;
+        this.compactedSegmentBytes = Math.max(HEADER_BYTES + RECORD_BYTES * 1024L,
+                Math.min(MAX_COMPACTED_SEGMENT_BYTES, compactedSegmentBytes));
+        this.retentionMs = TimeUnit.DAYS.toMillis(retentionDays);
+        this.compactionMinSegments = Math.max(2, compactionMinSegments);
+        this.compactionIntervalMs = compactionIntervalMs;
+    }
+    
+    @PostConstruct
+    public synchronized void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Files.createDirectories(directory);
+        // A compaction that got as far as its journal is completed before anything is read
+        finishCompaction();
+        loadDictionary();
+        
+        List<Path> segments = listSegments();
+        removeCompactedInputs(segments);
+        // Partitions first, oldest day first, then the uncompacted segments, so every series is
+        // fed roughly in time order
+        Map<Path, Long> partitionDays = new HashMap<>();
+        List<Path> ordered = new ArrayList<>();
+        List<Path> uncompacted = new ArrayList<>();
+        for (Path segment : segments) {
+            SegmentHeader header = readHeader(segment);
+            if (header != null && (header.flags & FLAG_PARTITIONED) != 0) {
+                partitionDays.put(segment, (long) header.day);
+                ordered.add(segment);
+            } else {
+                uncompacted.add(segment);
+            }
+        }
+        ordered.sort(Comparator.comparing(partitionDays::get));
+        ordered.addAll(uncompacted);
+        
+        MetricSeries[] series = new MetricSeries[metricNames.size()];
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        // Saved before EventMetricsRecorder dropped future-dated samples; it would block the series
+        long horizon = System.currentTimeMillis() + EventMetricsRecorder.MAX_CLOCK_SKEW_MS;
+        long[] loaded = new long[1];
+        for (Path segment : ordered) {
+            nextSegmentSequence = Math.max(nextSegmentSequence, sequenceOf(segment) + 1);
+            long committedEnd = readSegment(segment, committedOffsets, (metricId, timestamp, value, distinctHash) -> {
+                if (timestamp < cutoff || timestamp > horizon || metricId >= series.length) {
+                    return;
+                }
+                if (series[metricId] == null) {
+                    // A lowered max-series folds the names past it into the overflow series
+                    String name = store.admit(metricNames.get(metricId), TimeSeriesStore.OVERFLOW_METRIC);
+                    series[metricId] = store.series(name);
+                }
+                series[metricId].record(timestamp, value, distinctHash);
+                loaded[0]++;
+            });
+            if (committedEnd <= HEADER_BYTES) {
+                Files.deleteIfExists(segment);
+                continue;
+            }
+            if (committedEnd < Files.size(segment)) {
+                log.warn("Discarding uncommitted tail of metric segment {}", segment);
+                try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+                    channel.truncate(committedEnd);
+                }
+            }
+            Long day = partitionDays.get(segment);
+            if (day != null) {
+                partitions.computeIfAbsent(day, d -> new ArrayList<>()).add(segment);
+            } else {
+                closedSegments.addLast(segment);
+            }
+        }
+        log.info("Loaded {} samples of {} metrics from {} segment(s) in {} ms", loaded[0], metricNames.size(),
+                ordered.size(), System.currentTimeMillis() - started);
+        
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metric-compaction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compact, compactionIntervalMs, compactionIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    
+    @PreDestroy
+    public synchronized void stop() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (activeChannel != null) {
+            activeChannel.force(false);
+            activeChannel.close();
+            activeChannel = null;
+        }
+        if (dictionaryChannel != null) {
+            dictionaryChannel.force(false);
+            dictionaryChannel.close();
+            dictionaryChannel = null;
+        }
+    }
+    
+    // Next offset to apply for the partition; records below it were persisted by an earlier run
+    public synchronized long committedOffset(int partition) {
+        return committedOffsets.getOrDefault(partition, 0L);
+    }
+    
+    // Buffered until commit
+    public synchronized void append(String metricName, long timestamp, double value, long distinctHash) {
+        if (!enabled) {
+            return;
+        }
+        Integer metricId = metricIds.get(metricName);
+        if (metricId == null) {
+            metricId = define(metricName);
+            if (metricId < 0) {
+                return;
+            }
+        }
+        ensurePending();
+        pending.putInt(metricId).putLong(timestamp).putDouble(value).putLong(distinctHash);
+    }
+    
+    // Writes the buffered samples followed by one checkpoint per partition
+    public synchronized void commit(Map<Integer, Long> nextOffsets) {
+        if (!enabled || nextOffsets.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Integer, Long> offset : nextOffsets.entrySet()) {
+            ensurePending();
+            pending.putInt(-1 - offset.getKey()).putLong(offset.getValue()).putLong(0L).putLong(0L);
+        }
+        pending.flip();
+        try {
+            if (activeChannel == null || System.currentTimeMillis() - activeOpenedAt >= segmentDurationMs
+                    || activeBytes >= segmentBytes) {
+                rollActive();
+                openActive();
+            }
+            while (pending.hasRemaining()) {
+                activeBytes += activeChannel.write(pending);
+            }
+            nextOffsets.forEach((partition, offset) -> committedOffsets.merge(partition, offset, Math::max));
+        } catch (IOException e) {
+            // The samples are still in memory; they are only missing after the next restart.
+            // A partial write is past the last checkpoint, so start a fresh segment after it.
+            log.error("Could not persist metric samples to {}: {}", activeSegment, e.getMessage());
+            try {
+                rollActive();
+            } catch (IOException closeFailed) {
+                activeChannel = null;
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+    
+    private void ensurePending() {
+        if (pending.remaining() < RECORD_BYTES) {
+            ByteBuffer larger = ByteBuffer.allocate(pending.capacity() * 2);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+    
+    private int define(String metricName) {
+        byte[] name = metricName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > Short.MAX_VALUE) {
+            return -1;
+        }
+        try {
+            ByteBuffer entry = ByteBuffer.allocate(2 + name.length);
+            entry.putShort((short) name.length).put(name).flip();
+            while (entry.hasRemaining()) {
+                dictionaryChannel.write(entry);
+            }
+        } catch (IOException e) {
+            log.error("Could not persist metric name {}: {}", metricName, e.getMessage());
+            return -1;
+        }
+        int metricId = metricNames.size();
+        metricNames.add(metricName);
+        metricIds.put(metricName, metricId);
+        return metricId;
+    }
+    
+    private void loadDictionary() throws IOException {
+        Path file = directory.resolve(DICTIONARY_FILE);
+        dictionaryChannel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = dictionaryChannel.size();
+        MappedByteBuffer buffer = dictionaryChannel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        while (buffer.remaining() >= 2) {
+            int length = buffer.getShort();
+            if (length < 0 || length > buffer.remaining()) {
+                buffer.position(buffer.position() - 2);
+                break;
+            }
+            byte[] name = new byte[length];
+            buffer.get(name);
+            String metricName = new String(name, StandardCharsets.UTF_8);
+            metricIds.put(metricName, metricNames.size());
+            metricNames.add(metricName);
+        }
+        if (buffer.position() < size) {
+            log.warn("Discarding torn tail of metric dictionary {}", file);
+            dictionaryChannel.truncate(buffer.position());
+        }
+        dictionaryChannel.position(buffer.position());
+    }
+    
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = new ArrayList<>();
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(TEMP_SUFFIX)) {
+                    // Output or run of a compaction that never reached its journal; its inputs
+                    // are still in place
+                    Files.deleteIfExists(file);
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX) && sequenceOf(file) >= 0) {
+                    segments.add(file);
+                }
+            }
+            segments.sort(null);
+            return segments;
+        }
+    }
+    
+    // Segments compacted by earlier versions replaced the newest of their inputs in place; a
+    // crash between installing one and deleting its inputs leaves both behind
+    private void removeCompactedInputs(List<Path> segments) throws IOException {
+        for (Path segment : new ArrayList<>(segments)) {
+            SegmentHeader header = readHeader(segment);
+            if (header == null || header.firstSequence == header.lastSequence) {
+                continue;
+            }
+            Iterator<Path> others = segments.iterator();
+            while (others.hasNext()) {
+                Path other = others.next();
+                long sequence = sequenceOf(other);
+                if (!other.equals(segment) && sequence >= header.firstSequence && sequence <= header.lastSequence) {
+                    Files.deleteIfExists(other);
+                    others.remove();
+                }
+            }
+        }
+    }
+    
+    private void openActive() throws IOException {
+        long sequence = nextSegmentSequence++;
+        activeSegment = segmentPath(sequence);
+        activeChannel = FileChannel.open(activeSegment,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        ByteBuffer header = header(0, 0, sequence, sequence);
+        while (header.hasRemaining()) {
+            activeChannel.write(header);
+        }
+        activeOpenedAt = System.currentTimeMillis();
+        activeBytes = HEADER_BYTES;
+    }
+    
+    private void rollActive() throws IOException {
+        if (activeChannel == null) {
+            return;
+        }
+        activeChannel.force(false);
+        activeChannel.close();
+        activeChannel = null;
+        closedSegments.addLast(activeSegment);
+        activeSegment = null;
+        activeBytes = 0;
+    }
+    
+    // Package-private so tests can compact without waiting for the scheduler
+    void compact() {
+        try {
+            finishCompaction();
+            dropExpiredPartitions();
+            List<Path> inputs;
+            Map<Long, Path> lastParts = new HashMap<>();
+            synchronized (this) {
+                if (closedSegments.size() < compactionMinSegments) {
+                    return;
+                }
+                inputs = new ArrayList<>(closedSegments);
+                partitions.forEach((day, parts) -> lastParts.put(day, parts.get(parts.size() - 1)));
+            }
+            new Compaction(inputs, lastParts).run();
+        } catch (IOException | RuntimeException e) {
+            // Inputs are only deleted once the journal is written, so nothing is lost; retried
+            // on the next run
+            log.error("Metric segment compaction failed: {}", e.toString());
+        }
+    }
+    
+    // Days that ended before the retention cutoff are deleted whole
+    private void dropExpiredPartitions() throws IOException {
+        long cutoffDay = Math.floorDiv(System.currentTimeMillis() - retentionMs, DAY_MS);
+        List<Path> expired = new ArrayList<>();
+        synchronized (this) {
+            SortedMap<Long, List<Path>> days = partitions.headMap(cutoffDay);
+            days.values().forEach(expired::addAll);
+            days.clear();
+        }
+        for (Path segment : expired) {
+            Files.deleteIfExists(segment);
+        }
+        if (!expired.isEmpty()) {
+            log.info("Dropped {} expired metric partition segment(s)", expired.size());
+        }
+    }
+    
+    // Renames the outputs named in the journal into place and deletes the inputs it lists.
+    // Idempotent, so a crash part way through is finished on the next start.
+    private void finishCompaction() throws IOException {
+        Path journal = directory.resolve(JOURNAL_FILE);
+        if (!Files.exists(journal)) {
+            return;
+        }
+        for (String line : Files.readAllLines(journal, StandardCharsets.UTF_8)) {
+            if (line.length() < 3) {
+                continue;
+            }
+            Path file = directory.resolve(line.substring(2));
+            if (line.charAt(0) == '+') {
+                Path temp = tempOf(file);
+                if (Files.exists(temp)) {
+                    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else if (line.charAt(0) == '-') {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.delete(journal);
+    }
+    
+    // Feeds the committed samples of a segment to the sink and folds its checkpoints into
+    // offsets; returns the byte position just past the last checkpoint
+    private long readSegment(Path segment, Map<Integer, Long> offsets, SampleSink sink) throws IOException {
+        long committedEnd = HEADER_BYTES;
+        try (RecordReader reader = RecordReader.open(segment, Long.MAX_VALUE)) {
+            if (reader == null) {
+                log.warn("Skipping metric segment {} with unknown format", segment);
+                return HEADER_BYTES;
+            }
+            while (reader.next()) {
+                if (reader.metricId < 0) {
+                    committedEnd = reader.position;
+                }
+            }
+        }
+        try (RecordReader reader = RecordReader.open(segment, committedEnd)) {
+            while (reader.next()) {
+                if (reader.metricId >= 0) {
+                    sink.accept(reader.metricId, reader.timestamp, reader.value, reader.distinctHash);
+                } else {
+                    offsets.merge(-1 - reader.metricId, reader.timestamp, Math::max);
+                }
+            }
+        }
+        return committedEnd;
+    }
+    
+    // Null if unreadable
+    private static SegmentHeader readHeader(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            fill(channel, header);
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                return null;
+            }
+            return new SegmentHeader(header.getInt(8), header.getInt(12), header.getLong(16), header.getLong(24));
+        }
+    }
+    
+    private static ByteBuffer header(int flags, int day, long firstSequence, long lastSequence) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(flags).putInt(day)
+                .putLong(firstSequence).putLong(lastSequence).flip();
+        return header;
+    }
+    
+    // Reads until the buffer is full or the channel is exhausted
+    private static void fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read >= 0 && buffer.hasRemaining());
+    }
+    
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+    
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+    
+    private static Path tempOf(Path file) {
+        return file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+    }
+    
+    private static long dayOf(long timestamp) {
+        return Math.floorDiv(timestamp, DAY_MS);
+    }
+    
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+    
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+    
+    // One compaction run. Each input is read in chunks of at most SORT_CHUNK_SAMPLES, which are
+    // sorted in memory and spilled as one run file per day they touch. The runs of a day, plus
+    // that day's newest partition segment while it is under the size bound, are then merged as
+    // sorted streams into new segments of at most compacted-segment-bytes. Heap use is one chunk
+    // and a mapping per merged file, however much history is on disk.
+    private final class Compaction {
+        
+        private final List<Path> inputs;
+        private final Map<Long, Path> lastParts;
+        private final long started = System.currentTimeMillis();
+        private final long cutoff = started - retentionMs;
+        private final Map<Integer, Long> offsets = new HashMap<>();
+        private final TreeMap<Long, List<Path>> runs = new TreeMap<>();
+        // Final names of the outputs, written under tempOf(name) until committed
+        private final Map<Path, Long> outputs = new LinkedHashMap<>();
+        private final Map<Long, Path> replaced = new HashMap<>();
+        private int runCount;
+        private long samples;
+        private boolean committed;
+        
+        private Compaction(List<Path> inputs, Map<Long, Path> lastParts) {
+            this.inputs = inputs;
+            this.lastParts = lastParts;
+        }
+        
+        void run() throws IOException {
+            try {
+                SampleColumns chunk = new SampleColumns();
+                for (Path input : inputs) {
+                    readSegment(input, offsets, (metricId, timestamp, value, distinctHash) -> {
+                        if (timestamp < cutoff) {
+                            return;
+                        }
+                        chunk.add(metricId, timestamp, value, distinctHash);
+                        if (chunk.size == SORT_CHUNK_SAMPLES) {
+                            spill(chunk);
+                        }
+                    });
+                }
+                spill(chunk);
+                for (Map.Entry<Long, List<Path>> day : runs.entrySet()) {
+                    merge(day.getKey(), day.getValue());
+                }
+                if (outputs.isEmpty()) {
+                    // Nothing left to keep, but the checkpoints must outlive the inputs
+                    try (SegmentWriter writer = newOutput(dayOf(started))) {
+                        writer.finish(offsets);
+                    }
+                }
+                commit();
+            } finally {
+                runs.values().forEach(dayRuns -> dayRuns.forEach(MetricSegmentStorage::deleteQuietly));
+                if (!committed) {
+                    outputs.keySet().forEach(output -> deleteQuietly(tempOf(output)));
+                }
+            }
+            log.info("Compacted {} metric segment(s) into {} partition segment(s) ({} samples) in {} ms",
+                    inputs.size(), outputs.size(), samples, System.currentTimeMillis() - started);
+        }
+        
+        // Writes the chunk in timestamp order, one run file per day
+        private void spill(SampleColumns chunk) throws IOException {
+            int[] order = chunk.sortedByTimestamp();
+            int index = 0;
+            while (index < order.length) {
+                long day = dayOf(chunk.timestamps[order[index]]);
+                Path run = directory.resolve(String.format("%srun-%d%s", SEGMENT_PREFIX, runCount++, TEMP_SUFFIX));
+                runs.computeIfAbsent(day, d -> new ArrayList<>()).add(run);
+                try (SegmentWriter writer = new SegmentWriter(run, header(0, 0, 0, 0))) {
+                    for (; index < order.length && dayOf(chunk.timestamps[order[index]]) == day; index++) {
+                        int sample = order[index];
+                        writer.write(chunk.metricIds[sample], chunk.timestamps[sample], chunk.values[sample],
+                                chunk.distinctHashes[sample]);
+                    }
+                    writer.flush();
+                }
+            }
+            chunk.clear();
+        }
+        
+        private void merge(long day, List<Path> dayRuns) throws IOException {
+            List<Path> sources = new ArrayList<>(dayRuns);
+            Path last = lastParts.get(day);
+            if (last != null && Files.size(last) < compactedSegmentBytes) {
+                sources.add(last);
+                replaced.put(day, last);
+            }
+            List<RecordReader> readers = new ArrayList<>();
+            PriorityQueue<RecordReader> heads = new PriorityQueue<>(Comparator.comparingLong(reader -> reader.timestamp));
+            SegmentWriter writer = null;
+            try {
+                for (Path source : sources) {
+                    RecordReader reader = RecordReader.open(source, Long.MAX_VALUE);
+                    if (reader == null) {
+                        throw new IOException("Unreadable compaction input " + source);
+                    }
+                    readers.add(reader);
+                    if (nextSample(reader)) {
+                        heads.add(reader);
+                    }
+                }
+                while (!heads.isEmpty()) {
+                    RecordReader reader = heads.poll();
+                    if (writer == null || writer.bytes >= compactedSegmentBytes) {
+                        if (writer != null) {
+                            writer.finish(offsets);
+                            writer.close();
+                        }
+                        writer = newOutput(day);
+                    }
+                    writer.write(reader.metricId, reader.timestamp, reader.value, reader.distinctHash);
+                    samples++;
+                    if (nextSample(reader)) {
+                        heads.add(reader);
+                    }
+                }
+                if (writer != null) {
+                    writer.finish(offsets);
+                }
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+                for (RecordReader reader : readers) {
+                    reader.close();
+                }
+            }
+        }
+        
+        // Advances to the next live sample, folding checkpoints of reopened partition segments
+        private boolean nextSample(RecordReader reader) throws IOException {
+            while (reader.next()) {
+                if (reader.metricId < 0) {
+                    offsets.merge(-1 - reader.metricId, reader.timestamp, Math::max);
+                } else if (reader.timestamp >= cutoff) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private SegmentWriter newOutput(long day) throws IOException {
+            long sequence;
+            synchronized (MetricSegmentStorage.this) {
+                sequence = nextSegmentSequence++;
+            }
+            Path output = segmentPath(sequence);
+            outputs.put(output, day);
+            return new SegmentWriter(tempOf(output),
+                    header(FLAG_COMPACTED | FLAG_PARTITIONED, (int) day, sequence, sequence));
+        }
+        
+        // The journal is the commit point: once it is on disk the outputs replace the inputs,
+        // even if the process dies before the renames and deletes below are done
+        private void commit() throws IOException {
+            StringBuilder journal = new StringBuilder();
+            outputs.keySet().forEach(output -> journal.append("+ ").append(output.getFileName()).append('\n'));
+            inputs.forEach(input -> journal.append("- ").append(input.getFileName()).append('\n'));
+            replaced.values().forEach(part -> journal.append("- ").append(part.getFileName()).append('\n'));
+            Path temp = directory.resolve(JOURNAL_FILE + TEMP_SUFFIX);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = ByteBuffer.wrap(journal.toString().getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, directory.resolve(JOURNAL_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+            
+            synchronized (MetricSegmentStorage.this) {
+                closedSegments.removeAll(inputs);
+                replaced.forEach((day, part) -> {
+                    List<Path> parts = partitions.get(day);
+                    if (parts != null) {
+                        parts.remove(part);
+                    }
+                });
+                outputs.forEach((output, day) -> partitions.computeIfAbsent(day, d -> new ArrayList<>()).add(output));
+            }
+            finishCompaction();
+        }
+    }
+    
+    @FunctionalInterface
+    private interface SampleSink {
+        void accept(int metricId, long timestamp, double value, long distinctHash) throws IOException;
+    }
+    
+    private static final class SegmentHeader {
+        private final int flags;
+        private final int day;
+        private final long firstSequence;
+        private final long lastSequence;
+        
+        private SegmentHeader(int flags, int day, long firstSequence, long lastSequence) {
+            this.flags = flags;
+            this.day = day;
+            this.firstSequence = firstSequence;
+            this.lastSequence = lastSequence;
+        }
+    }
+    
+    // Sequential reader over the records of a segment through a read-only mapping. Compacted
+    // segments are at most MAX_COMPACTED_SEGMENT_BYTES and the active one is rolled at
+    // segment-bytes, so one mapping covers a file; anything larger, such as a segment compacted
+    // by an older version, is mapped MAX_COMPACTED_SEGMENT_BYTES at a time.
+    private static final class RecordReader implements Closeable {
+        private final FileChannel channel;
+        private final int recordBytes;
+        private final boolean hashed;
+        private final long end;
+        private MappedByteBuffer mapping;
+        private long mappingStart;
+        private long position = HEADER_BYTES;
+        private int metricId;
+        private long timestamp;
+        private double value;
+        private long distinctHash;
+        
+        private RecordReader(FileChannel channel, int version, long end) {
+            this.channel = channel;
+            this.hashed = version > 1;
+            this.recordBytes = hashed ? RECORD_BYTES : V1_RECORD_BYTES;
+            this.end = end;
+        }
+        
+        // Reads records up to end (clamped to the file size); null if the file is not a segment
+        // of a known format
+        static RecordReader open(Path segment, long end) throws IOException {
+            FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                fill(channel, header);
+                int version = header.getInt(4);
+                if (header.hasRemaining() || header.getInt(0) != MAGIC || version < 1 || version > FORMAT_VERSION) {
+                    channel.close();
+                    return null;
+                }
+                return new RecordReader(channel, version, Math.min(end, channel.size()));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        
+        boolean next() throws IOException {
+            if (position + recordBytes > end) {
+                return false;
+            }
+            if (mapping == null || position + recordBytes > mappingStart + mapping.limit()) {
+                mappingStart = position;
+                mapping = channel.map(FileChannel.MapMode.READ_ONLY, mappingStart,
+                        Math.min(end - mappingStart, MAX_COMPACTED_SEGMENT_BYTES));
+            }
+            int offset = (int) (position - mappingStart);
+            metricId = mapping.getInt(offset);
+            timestamp = mapping.getLong(offset + 4);
+            value = mapping.getDouble(offset + 12);
+            distinctHash = hashed ? mapping.getLong(offset + 20) : 0L;
+            position += recordBytes;
+            return true;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+    
+    // Buffered writer for compaction outputs and runs
+    private static final class SegmentWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 4096);
+        private long bytes = HEADER_BYTES;
+        
+        private SegmentWriter(Path file, ByteBuffer header) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            buffer.put(header);
+        }
+        
+        void write(int metricId, long timestamp, double value, long distinctHash) throws IOException {
+            if (buffer.remaining() < RECORD_BYTES) {
+                drain(buffer, channel);
+            }
+            buffer.putInt(metricId).putLong(timestamp).putDouble(value).putLong(distinctHash);
+            bytes += RECORD_BYTES;
+        }
+        
+        void flush() throws IOException {
+            drain(buffer, channel);
+        }
+        
+        // Ends the segment with one checkpoint per partition and forces it to disk
+        void finish(Map<Integer, Long> offsets) throws IOException {
+            for (Map.Entry<Integer, Long> offset : offsets.entrySet()) {
+                write(-1 - offset.getKey(), offset.getValue(), 0.0, 0L);
+            }
+            drain(buffer, channel);
+            channel.force(true);
+        }
+        
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+    
+    // Reusable columns of samples sorted in chunks during compaction
+    private static final class SampleColumns {
+        private int[] metricIds = new int[1024];
+        private long[] timestamps = new long[1024];
+        private double[] values = new double[1024];
+        private long[] distinctHashes = new long[1024];
+        private int size;
+        
+        void add(int metricId, long timestamp, double value, long distinctHash) {
+            if (size == timestamps.length) {
+                metricIds = Arrays.copyOf(metricIds, size * 2);
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                distinctHashes = Arrays.copyOf(distinctHashes, size * 2);
+            }
+            metricIds[size] = metricId;
+            timestamps[size] = timestamp;
+            values[size] = value;
+            distinctHashes[size] = distinctHash;
+            size++;
+        }
+        
+        void clear() {
+            size = 0;
+        }
+        
+        // Stable merge sort of sample indexes by timestamp
+        int[] sortedByTimestamp() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            int[] scratch = new int[size];
+            for (int width = 1; width < size; width *= 2) {
+                for (int low = 0; low < size - width; low += 2 * width) {
+                    int mid = low + width;
+                    int high = Math.min(low + 2 * width, size);
+                    int left = low;
+                    int right = mid;
+                    int out = low;
+                    while (left < mid && right < high) {
+                        scratch[out++] = timestamps[order[right]] < timestamps[order[left]] ? order[right++] : order[left++];
+                    }
+                    while (left < mid) {
+                        scratch[out++] = order[left++];
+                    }
+                    while (right < high) {
+                        scratch[out++] = order[right++];
+                    }
+                    System.arraycopy(scratch, low, order, low, high - low);
+                }
+            }
+            return order;
+        }
+    }
+}
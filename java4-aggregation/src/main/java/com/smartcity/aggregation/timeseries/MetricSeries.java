@@ -0,0 +1,238 @@
+package com.smartcity.aggregation.timeseries;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// One metric: the raw ring plus a BucketRing per rollup tier (1m, 1h, 1d). Every sample
+// updates all tiers, and each tier's ring is sized from its retention, so memory per metric
+// is fixed however long the service runs. A query is planned onto the coarsest tier whose
+// buckets line up with the requested window; weeks and months are merged from day buckets
+// while scanning. The 1h and 1d tiers also carry quantile and distinct-count sketches.
+final class MetricSeries {
+    
+    // Coarsest first
+    private static final Window[] TIERS = {Window.DAY, Window.HOUR, Window.MINUTE};
+    private static final Window[] SKETCH_TIERS = {Window.DAY, Window.HOUR};
+    
+    private final RawRing raw;
+    private final BucketRing[] tiers = new BucketRing[Window.values().length];
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long late;
+    
+    MetricSeries(int rawCapacity, int minuteBuckets, int hourBuckets, int dayBuckets) {
+        this.raw = new RawRing(rawCapacity);
+        tiers[Window.MINUTE.ordinal()] = new BucketRing(minuteBuckets, false);
+        tiers[Window.HOUR.ordinal()] = new BucketRing(hourBuckets, true);
+        tiers[Window.DAY.ordinal()] = new BucketRing(dayBuckets, true);
+    }
+    
+    // Finest window that quantile and distinct queries can use
+    static Window finestSketchWindow() {
+        return SKETCH_TIERS[SKETCH_TIERS.length - 1];
+    }
+    
+    void record(long timestamp, double value, long distinctHash) {
+        lock.writeLock().lock();
+        try {
+            boolean accepted = raw.add(timestamp, value);
+            for (Window tier : TIERS) {
+                accepted &= tiers[tier.ordinal()].add(tier.bucketStart(timestamp), value, distinctHash);
+            }
+            if (!accepted) {
+                late++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    void scanRaw(long from, long to, PointVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            raw.scan(from, to, visitor);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Returns the tier that answered the query
+    Window scan(Window window, long from, long to, BucketVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            // Include the bucket that contains from, it overlaps the requested range
+            long start = window.bucketStart(from);
+            Window tier = plan(TIERS, window, start);
+            BucketRing ring = tiers[tier.ordinal()];
+            if (tier == window) {
+                ring.scan(start, to, visitor);
+            } else {
+                Rebucket rebucket = new Rebucket(window, visitor);
+                ring.scan(start, to, rebucket);
+                rebucket.flush();
+            }
+            return tier;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Sketches of the window buckets overlapping [from, to); window must not be finer than
+    // finestSketchWindow(). Returns the tier that answered.
+    Window scanSketches(Window window, long from, long to, double[] quantiles, SketchVisitor visitor) {
+        lock.readLock().lock();
+        try {
+            long start = window.bucketStart(from);
+            Window tier = plan(SKETCH_TIERS, window, start);
+            SketchRebucket rebucket = new SketchRebucket(window, quantiles, visitor);
+            tiers[tier.ordinal()].scanSketches(start, to, rebucket);
+            rebucket.flush();
+            return tier;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Coarsest tier not wider than the window that still holds the start of the range; if none
+    // reaches back that far, the coarsest eligible tier, which has the longest history
+    private Window plan(Window[] candidates, Window window, long start) {
+        Window fallback = null;
+        for (Window tier : candidates) {
+            if (tier.ordinal() > window.ordinal()) {
+                continue;
+            }
+            if (fallback == null) {
+                fallback = tier;
+            }
+            BucketRing ring = tiers[tier.ordinal()];
+            if (ring.size() == 0 || ring.oldestStart() <= start) {
+                return tier;
+            }
+        }
+        return fallback;
+    }
+    
+    long rawSize() {
+        lock.readLock().lock();
+        try {
+            return raw.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    long sketchBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Window tier : SKETCH_TIERS) {
+                bytes += tiers[tier.ordinal()].sketchBytes();
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    long late() {
+        lock.readLock().lock();
+        try {
+            return late;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    // Merges consecutive tier buckets that fall into the same window bucket
+    private static final class Rebucket implements BucketVisitor {
+        
+        private final Window window;
+        private final BucketVisitor downstream;
+        private long current = Long.MIN_VALUE;
+        private long count;
+        private double sum;
+        private double min;
+        private double max;
+        
+        private Rebucket(Window window, BucketVisitor downstream) {
+            this.window = window;
+            this.downstream = downstream;
+        }
+        
+        @Override
+        public void accept(long bucketStart, long bucketCount, double bucketSum, double bucketMin, double bucketMax) {
+            long target = window.bucketStart(bucketStart);
+            if (target != current) {
+                flush();
+                current = target;
+                count = bucketCount;
+                sum = bucketSum;
+                min = bucketMin;
+                max = bucketMax;
+                return;
+            }
+            count += bucketCount;
+            sum += bucketSum;
+            min = Math.min(min, bucketMin);
+            max = Math.max(max, bucketMax);
+        }
+        
+        void flush() {
+            if (count > 0) {
+                downstream.accept(current, count, sum, min, max);
+                count = 0;
+            }
+        }
+    }
+    
+    // Merges the sketches of tier buckets that fall into the same window bucket
+    private static final class SketchRebucket implements BucketRing.SketchScan {
+        
+        private final Window window;
+        private final double[] quantiles;
+        private final double[] results;
+        private final SketchVisitor downstream;
+        private final QuantileSketch mergedQuantiles = new QuantileSketch();
+        private final HyperLogLog mergedDistinct = new HyperLogLog();
+        private long current = Long.MIN_VALUE;
+        private long count;
+        private boolean hasDistinct;
+        
+        private SketchRebucket(Window window, double[] quantiles, SketchVisitor downstream) {
+            this.window = window;
+            this.quantiles = quantiles;
+            this.results = new double[quantiles.length];
+            this.downstream = downstream;
+        }
+        
+        @Override
+        public void accept(long bucketStart, long bucketCount, QuantileSketch bucketQuantiles, HyperLogLog bucketDistinct) {
+            long target = window.bucketStart(bucketStart);
+            if (target != current) {
+                flush();
+                current = target;
+            }
+            count += bucketCount;
+            if (bucketQuantiles != null) {
+                mergedQuantiles.merge(bucketQuantiles);
+            }
+            if (bucketDistinct != null) {
+                mergedDistinct.merge(bucketDistinct);
+                hasDistinct = true;
+            }
+        }
+        
+        void flush() {
+            if (count == 0) {
+                return;
+            }
+            for (int i = 0; i < quantiles.length; i++) {
+                results[i] = mergedQuantiles.quantile(quantiles[i]);
+            }
+            downstream.accept(current, count, results, hasDistinct ? mergedDistinct.estimate() : -1);
+            mergedQuantiles.clear();
+            mergedDistinct.clear();
+            hasDistinct = false;
+            count = 0;
+        }
+    }
+}
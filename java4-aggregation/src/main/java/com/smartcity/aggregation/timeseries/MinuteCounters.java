@@ -0,0 +1,103 @@
+package com.smartcity.aggregation.timeseries;
+
+import java.util.Arrays;
+
+// Per-minute counters over a ring of the last `minutes` minutes, one Fenwick tree per column,
+// so the total of any column over any minute range is two prefix sums: O(log n) whatever the
+// span. The ring advances with the newest minute added; the slots it moves past are cleared
+// by subtracting their value, and minutes older than the ring are dropped. Not thread-safe.
+public final class MinuteCounters {
+    
+    private final int minutes;
+    private long[][] trees;
+    private long headMinute = Long.MIN_VALUE;
+    
+    public MinuteCounters(int minutes, int columns) {
+        this.minutes = minutes;
+        this.trees = new long[columns][];
+        for (int column = 0; column < columns; column++) {
+            trees[column] = new long[minutes + 1];
+        }
+    }
+    
+    public int columns() {
+        return trees.length;
+    }
+    
+    // New columns start empty
+    public void addColumn() {
+        trees = Arrays.copyOf(trees, trees.length + 1);
+        trees[trees.length - 1] = new long[minutes + 1];
+    }
+    
+    // Returns false when the minute is older than the ring holds
+    public boolean add(long epochMinute, int column, long delta) {
+        if (headMinute == Long.MIN_VALUE) {
+            headMinute = epochMinute;
+        } else if (epochMinute > headMinute) {
+            advanceTo(epochMinute);
+        } else if (epochMinute <= headMinute - minutes) {
+            return false;
+        }
+        update(trees[column], slot(epochMinute), delta);
+        return true;
+    }
+    
+    // Inclusive minute range; minutes outside the ring count as zero
+    public long sum(int column, long fromMinute, long toMinute) {
+        if (headMinute == Long.MIN_VALUE) {
+            return 0;
+        }
+        long from = Math.max(fromMinute, headMinute - minutes + 1);
+        long to = Math.min(toMinute, headMinute);
+        if (from > to) {
+            return 0;
+        }
+        long[] tree = trees[column];
+        int first = slot(from);
+        int last = slot(to);
+        if (first <= last) {
+            return prefix(tree, last) - prefix(tree, first - 1);
+        }
+        // The range wraps around the end of the ring
+        return prefix(tree, minutes - 1) - prefix(tree, first - 1) + prefix(tree, last);
+    }
+    
+    private void advanceTo(long epochMinute) {
+        if (epochMinute - headMinute >= minutes) {
+            for (long[] tree : trees) {
+                Arrays.fill(tree, 0L);
+            }
+        } else {
+            for (long minute = headMinute + 1; minute <= epochMinute; minute++) {
+                int slot = slot(minute);
+                for (long[] tree : trees) {
+                    long stale = prefix(tree, slot) - prefix(tree, slot - 1);
+                    if (stale != 0) {
+                        update(tree, slot, -stale);
+                    }
+                }
+            }
+        }
+        headMinute = epochMinute;
+    }
+    
+    private int slot(long epochMinute) {
+        return (int) Math.floorMod(epochMinute, (long) minutes);
+    }
+    
+    private static void update(long[] tree, int slot, long delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+    
+    // Sum of slots 0..slot; zero for slot -1
+    private static long prefix(long[] tree, int slot) {
+        long sum = 0;
+        for (int i = slot + 1; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,7 @@
+package com.smartcity.aggregation.timeseries;
+
+// Receives raw samples as primitives so range scans never box
+@FunctionalInterface
+public interface PointVisitor {
+    void accept(long timestamp, double value);
+}
@@ -0,0 +1,221 @@
+package com.smartcity.aggregation.timeseries;
+
+import java.util.Arrays;
+
+// DDSketch-style quantile sketch: values are counted in logarithmic bins of relative width
+// 2 * RELATIVE_ACCURACY, so a quantile comes back within 2% of the true value. Positive and
+// negative values have separate bin stores of at most MAX_BINS bins, which at 2% span a ratio
+// of about 170 between the smallest and largest magnitude. A value outside that span
+// collapses the sketch: adjacent bins are merged pairwise in both stores, which squares the
+// bin ratio and about doubles the error (relativeAccuracy()). So quantiles are within 2% over
+// a 170x range, 4% over 3e4 and 8% over 8e8, evenly across all quantiles, and a sketch never
+// holds more than MAX_BYTES of counters. Sketches merge exactly, across buckets or across
+// nodes; the finer of two sketches is collapsed to the coarser one's bins first.
+final class QuantileSketch {
+    
+    static final double RELATIVE_ACCURACY = 0.02;
+    static final int MAX_BINS = 128;
+    static final int MAX_BYTES = 2 * MAX_BINS * Integer.BYTES;
+    
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_MAGNITUDE = 1e-9;
+    
+    private final BinStore positive = new BinStore();
+    private final BinStore negative = new BinStore();
+    private long zeros;
+    // Times the bins were collapsed: bin j holds the base indexes i with ceil(i / 2^level) == j
+    private int level;
+    
+    void add(double value) {
+        if (value > MIN_MAGNITUDE) {
+            add(positive, coarsen(index(value), level), 1);
+        } else if (value < -MIN_MAGNITUDE) {
+            add(negative, coarsen(index(-value), level), 1);
+        } else if (!Double.isNaN(value)) {
+            zeros++;
+        }
+    }
+    
+    void merge(QuantileSketch other) {
+        while (level < other.level) {
+            collapse();
+        }
+        merge(positive, other.positive, other.level);
+        merge(negative, other.negative, other.level);
+        zeros += other.zeros;
+    }
+    
+    void clear() {
+        positive.clear();
+        negative.clear();
+        zeros = 0;
+        level = 0;
+    }
+    
+    long count() {
+        return positive.total + negative.total + zeros;
+    }
+    
+    // Relative error of the quantiles at the current bin width
+    double relativeAccuracy() {
+        double gamma = binRatio();
+        return (gamma - 1) / (gamma + 1);
+    }
+    
+    // Bytes held by the bin arrays, at most MAX_BYTES
+    int sizeBytes() {
+        return (positive.capacity() + negative.capacity()) * Integer.BYTES;
+    }
+    
+    // q in [0, 1]; NaN when empty
+    double quantile(double q) {
+        long count = count();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (Math.min(1.0, Math.max(0.0, q)) * (count - 1));
+        if (rank < negative.total) {
+            // Most negative first, i.e. the negative store from its largest magnitude down
+            return -value(negative.indexAtRank(negative.total - 1 - rank));
+        }
+        rank -= negative.total;
+        if (rank < zeros) {
+            return 0.0;
+        }
+        return value(positive.indexAtRank(rank - zeros));
+    }
+    
+    // index is already at the current level
+    private void add(BinStore store, int index, long count) {
+        while (!store.fits(index)) {
+            collapse();
+            index = coarsen(index, 1);
+        }
+        store.add(index, count);
+    }
+    
+    private void merge(BinStore into, BinStore from, int fromLevel) {
+        if (from.total == 0) {
+            return;
+        }
+        for (int i = from.minIndex; i <= from.maxIndex; i++) {
+            int count = from.bins[i - from.offset];
+            if (count != 0) {
+                // level can rise while merging, so the shift is taken per bin
+                add(into, coarsen(i, level - fromLevel), count);
+            }
+        }
+    }
+    
+    private void collapse() {
+        level++;
+        positive.collapse();
+        negative.collapse();
+    }
+    
+    private double binRatio() {
+        return Math.exp(LOG_GAMMA * (1 << level));
+    }
+    
+    private double value(int index) {
+        double gamma = binRatio();
+        return 2 * Math.exp(LOG_GAMMA * (1 << level) * index) / (gamma + 1);
+    }
+    
+    private static int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+    
+    // ceil(index / 2^levels)
+    private static int coarsen(int index, int levels) {
+        return -Math.floorDiv(-index, 1 << levels);
+    }
+    
+    // Counts for the contiguous bin indexes [offset, offset + bins.length), allocated lazily
+    // and grown up to MAX_BINS
+    private static final class BinStore {
+        
+        private static final int INITIAL_BINS = 8;
+        
+        private int[] bins;
+        private int offset;
+        private int minIndex;
+        private int maxIndex;
+        private long total;
+        
+        boolean fits(int index) {
+            return total == 0 || Math.max(maxIndex, index) - Math.min(minIndex, index) < MAX_BINS;
+        }
+        
+        // Callers check fits(index) first
+        void add(int index, long count) {
+            if (total == 0) {
+                if (bins == null) {
+                    bins = new int[INITIAL_BINS];
+                }
+                offset = index - bins.length / 2;
+                minIndex = index;
+                maxIndex = index;
+            }
+            int low = Math.min(minIndex, index);
+            int high = Math.max(maxIndex, index);
+            if (low < offset || high >= offset + bins.length) {
+                resize(low, high, 0);
+            }
+            bins[index - offset] += (int) count;
+            minIndex = low;
+            maxIndex = high;
+            total += count;
+        }
+        
+        // Merges bins 2j - 1 and 2j into bin j
+        void collapse() {
+            if (total == 0) {
+                return;
+            }
+            int low = coarsen(minIndex, 1);
+            int high = coarsen(maxIndex, 1);
+            resize(low, high, 1);
+            minIndex = low;
+            maxIndex = high;
+        }
+        
+        void clear() {
+            if (bins != null) {
+                Arrays.fill(bins, 0);
+            }
+            total = 0;
+        }
+        
+        int capacity() {
+            return bins == null ? 0 : bins.length;
+        }
+        
+        int indexAtRank(long rank) {
+            long seen = 0;
+            for (int i = minIndex; i <= maxIndex; i++) {
+                seen += bins[i - offset];
+                if (seen > rank) {
+                    return i;
+                }
+            }
+            return maxIndex;
+        }
+        
+        // Re-homes the populated bins, coarsened by levels, into an array covering [low, high]
+        private void resize(int low, int high, int levels) {
+            int span = high - low + 1;
+            int capacity = Math.min(MAX_BINS, Math.max(span + span / 2, INITIAL_BINS));
+            int nextOffset = low - (capacity - span) / 2;
+            int[] next = new int[capacity];
+            if (total > 0) {
+                for (int i = minIndex; i <= maxIndex; i++) {
+                    next[coarsen(i, levels) - nextOffset] += bins[i - offset];
+                }
+            }
+            bins = next;
+            offset = nextOffset;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.smartcity.aggregation.timeseries;
+
+// Most recent raw samples of one metric in two parallel primitive arrays. Samples are kept in
+// timestamp order; the oldest is overwritten once the ring is full.
+final class RawRing {
+    
+    private final long[] timestamps;
+    private final double[] values;
+    private int head;
+    private int size;
+    
+    RawRing(int capacity) {
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+    }
+    
+    // Returns false for a sample older than the newest one held; the ring stays sorted
+    boolean add(long timestamp, double value) {
+        if (size > 0 && timestamp < timestamps[physical(size - 1)]) {
+            return false;
+        }
+        int slot;
+        if (size < timestamps.length) {
+            slot = physical(size++);
+        } else {
+            slot = head;
+            head = (head + 1) % timestamps.length;
+        }
+        timestamps[slot] = timestamp;
+        values[slot] = value;
+        return true;
+    }
+    
+    // Visits samples with from <= timestamp < to in time order
+    void scan(long from, long to, PointVisitor visitor) {
+        for (int i = lowerBound(from); i < size; i++) {
+            int slot = physical(i);
+            if (timestamps[slot] >= to) {
+                return;
+            }
+            visitor.accept(timestamps[slot], values[slot]);
+        }
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[physical(mid)] < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private int physical(int logical) {
+        int slot = head + logical;
+        return slot < timestamps.length ? slot : slot - timestamps.length;
+    }
+}
@@ -0,0 +1,9 @@
+package com.smartcity.aggregation.timeseries;
+
+// Receives one window bucket of sketch results. quantiles[i] answers the i-th requested
+// quantile (NaN when the bucket has no values); distinct is -1 when nothing was counted.
+// The array is reused between calls.
+@FunctionalInterface
+public interface SketchVisitor {
+    void accept(long bucketStart, long count, double[] quantiles, long distinct);
+}
@@ -0,0 +1,137 @@
+package com.smartcity.aggregation.timeseries;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Embedded time-series store for dashboard metrics. Each metric keeps a bounded ring of raw
+// samples and 1m/1h/1d rollup tiers in primitive arrays, each tier sized from its retention,
+// so a range query is a binary search plus a sequential scan of the coarsest usable tier.
+// Metric names come from event data, so the number of series is capped at max-series; a
+// sample for a new name past the cap is recorded under an overflow series instead. With the
+// default tiers a series takes about 420 KB up front (160 KB raw ring, 255 KB of bucket
+// columns). Each of its 2890 hour and day buckets can add a quantile sketch of at most 1 KB of
+// bins and a HyperLogLog of 1 KB of registers, about 2.2 KB with object headers, so up to
+// 6.4 MB more per series and roughly max-series x 6.8 MB for the store. sketchBytes in the
+// stats counts the bins and registers actually held.
+@Component
+public class TimeSeriesStore {
+    
+    public static final String OVERFLOW_METRIC = "other";
+    
+    private final Map<String, MetricSeries> series = new ConcurrentHashMap<>();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final int maxSeries;
+    private final int rawCapacity;
+    private final int minuteBuckets;
+    private final int hourBuckets;
+    private final int dayBuckets;
+    
+    public TimeSeriesStore(@Value("${aggregation.timeseries.max-series:256}") int maxSeries,
+                           @Value("${aggregation.timeseries.raw-capacity:10000}") int rawCapacity,
+                           @Value("${aggregation.timeseries.tiers.minute-retention-hours:48}") int minuteRetentionHours,
+                           @Value("${aggregation.timeseries.tiers.hour-retention-days:90}") int hourRetentionDays,
+                           @Value("${aggregation.timeseries.tiers.day-retention-days:730}") int dayRetentionDays) {
+        this.maxSeries = Math.max(1, maxSeries);
+        this.rawCapacity = rawCapacity;
+        this.minuteBuckets = Math.max(1, minuteRetentionHours * 60);
+        this.hourBuckets = Math.max(1, hourRetentionDays * 24);
+        this.dayBuckets = Math.max(1, dayRetentionDays);
+    }
+    
+    public void record(String metricName, long timestamp, double value) {
+        record(metricName, timestamp, value, 0L);
+    }
+    
+    // distinctHash identifies the reporting source (see HyperLogLog.hash), 0 for none
+    public void record(String metricName, long timestamp, double value, long distinctHash) {
+        series(admit(metricName, OVERFLOW_METRIC)).record(timestamp, value, distinctHash);
+    }
+    
+    // The name samples for metricName are kept under: itself if it exists or there is room
+    // for another series, otherwise overflowName. Overflow series are created past the cap,
+    // so callers should only use a fixed handful of them.
+    public String admit(String metricName, String overflowName) {
+        if (series.containsKey(metricName)) {
+            return metricName;
+        }
+        synchronized (series) {
+            if (series.containsKey(metricName)) {
+                return metricName;
+            }
+            if (series.size() >= maxSeries) {
+                overflowed.incrementAndGet();
+                return overflowName;
+            }
+            series(metricName);
+            return metricName;
+        }
+    }
+    
+    // Returns the tier that answered, or null when the metric has never been recorded
+    public Window scan(String metricName, Window window, long from, long to, BucketVisitor visitor) {
+        MetricSeries metric = series.get(metricName);
+        if (metric == null) {
+            return null;
+        }
+        return metric.scan(window, from, to, visitor);
+    }
+    
+    // Quantiles and distinct counts per window bucket; null when the metric is unknown
+    public Window scanSketches(String metricName, Window window, long from, long to,
+                               double[] quantiles, SketchVisitor visitor) {
+        MetricSeries metric = series.get(metricName);
+        if (metric == null) {
+            return null;
+        }
+        return metric.scanSketches(window, from, to, quantiles, visitor);
+    }
+    
+    public static Window finestSketchWindow() {
+        return MetricSeries.finestSketchWindow();
+    }
+    
+    public boolean scanRaw(String metricName, long from, long to, PointVisitor visitor) {
+        MetricSeries metric = series.get(metricName);
+        if (metric == null) {
+            return false;
+        }
+        metric.scanRaw(from, to, visitor);
+        return true;
+    }
+    
+    // Unchecked against the cap; callers go through admit first
+    MetricSeries series(String metricName) {
+        return series.computeIfAbsent(metricName, name ->
+                new MetricSeries(rawCapacity, minuteBuckets, hourBuckets, dayBuckets));
+    }
+    
+    public Set<String> getMetricNames() {
+        return new TreeSet<>(series.keySet());
+    }
+    
+    public Map<String, Object> getStats() {
+        long rawSamples = 0;
+        long late = 0;
+        long sketchBytes = 0;
+        for (MetricSeries metric : series.values()) {
+            rawSamples += metric.rawSize();
+            late += metric.late();
+            sketchBytes += metric.sketchBytes();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("metrics", series.size());
+        stats.put("maxSeries", maxSeries);
+        stats.put("overflowedSamples", overflowed.get());
+        stats.put("rawSamples", rawSamples);
+        stats.put("lateSamples", late);
+        stats.put("sketchBytes", sketchBytes);
+        return stats;
+    }
+}
@@ -0,0 +1,104 @@
+package com.smartcity.aggregation.timeseries;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.IsoFields;
+import java.util.Locale;
+
+// Bucket widths accepted by the windowSize query parameter, finest first. MINUTE, HOUR and
+// DAY are also the stored rollup tiers. Bucket boundaries are UTC; weeks start on Monday
+// and months on the 1st, so every boundary of a window is also a boundary of finer windows.
+public enum Window {
+    RAW,
+    MINUTE,
+    HOUR,
+    DAY,
+    WEEK,
+    MONTH;
+    
+    static final long MINUTE_MS = 60_000L;
+    static final long HOUR_MS = 60 * MINUTE_MS;
+    static final long DAY_MS = 24 * HOUR_MS;
+    
+    private static final DateTimeFormatter HOUR_LABEL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00");
+    private static final DateTimeFormatter MINUTE_LABEL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final DateTimeFormatter RAW_LABEL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    public static Window parse(String windowSize) {
+        try {
+            return valueOf(windowSize.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    public long bucketStart(long epochMs) {
+        switch (this) {
+            case MINUTE:
+                return Math.floorDiv(epochMs, MINUTE_MS) * MINUTE_MS;
+            case HOUR:
+                return Math.floorDiv(epochMs, HOUR_MS) * HOUR_MS;
+            case DAY:
+                return Math.floorDiv(epochMs, DAY_MS) * DAY_MS;
+            case WEEK: {
+                // Epoch day 0 was a Thursday
+                long day = Math.floorDiv(epochMs, DAY_MS);
+                return (day - Math.floorMod(day + 3, 7)) * DAY_MS;
+            }
+            case MONTH: {
+                LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(epochMs, DAY_MS));
+                return date.withDayOfMonth(1).toEpochDay() * DAY_MS;
+            }
+            default:
+                return epochMs;
+        }
+    }
+    
+    public String label(long bucketStart) {
+        LocalDateTime start = toDateTime(bucketStart);
+        switch (this) {
+            case MINUTE:
+                return start.format(MINUTE_LABEL);
+            case HOUR:
+                return start.format(HOUR_LABEL);
+            case DAY:
+                return start.toLocalDate().toString();
+            case WEEK:
+                return String.format("%d-W%02d", start.get(IsoFields.WEEK_BASED_YEAR),
+                        start.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            case MONTH:
+                return String.format("%d-%02d", start.getYear(), start.getMonthValue());
+            default:
+                return start.format(RAW_LABEL);
+        }
+    }
+    
+    // Bucket width as shown to API clients
+    public String resolution() {
+        switch (this) {
+            case MINUTE:
+                return "1m";
+            case HOUR:
+                return "1h";
+            case DAY:
+                return "1d";
+            case WEEK:
+                return "1w";
+            case MONTH:
+                return "1mo";
+            default:
+                return "raw";
+        }
+    }
+    
+    public static long toEpochMs(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+    
+    public static LocalDateTime toDateTime(long epochMs) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMs, 1000L),
+                (int) Math.floorMod(epochMs, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+}
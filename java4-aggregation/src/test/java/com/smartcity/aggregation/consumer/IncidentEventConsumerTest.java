@@ -0,0 +1,97 @@
+package com.smartcity.aggregation.consumer;
+
+import com.smartcity.aggregation.service.DashboardSnapshotCache;
+import com.smartcity.aggregation.service.IncidentKpiTracker;
+import com.smartcity.aggregation.service.RecentIncidentIndex;
+import com.smartcity.aggregation.timeseries.EventMetricsRecorder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.kafka.KafkaAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The listener against a real broker, with the consumer settings from application.yml: values
+// are JSON without type headers, as event-processing-service publishes them, and a record that
+// cannot be decoded must not stop the ones after it.
+@SpringBootTest(
+        classes = {IncidentEventConsumer.class, IncidentKpiTracker.class, KafkaAutoConfiguration.class},
+        properties = {
+                "spring.kafka.bootstrap-servers=${spring.embedded.kafka.brokers}",
+                "spring.kafka.producer.value-serializer=org.springframework.kafka.support.serializer.JsonSerializer",
+                "spring.kafka.producer.properties.spring.json.add.type.headers=false"
+        })
+@EmbeddedKafka(partitions = 1, topics = "smartcity-events")
+class IncidentEventConsumerTest {
+    
+    private static final String TOPIC = "smartcity-events";
+    
+    @MockBean
+    private RecentIncidentIndex recentIncidentIndex;
+    
+    @MockBean
+    private EventMetricsRecorder metricsRecorder;
+    
+    @MockBean
+    private DashboardSnapshotCache dashboardSnapshotCache;
+    
+    @Autowired
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    
+    @Autowired
+    private IncidentKpiTracker kpiTracker;
+    
+    @Test
+    void incidentsOnTheTopicReachTheKpis() throws InterruptedException {
+        kafkaTemplate.send(TOPIC, "a", event("a", "emergency", "low", "open"));
+        kafkaTemplate.send(TOPIC, "b", event("b", "traffic", "critical", "open"));
+        // Not an incident under the event-processing-service rule
+        kafkaTemplate.send(TOPIC, "c", event("c", "traffic", "low", "open"));
+        kafkaTemplate.send(TOPIC, "x", "not an event");
+        kafkaTemplate.send(TOPIC, "a", event("a", "emergency", "low", "in-progress"));
+        kafkaTemplate.send(TOPIC, "a", event("a", "emergency", "low", "in-progress"));
+        kafkaTemplate.send(TOPIC, "d", event("d", "pollution", "high", "resolved"));
+        kafkaTemplate.flush();
+        
+        assertTrue(await(() -> kpiTracker.current().getResolved() == 1, Duration.ofSeconds(30)),
+                "events were not consumed");
+        IncidentKpiTracker.Snapshot snapshot = kpiTracker.current();
+        assertEquals(3, snapshot.getTotal());
+        assertEquals(1, snapshot.getOpen());
+        assertEquals(1, snapshot.getInProgress());
+        assertEquals(1, snapshot.getResolved());
+        assertEquals(Map.of("emergency", 1, "traffic", 1, "pollution", 1), snapshot.getByType());
+    }
+    
+    private static Map<String, Object> event(String id, String type, String severity, String status) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("eventId", id);
+        event.put("eventType", type);
+        event.put("source", "sensor");
+        event.put("severity", severity);
+        event.put("status", status);
+        event.put("eventTimestamp", "2025-03-14T09:26:53");
+        event.put("version", "1.0");
+        return event;
+    }
+    
+    private static boolean await(BooleanSupplier condition, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+}
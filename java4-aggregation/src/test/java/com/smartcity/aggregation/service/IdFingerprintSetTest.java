@@ -0,0 +1,40 @@
+package com.smartcity.aggregation.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdFingerprintSetTest {
+    
+    @Test
+    void remembersAtLeastTheLastCapacityIds() {
+        IdFingerprintSet set = new IdFingerprintSet(1000);
+        for (int i = 0; i < 10_000; i++) {
+            set.add("incident-" + i);
+        }
+        
+        for (int i = 9_000; i < 10_000; i++) {
+            assertTrue(set.contains("incident-" + i), "incident-" + i);
+        }
+        // Two generations back is gone
+        for (int i = 0; i < 8_000; i++) {
+            assertFalse(set.contains("incident-" + i), "incident-" + i);
+        }
+    }
+    
+    @Test
+    void addingAgainKeepsAnIdInTheNewestGeneration() {
+        IdFingerprintSet set = new IdFingerprintSet(100);
+        set.add("kept");
+        for (int i = 0; i < 1_000; i++) {
+            set.add("filler-" + i);
+            if (i % 50 == 0) {
+                set.add("kept");
+            }
+        }
+        
+        assertTrue(set.contains("kept"));
+        assertFalse(set.contains("never-added"));
+    }
+}
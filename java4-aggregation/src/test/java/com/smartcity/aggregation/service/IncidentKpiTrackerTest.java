@@ -0,0 +1,105 @@
+package com.smartcity.aggregation.service;
+
+import com.smartcity.aggregation.dto.IncidentEventDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncidentKpiTrackerTest {
+    
+    private final LocalDateTime now = LocalDateTime.now().withNano(0);
+    
+    @Test
+    void onlyIncidentsOpenNewEntries() {
+        IncidentKpiTracker tracker = new IncidentKpiTracker(100, 1, 100);
+        
+        tracker.apply(List.of(
+                event("a", "emergency", "low", "open"),
+                event("b", "traffic", "critical", "open"),
+                event("c", "pollution", "high", "in-progress"),
+                event("d", "traffic", "low", "open"),
+                event("e", "infrastructure", "medium", "open")));
+        
+        IncidentKpiTracker.Snapshot snapshot = tracker.current();
+        assertEquals(3, snapshot.getTotal());
+        assertEquals(2, snapshot.getOpen());
+        assertEquals(1, snapshot.getInProgress());
+        assertEquals(Map.of("emergency", 1, "traffic", 1, "pollution", 1), snapshot.getByType());
+        assertFalse(IncidentKpiTracker.isIncident(event("d", "traffic", "low", "open")));
+        assertTrue(IncidentKpiTracker.isIncident(event("b", "traffic", "critical", "open")));
+    }
+    
+    @Test
+    void statusUpdatesMoveIncidentsBetweenCounters() {
+        IncidentKpiTracker tracker = new IncidentKpiTracker(100, 1, 100);
+        
+        tracker.apply(List.of(event("a", "emergency", "high", "open")));
+        // Updates reuse the id and count whatever their severity
+        tracker.apply(List.of(event("a", "emergency", "low", "in-progress")));
+        tracker.apply(List.of(event("a", "emergency", "low", "in-progress")));
+        tracker.apply(List.of(event("a", "emergency", "low", "resolved")));
+        
+        IncidentKpiTracker.Snapshot snapshot = tracker.current();
+        assertEquals(1, snapshot.getTotal());
+        assertEquals(0, snapshot.getOpen());
+        assertEquals(0, snapshot.getInProgress());
+        assertEquals(1, snapshot.getResolved());
+        
+        // Each transition is counted once in the window; the redelivered update adds nothing
+        IncidentKpiTracker.Snapshot window = tracker.countBetween(now.minusMinutes(5), now.plusMinutes(1));
+        assertEquals(1, window.getTotal());
+        assertEquals(1, window.getOpen());
+        assertEquals(1, window.getInProgress());
+        assertEquals(1, window.getResolved());
+    }
+    
+    @Test
+    void trimmedIncidentsAreNotCountedAgain() {
+        IncidentKpiTracker tracker = new IncidentKpiTracker(2, 1, 100);
+        
+        tracker.apply(List.of(
+                event("a", "emergency", "high", "open"),
+                event("b", "emergency", "high", "open"),
+                event("c", "emergency", "high", "open")));
+        assertEquals(3, tracker.current().getTotal());
+        
+        // "a" was trimmed; its update is ignored rather than opening a second incident
+        tracker.apply(List.of(event("a", "emergency", "high", "resolved")));
+        IncidentKpiTracker.Snapshot snapshot = tracker.current();
+        assertEquals(3, snapshot.getTotal());
+        assertEquals(3, snapshot.getOpen());
+        assertEquals(0, snapshot.getResolved());
+        
+        // Tracked ones still move
+        tracker.apply(List.of(event("c", "emergency", "high", "resolved")));
+        assertEquals(2, tracker.current().getOpen());
+        assertEquals(1, tracker.current().getResolved());
+    }
+    
+    @Test
+    void undecodableRecordsAreSkipped() {
+        IncidentKpiTracker tracker = new IncidentKpiTracker(100, 1, 100);
+        
+        tracker.apply(Arrays.asList(null, event(null, "emergency", "high", "open"),
+                event("a", "emergency", "high", "open")));
+        
+        assertEquals(1, tracker.current().getTotal());
+    }
+    
+    private IncidentEventDTO event(String id, String type, String severity, String status) {
+        return IncidentEventDTO.builder()
+                .eventId(id)
+                .eventType(type)
+                .severity(severity)
+                .status(status)
+                .eventTimestamp(now)
+                .build();
+    }
+}
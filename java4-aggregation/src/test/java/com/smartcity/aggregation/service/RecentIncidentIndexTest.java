@@ -0,0 +1,101 @@
+package com.smartcity.aggregation.service;
+
+import com.smartcity.aggregation.dto.IncidentEventDTO;
+import com.smartcity.aggregation.dto.IncidentSummaryDTO;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class RecentIncidentIndexTest {
+    
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+    
+    @Test
+    void burstOfOneTypeKeepsTheOthersAtTheirFloor() {
+        RecentIncidentIndex index = new RecentIncidentIndex(10, 2);
+        
+        index.apply(List.of(event("fire-1", "fire", 0), event("fire-2", "fire", 1), event("flood-1", "flood", 2)));
+        List<IncidentEventDTO> burst = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            burst.add(event("traffic-" + i, "traffic", 10 + i));
+        }
+        index.apply(burst);
+        
+        assertEquals(10, index.getStats().get("tracked"));
+        Map<String, List<IncidentSummaryDTO>> byType = index.topByType(10);
+        assertEquals(2, byType.get("fire").size());
+        assertEquals(1, byType.get("flood").size());
+        assertEquals(7, byType.get("traffic").size());
+        assertEquals("traffic-99", byType.get("traffic").get(0).getId());
+        assertEquals("traffic-93", byType.get("traffic").get(6).getId());
+    }
+    
+    @Test
+    void maxTrackedHoldsWhenTypesAtTheFloorExceedIt() {
+        RecentIncidentIndex index = new RecentIncidentIndex(10, 5);
+        
+        List<IncidentEventDTO> events = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            events.add(event("e-" + i, "type-" + (i % 8), i));
+        }
+        index.apply(events);
+        
+        assertEquals(10, index.getStats().get("tracked"));
+        List<IncidentSummaryDTO> newest = index.query(null, null, null, 100);
+        assertEquals(10, newest.size());
+        assertEquals("e-39", newest.get(0).getId());
+        assertEquals("e-30", newest.get(9).getId());
+    }
+    
+    @Test
+    void typeChangeMovesAnIncidentBetweenFloors() {
+        RecentIncidentIndex index = new RecentIncidentIndex(3, 1);
+        
+        index.apply(List.of(event("a", "fire", 0), event("b", "fire", 1), event("c", "flood", 2)));
+        // a turns into a flood; fire is then down to its floor, so a is the oldest evictable incident
+        index.apply(List.of(event("a", "flood", 0), event("d", "flood", 3)));
+        
+        Map<String, List<IncidentSummaryDTO>> byType = index.topByType(10);
+        assertEquals(List.of("b"), ids(byType.get("fire")));
+        assertEquals(List.of("d", "c"), ids(byType.get("flood")));
+    }
+    
+    @Test
+    void futureDatedIncidentDoesNotStayFirst() throws InterruptedException {
+        RecentIncidentIndex index = new RecentIncidentIndex(10, 2);
+        
+        index.apply(List.of(event("ahead", "fire", LocalDateTime.of(2100, 1, 1, 0, 0))));
+        LocalDateTime applied = LocalDateTime.now(ZoneOffset.UTC);
+        Thread.sleep(5);
+        index.apply(List.of(event("fresh", "fire", LocalDateTime.now(ZoneOffset.UTC))));
+        
+        List<IncidentSummaryDTO> newest = index.query(null, null, null, 10);
+        assertEquals(List.of("fresh", "ahead"), ids(newest));
+        assertFalse(newest.get(1).getTimestamp().isAfter(applied));
+    }
+    
+    private static List<String> ids(List<IncidentSummaryDTO> incidents) {
+        return incidents.stream().map(IncidentSummaryDTO::getId).toList();
+    }
+    
+    private IncidentEventDTO event(String id, String type, int minute) {
+        return event(id, type, start.plusMinutes(minute));
+    }
+    
+    private static IncidentEventDTO event(String id, String type, LocalDateTime timestamp) {
+        return IncidentEventDTO.builder()
+                .eventId(id)
+                .eventType(type)
+                .severity("high")
+                .status("open")
+                .eventTimestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,66 @@
+package com.smartcity.aggregation.timeseries;
+
+import com.smartcity.aggregation.dto.IncidentEventDTO;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventMetricsRecorderTest {
+    
+    private final TimeSeriesStore store = new TimeSeriesStore(16, 1_000, 1, 1, 1);
+    private final MetricSegmentStorage storage = new MetricSegmentStorage(store, false, "unused", 3_600_000L,
+            1L << 26, 1L << 28, 1, 4, 600_000L);
+    private final EventMetricsRecorder recorder = new EventMetricsRecorder(store, storage);
+    private long offset;
+    
+    @Test
+    void futureDatedEventDoesNotBlockLaterSamples() {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        
+        recorder.record(List.of(record(event(now.plusYears(1), 500))));
+        recorder.record(List.of(
+                record(event(now.minusMinutes(3), 40)),
+                record(event(now.minusMinutes(2), 41)),
+                record(event(now.minusMinutes(1), 42))));
+        
+        List<Double> values = new ArrayList<>();
+        store.scanRaw("pollution.aqi", Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> values.add(value));
+        assertEquals(List.of(40.0, 41.0, 42.0), values);
+        assertEquals(0L, store.getStats().get("lateSamples"));
+    }
+    
+    @Test
+    void slightlyFastClockIsTakenAsNow() {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        
+        recorder.record(List.of(record(event(now.plusMinutes(2), 7))));
+        long recordedBy = System.currentTimeMillis();
+        
+        List<Long> timestamps = new ArrayList<>();
+        store.scanRaw("pollution.aqi", Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> timestamps.add(timestamp));
+        assertEquals(1, timestamps.size());
+        assertTrue(timestamps.get(0) <= recordedBy);
+    }
+    
+    private IncidentEventDTO event(LocalDateTime timestamp, double aqi) {
+        return IncidentEventDTO.builder()
+                .eventId("e" + offset)
+                .eventType("pollution")
+                .source("sensor")
+                .eventTimestamp(timestamp)
+                .normalizedData(Map.of("aqi", aqi))
+                .build();
+    }
+    
+    private ConsumerRecord<String, IncidentEventDTO> record(IncidentEventDTO event) {
+        return new ConsumerRecord<>("smartcity-events", 0, offset++, event.getEventId(), event);
+    }
+}
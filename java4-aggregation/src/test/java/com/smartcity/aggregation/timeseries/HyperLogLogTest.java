@@ -0,0 +1,55 @@
+package com.smartcity.aggregation.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class HyperLogLogTest {
+    
+    @Test
+    void estimatesAreWithinAFewStandardErrors() {
+        for (int distinct : new int[]{10, 100, 1_000, 10_000, 100_000}) {
+            HyperLogLog counter = new HyperLogLog();
+            for (int i = 0; i < distinct; i++) {
+                counter.add(HyperLogLog.hash("sensor-" + i));
+                // Repeats change nothing
+                counter.add(HyperLogLog.hash("sensor-" + i));
+            }
+            
+            assertEquals(distinct, counter.estimate(), distinct * 0.1 + 1, "distinct " + distinct);
+        }
+    }
+    
+    @Test
+    void mergeCountsTheUnion() {
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            left.add(HyperLogLog.hash("device:" + i));
+        }
+        for (int i = 20_000; i < 50_000; i++) {
+            right.add(HyperLogLog.hash("device:" + i));
+        }
+        
+        left.merge(right);
+        
+        assertEquals(50_000, left.estimate(), 5_000);
+    }
+    
+    @Test
+    void clearedCounterIsEmpty() {
+        HyperLogLog counter = new HyperLogLog();
+        counter.add(HyperLogLog.hash("a"));
+        
+        counter.clear();
+        
+        assertEquals(0, counter.estimate());
+    }
+    
+    @Test
+    void hashIsNeverZero() {
+        assertNotEquals(0, HyperLogLog.hash(""));
+        assertNotEquals(HyperLogLog.hash("deviceId:1"), HyperLogLog.hash("deviceId:2"));
+    }
+}
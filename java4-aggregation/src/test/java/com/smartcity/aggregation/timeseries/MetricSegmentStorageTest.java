@@ -0,0 +1,202 @@
+package com.smartcity.aggregation.timeseries;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricSegmentStorageTest {
+    
+    private static final long HOUR_MS = 3_600_000;
+    private static final long DAY_MS = 24 * HOUR_MS;
+    
+    @TempDir
+    Path dir;
+    
+    private final long today = Math.floorDiv(System.currentTimeMillis(), DAY_MS) * DAY_MS;
+    private final List<MetricSegmentStorage> storages = new ArrayList<>();
+    private TimeSeriesStore store;
+    
+    @AfterEach
+    void tearDown() throws IOException {
+        for (MetricSegmentStorage storage : storages) {
+            storage.stop();
+        }
+    }
+    
+    @Test
+    void uncommittedTailIsDiscardedAndTruncated() throws IOException {
+        MetricSegmentStorage storage = start(1L << 26);
+        for (int i = 0; i < 10; i++) {
+            storage.append("m", today - DAY_MS + i, i, 0L);
+        }
+        storage.commit(Map.of(0, 10L));
+        storage.stop();
+        Path segment = segments().get(0);
+        long committedSize = Files.size(segment);
+        // A crash mid-batch: whole samples without their checkpoint, then half a record
+        ByteBuffer torn = ByteBuffer.allocate(28 * 2 + 13);
+        torn.putInt(0).putLong(today - DAY_MS + 10).putDouble(10).putLong(0L);
+        torn.putInt(0).putLong(today - DAY_MS + 11).putDouble(11).putLong(0L);
+        Files.write(segment, torn.array(), StandardOpenOption.APPEND);
+        
+        MetricSegmentStorage restarted = start(1L << 26);
+        
+        assertEquals(ramp(0, 10), values("m"));
+        assertEquals(10L, restarted.committedOffset(0));
+        assertEquals(committedSize, Files.size(segment));
+    }
+    
+    @Test
+    void compactionInterruptedAfterItsJournalIsFinishedOnStart() throws IOException {
+        MetricSegmentStorage storage = start(1);
+        writeBatches(storage, today - DAY_MS, 4, 25);
+        Map<Path, byte[]> before = new HashMap<>();
+        for (Path segment : segments()) {
+            before.put(segment, Files.readAllBytes(segment));
+        }
+        
+        storage.compact();
+        storage.stop();
+        
+        // Put the files back the way a crash right after the journal rename leaves them: inputs
+        // still in place, outputs under their temporary names
+        List<Path> outputs = segments().stream().filter(segment -> !before.containsKey(segment)).toList();
+        List<Path> inputs = before.keySet().stream().filter(segment -> !Files.exists(segment)).sorted().toList();
+        assertFalse(outputs.isEmpty());
+        assertEquals(4, inputs.size());
+        StringBuilder journal = new StringBuilder();
+        for (Path output : outputs) {
+            Files.move(output, output.resolveSibling(output.getFileName() + ".tmp"));
+            journal.append("+ ").append(output.getFileName()).append('\n');
+        }
+        for (Path input : inputs) {
+            Files.write(input, before.get(input));
+            journal.append("- ").append(input.getFileName()).append('\n');
+        }
+        Files.writeString(dir.resolve("compaction.journal"), journal, StandardCharsets.UTF_8);
+        
+        MetricSegmentStorage restarted = start(1);
+        
+        // Every sample once, not once from the inputs and again from the outputs
+        assertEquals(ramp(0, 100), values("m"));
+        assertEquals(100L, restarted.committedOffset(0));
+        assertFalse(Files.exists(dir.resolve("compaction.journal")));
+        for (Path input : inputs) {
+            assertFalse(Files.exists(input));
+        }
+        for (Path output : outputs) {
+            assertTrue(Files.exists(output));
+        }
+    }
+    
+    @Test
+    void compactionMergesEachDayIntoItsPartition() throws IOException {
+        MetricSegmentStorage storage = start(1);
+        // Two days, each batch written newest first, so the segments are not in time order
+        writeBatches(storage, today - 2 * DAY_MS, 3, 20);
+        writeBatches(storage, today - DAY_MS, 3, 20);
+        storage.compact();
+        
+        assertEquals(Set.of(today / DAY_MS - 2, today / DAY_MS - 1), partitionDays());
+        
+        // A later compaction reopens the partition of the day its samples fall on
+        writeBatches(storage, today - DAY_MS + HOUR_MS, 2, 10);
+        storage.compact();
+        storage.stop();
+        
+        assertEquals(2, partitionDays().size());
+        assertEquals(2, partitions().size());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
+        
+        MetricSegmentStorage restarted = start(1);
+        
+        // Partitions are sorted, so nothing reloads as late
+        List<Double> values = values("m");
+        assertEquals(140, values.size());
+        assertEquals(0L, store.getStats().get("lateSamples"));
+        assertEquals(140L, restarted.committedOffset(0));
+    }
+    
+    // Each batch holds perBatch samples, newest first, and commits in a segment of its own
+    // (segment-bytes of 1 rolls on every commit); a closing empty batch rolls the last one
+    private void writeBatches(MetricSegmentStorage storage, long from, int batches, int perBatch) {
+        long offset = storage.committedOffset(0);
+        for (int batch = 0; batch < batches; batch++) {
+            for (int i = perBatch - 1; i >= 0; i--) {
+                long sample = (long) batch * perBatch + i;
+                storage.append("m", from + sample * 60_000, offset + sample, 0L);
+            }
+            storage.commit(Map.of(0, offset + (long) (batch + 1) * perBatch));
+        }
+        storage.commit(Map.of(0, offset + (long) batches * perBatch));
+    }
+    
+    private MetricSegmentStorage start(long segmentBytes) throws IOException {
+        store = new TimeSeriesStore(16, 10_000, 48, 90, 730);
+        MetricSegmentStorage storage = new MetricSegmentStorage(store, true, dir.toString(), HOUR_MS, segmentBytes,
+                1L << 28, 730, 2, HOUR_MS);
+        storage.start();
+        storages.add(storage);
+        return storage;
+    }
+    
+    private List<Double> values(String metricName) {
+        List<Double> values = new ArrayList<>();
+        store.scanRaw(metricName, Long.MIN_VALUE, Long.MAX_VALUE, (timestamp, value) -> values.add(value));
+        return values;
+    }
+    
+    private static List<Double> ramp(int from, int to) {
+        List<Double> values = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            values.add((double) i);
+        }
+        return values;
+    }
+    
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".seg")).sorted().toList();
+        }
+    }
+    
+    // Segments flagged as day partitions, read from the header: flags at byte 8, day at 12
+    private List<Path> partitions() throws IOException {
+        List<Path> partitions = new ArrayList<>();
+        for (Path segment : segments()) {
+            ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(segment));
+            if ((header.getInt(8) & 2) != 0) {
+                partitions.add(segment);
+            }
+        }
+        return partitions;
+    }
+    
+    private Set<Long> partitionDays() throws IOException {
+        Set<Long> days = new HashSet<>();
+        for (Path partition : partitions()) {
+            days.add((long) ByteBuffer.wrap(Files.readAllBytes(partition)).getInt(12));
+        }
+        return days;
+    }
+}
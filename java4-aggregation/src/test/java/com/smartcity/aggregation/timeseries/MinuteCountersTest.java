@@ -0,0 +1,90 @@
+package com.smartcity.aggregation.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinuteCountersTest {
+    
+    @Test
+    void rangeSumsMatchABruteForceCount() {
+        int minutes = 60;
+        MinuteCounters counters = new MinuteCounters(minutes, 2);
+        // Minute -> per-column counts, for everything ever added
+        Map<Long, long[]> added = new HashMap<>();
+        Random random = new Random(7);
+        long head = 28_000_000;
+        long newest = Long.MIN_VALUE;
+        
+        for (int step = 0; step < 5_000; step++) {
+            head += random.nextInt(10) == 0 ? random.nextInt(5) : 0;
+            long minute = head - random.nextInt(minutes);
+            int column = random.nextInt(2);
+            long delta = 1 + random.nextInt(5);
+            assertTrue(counters.add(minute, column, delta));
+            added.computeIfAbsent(minute, k -> new long[2])[column] += delta;
+            // The ring ends at the newest minute added so far
+            newest = Math.max(newest, minute);
+            
+            long from = head - random.nextInt(minutes + 10);
+            long to = from + random.nextInt(minutes + 10);
+            for (int c = 0; c < 2; c++) {
+                assertEquals(expected(added, c, Math.max(from, newest - minutes + 1), Math.min(to, newest)),
+                        counters.sum(c, from, to));
+            }
+        }
+    }
+    
+    @Test
+    void minutesOlderThanTheRingAreRejectedAndDropped() {
+        MinuteCounters counters = new MinuteCounters(10, 1);
+        counters.add(100, 0, 5);
+        counters.add(105, 0, 3);
+        
+        assertFalse(counters.add(95, 0, 1));
+        assertEquals(8, counters.sum(0, 0, 200));
+        
+        counters.add(110, 0, 1);
+        assertEquals(4, counters.sum(0, 0, 200));
+        
+        // A jump past the whole ring clears it
+        counters.add(1_000, 0, 2);
+        assertEquals(2, counters.sum(0, 0, 2_000));
+        assertEquals(0, counters.sum(0, 0, 999));
+    }
+    
+    @Test
+    void addedColumnStartsEmpty() {
+        MinuteCounters counters = new MinuteCounters(10, 1);
+        counters.add(100, 0, 5);
+        
+        counters.addColumn();
+        counters.add(101, 1, 2);
+        
+        assertEquals(2, counters.columns());
+        assertEquals(5, counters.sum(0, 90, 110));
+        assertEquals(2, counters.sum(1, 90, 110));
+    }
+    
+    @Test
+    void emptyCountersSumToZero() {
+        MinuteCounters counters = new MinuteCounters(10, 1);
+        
+        assertEquals(0, counters.sum(0, Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+    
+    private static long expected(Map<Long, long[]> added, int column, long from, long to) {
+        long sum = 0;
+        for (long minute = from; minute <= to; minute++) {
+            long[] counts = added.get(minute);
+            sum += counts == null ? 0 : counts[column];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,147 @@
+package com.smartcity.aggregation.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+    
+    private static final double[] QUANTILES = {0.0, 0.01, 0.25, 0.5, 0.75, 0.9, 0.99, 1.0};
+    
+    @Test
+    void quantilesStayWithinTheRelativeAccuracy() {
+        Random random = new Random(11);
+        double[] values = new double[20_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal, spanning about four orders of magnitude
+            values[i] = Math.exp(3 + 1.5 * random.nextGaussian());
+            sketch.add(values[i]);
+        }
+        
+        assertEquals(values.length, sketch.count());
+        assertQuantiles(values, sketch);
+    }
+    
+    @Test
+    void narrowRangeKeepsTheFullAccuracy() {
+        Random random = new Random(3);
+        double[] values = new double[10_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 10 + random.nextDouble() * 990;
+            sketch.add(values[i]);
+        }
+        
+        assertEquals(QuantileSketch.RELATIVE_ACCURACY, sketch.relativeAccuracy(), 1e-12);
+        assertQuantiles(values, sketch);
+    }
+    
+    @Test
+    void handlesNegativesAndZeros() {
+        double[] values = new double[1_001];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i - 500;
+            sketch.add(values[i]);
+        }
+        sketch.add(Double.NaN);
+        
+        assertEquals(values.length, sketch.count());
+        assertQuantiles(values, sketch);
+        assertEquals(0.0, sketch.quantile(0.5));
+    }
+    
+    @Test
+    void mergedSketchMatchesOneFedEverything() {
+        Random random = new Random(5);
+        QuantileSketch left = new QuantileSketch();
+        QuantileSketch right = new QuantileSketch();
+        QuantileSketch both = new QuantileSketch();
+        for (int i = 0; i < 10_000; i++) {
+            // left stays within its bins, right collapses twice
+            double value = i % 2 == 0 ? 1 + random.nextDouble() * 99 : Math.exp(random.nextGaussian() * 6);
+            (i % 2 == 0 ? left : right).add(value);
+            both.add(value);
+        }
+        
+        left.merge(right);
+        
+        assertEquals(both.count(), left.count());
+        assertEquals(both.relativeAccuracy(), left.relativeAccuracy());
+        for (double q : QUANTILES) {
+            assertEquals(both.quantile(q), left.quantile(q));
+        }
+    }
+    
+    @Test
+    void widerRangeThanTheBinsCollapsesEvenly() {
+        double[] values = new double[4_001];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            // 1e-4 .. 1e26: about 1700 bins at 2%, collapsed four times to fit MAX_BINS
+            values[i] = Math.pow(10, -4 + 30.0 * i / (values.length - 1));
+            sketch.add(values[i]);
+        }
+        
+        assertEquals(values.length, sketch.count());
+        assertTrue(sketch.relativeAccuracy() > QuantileSketch.RELATIVE_ACCURACY);
+        assertTrue(sketch.relativeAccuracy() < 0.5);
+        assertQuantiles(values, sketch);
+    }
+    
+    @Test
+    void sizeStaysWithinMaxBytes() {
+        Random random = new Random(17);
+        QuantileSketch sketch = new QuantileSketch();
+        for (int round = 0; round < 20; round++) {
+            QuantileSketch other = new QuantileSketch();
+            for (int i = 0; i < 1_000; i++) {
+                double magnitude = Math.pow(10, -8 + random.nextDouble() * 300);
+                (i % 2 == 0 ? sketch : other).add(random.nextBoolean() ? magnitude : -magnitude);
+            }
+            sketch.merge(other);
+            assertTrue(sketch.sizeBytes() <= QuantileSketch.MAX_BYTES, "bytes: " + sketch.sizeBytes());
+            assertTrue(other.sizeBytes() <= QuantileSketch.MAX_BYTES, "bytes: " + other.sizeBytes());
+        }
+    }
+    
+    @Test
+    void clearedSketchIsEmptyAndReusable() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(10);
+        sketch.add(1_000);
+        
+        sketch.add(1e40);
+        
+        sketch.clear();
+        assertEquals(0, sketch.count());
+        assertEquals(QuantileSketch.RELATIVE_ACCURACY, sketch.relativeAccuracy(), 1e-12);
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        
+        sketch.add(42);
+        assertWithinAccuracy(42, sketch.quantile(0.5), sketch.relativeAccuracy());
+    }
+    
+    private static void assertQuantiles(double[] values, QuantileSketch sketch) {
+        for (double q : QUANTILES) {
+            assertWithinAccuracy(exact(values, q), sketch.quantile(q), sketch.relativeAccuracy());
+        }
+    }
+    
+    // Same rank convention as the sketch: floor(q * (n - 1)) in sorted order
+    private static double exact(double[] values, double q) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) (q * (sorted.length - 1))];
+    }
+    
+    private static void assertWithinAccuracy(double expected, double actual, double accuracy) {
+        double tolerance = Math.abs(expected) * accuracy + 1e-9;
+        assertEquals(expected, actual, tolerance, "quantile of " + expected);
+    }
+}
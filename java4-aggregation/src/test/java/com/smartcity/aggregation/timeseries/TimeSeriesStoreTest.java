@@ -0,0 +1,36 @@
+package com.smartcity.aggregation.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSeriesStoreTest {
+    
+    @Test
+    void sketchesStayWithinTheDocumentedBoundPerSeries() {
+        int hourBuckets = 90 * 24;
+        int dayBuckets = 730;
+        TimeSeriesStore store = new TimeSeriesStore(1, 10_000, 48, 90, 730);
+        
+        // Every hour of two years, with values spread over 300 decades of both signs so that
+        // each sketch collapses and each HyperLogLog is allocated
+        long hour = TimeUnit.HOURS.toMillis(1);
+        long start = Window.HOUR.bucketStart(System.currentTimeMillis()) - (long) dayBuckets * 24 * hour;
+        double[] magnitudes = {1e-8, 1e-3, 1, 1e3, 1e50, 1e150, 1e290};
+        for (long time = start; time < start + (long) dayBuckets * 24 * hour; time += hour) {
+            for (int i = 0; i < magnitudes.length; i++) {
+                store.record("m", time + i, magnitudes[i], i + 1);
+                store.record("m", time + i, -magnitudes[i], i + 1);
+            }
+        }
+        
+        long sketchBytes = (Long) store.getStats().get("sketchBytes");
+        long perBucket = QuantileSketch.MAX_BYTES + new HyperLogLog().sizeBytes();
+        assertTrue(sketchBytes <= (hourBuckets + dayBuckets) * perBucket, "sketch bytes: " + sketchBytes);
+        assertTrue(sketchBytes >= (hourBuckets + dayBuckets) * (perBucket / 2), "sketch bytes: " + sketchBytes);
+        // 6.4 MB in the TimeSeriesStore comment, with object headers on top of this
+        assertTrue(sketchBytes <= 6_000_000L, "sketch bytes: " + sketchBytes);
+    }
+}